@@ -32,6 +32,16 @@ public class AliyunBailianProperties {
      */
     private String endpoint = "bailian.cn-beijing.aliyuncs.com";
 
+    /**
+     * API 接入点协议（本地压测连接模拟服务时设为 http）
+     */
+    private String protocol = "https";
+
+    /**
+     * 通义千问文本生成接口地址
+     */
+    private String generationUrl = "https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation";
+
     /**
      * 应用 ID（用于对话功能）
      */
@@ -57,6 +67,16 @@ public class AliyunBailianProperties {
      */
     private int maxPollingAttempts = 200;
 
+    /**
+     * 知识库列表缓存刷新间隔（毫秒）
+     */
+    private long catalogRefreshInterval = 60000;
+
+    /**
+     * 分页拉取知识库列表时的每页数量
+     */
+    private int listPageSize = 100;
+
     // Getters and Setters
 
     public String getAccessKeyId() {
@@ -130,4 +150,36 @@ public int getMaxPollingAttempts() {
     public void setMaxPollingAttempts(int maxPollingAttempts) {
         this.maxPollingAttempts = maxPollingAttempts;
     }
+
+    public long getCatalogRefreshInterval() {
+        return catalogRefreshInterval;
+    }
+
+    public void setCatalogRefreshInterval(long catalogRefreshInterval) {
+        this.catalogRefreshInterval = catalogRefreshInterval;
+    }
+
+    public int getListPageSize() {
+        return listPageSize;
+    }
+
+    public void setListPageSize(int listPageSize) {
+        this.listPageSize = listPageSize;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public void setProtocol(String protocol) {
+        this.protocol = protocol;
+    }
+
+    public String getGenerationUrl() {
+        return generationUrl;
+    }
+
+    public void setGenerationUrl(String generationUrl) {
+        this.generationUrl = generationUrl;
+    }
 }
@@ -0,0 +1,387 @@
+package com.fastgpt.docparser.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 对话配置属性
+ *
+ * @author ZHONG WEI
+ */
+@Component
+@ConfigurationProperties(prefix = "chat")
+public class ChatProperties {
+
+    /**
+     * 同时进行中的流式对话数上限（每个对话占用一个线程直到回答结束）
+     */
+    private int maxConcurrentStreams = 64;
+
+    /**
+     * 超出并发上限时排队等待的对话数上限，队列满后直接拒绝
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 排队超过该时间（毫秒）仍未开始的对话直接返回繁忙，不再处理
+     */
+    private long queueTimeout = 15000;
+
+    /**
+     * 流式对话 SSE 连接超时时间（毫秒）
+     */
+    private long streamTimeout = 300000;
+
+    /**
+     * 增量内容合并发送的间隔（毫秒），首个片段立即发送，0 表示每个片段单独发送
+     */
+    private long emitInterval = 40;
+
+    /**
+     * 待发送内容达到该字符数时立即发送，不等待间隔
+     */
+    private int emitMaxChars = 256;
+
+    /**
+     * 内存中保留的会话数上限（超出后淘汰最久未使用的会话）
+     */
+    private int sessionMaxEntries = 1000;
+
+    /**
+     * 会话空闲过期时间（毫秒）
+     */
+    private long sessionIdleTimeout = 1800000;
+
+    /**
+     * 每个会话原样保留的历史字符数上限，超出后较早的轮次压缩进摘要
+     */
+    private int sessionMaxChars = 6000;
+
+    /**
+     * 每个会话原样保留的最近轮次数上限
+     */
+    private int sessionRecentTurns = 4;
+
+    /**
+     * 会话摘要的最大字符数
+     */
+    private int summaryMaxChars = 800;
+
+    /**
+     * 可用的生成模型，按优先级排列：靠前的效果更好，靠后的速度更快，延迟超预算时依次回退
+     */
+    private List<String> models = new ArrayList<>(List.of("qwen-turbo"));
+
+    /**
+     * 首 Token 延迟预算（毫秒）
+     */
+    private long ttftBudget = 2000;
+
+    /**
+     * 完整回答的耗时预算（毫秒），按首 Token 延迟 + max_tokens / 生成速度 估算
+     */
+    private long latencyBudget = 20000;
+
+    /**
+     * 简短回答的 max_tokens（达到上限时向客户端发送 truncated 事件）
+     */
+    private int shortAnswerTokens = 1024;
+
+    /**
+     * 详细回答（列举、步骤、对比、总结类问题）的 max_tokens
+     */
+    private int longAnswerTokens = 1500;
+
+    /**
+     * Prompt 超过该 Token 数时按长 Prompt 单独统计模型延迟
+     */
+    private int longPromptTokens = 2000;
+
+    /**
+     * 被回退的模型超过该时间（毫秒）没有新的延迟数据时，放行一次请求重新探测
+     */
+    private long routeProbeInterval = 30000;
+
+    /**
+     * 是否合并相同知识库下同时进行的相同问题（共享一次检索和生成）
+     */
+    private boolean coalesceIdentical = true;
+
+    /**
+     * 大模型生成提供方，按优先级排列；为空时使用 aliyun.bailian 的 generation-url 和 api-key
+     */
+    private List<Provider> providers = new ArrayList<>();
+
+    /**
+     * 等待首个 Token 的超时时间（毫秒），超时后切换到其他提供方
+     */
+    private long firstTokenTimeout = 15000;
+
+    /**
+     * 提供方近期首 Token 延迟超过该值（毫秒）时降低优先级
+     */
+    private long providerTtftThreshold = 5000;
+
+    /**
+     * 提供方近期失败率超过该值时降低优先级
+     */
+    private double providerErrorRateThreshold = 0.5;
+
+    /**
+     * 计算失败率的最近请求数
+     */
+    private int providerHealthWindow = 20;
+
+    /**
+     * 降级的提供方超过该时间（毫秒）没有请求时，放行一次请求重新探测
+     */
+    private long providerProbeInterval = 30000;
+
+    public int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    public void setMaxConcurrentStreams(int maxConcurrentStreams) {
+        this.maxConcurrentStreams = maxConcurrentStreams;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getQueueTimeout() {
+        return queueTimeout;
+    }
+
+    public void setQueueTimeout(long queueTimeout) {
+        this.queueTimeout = queueTimeout;
+    }
+
+    public long getStreamTimeout() {
+        return streamTimeout;
+    }
+
+    public void setStreamTimeout(long streamTimeout) {
+        this.streamTimeout = streamTimeout;
+    }
+
+    public long getEmitInterval() {
+        return emitInterval;
+    }
+
+    public void setEmitInterval(long emitInterval) {
+        this.emitInterval = emitInterval;
+    }
+
+    public int getEmitMaxChars() {
+        return emitMaxChars;
+    }
+
+    public void setEmitMaxChars(int emitMaxChars) {
+        this.emitMaxChars = emitMaxChars;
+    }
+
+    public int getSessionMaxEntries() {
+        return sessionMaxEntries;
+    }
+
+    public void setSessionMaxEntries(int sessionMaxEntries) {
+        this.sessionMaxEntries = sessionMaxEntries;
+    }
+
+    public long getSessionIdleTimeout() {
+        return sessionIdleTimeout;
+    }
+
+    public void setSessionIdleTimeout(long sessionIdleTimeout) {
+        this.sessionIdleTimeout = sessionIdleTimeout;
+    }
+
+    public int getSessionMaxChars() {
+        return sessionMaxChars;
+    }
+
+    public void setSessionMaxChars(int sessionMaxChars) {
+        this.sessionMaxChars = sessionMaxChars;
+    }
+
+    public int getSessionRecentTurns() {
+        return sessionRecentTurns;
+    }
+
+    public void setSessionRecentTurns(int sessionRecentTurns) {
+        this.sessionRecentTurns = sessionRecentTurns;
+    }
+
+    public int getSummaryMaxChars() {
+        return summaryMaxChars;
+    }
+
+    public void setSummaryMaxChars(int summaryMaxChars) {
+        this.summaryMaxChars = summaryMaxChars;
+    }
+
+    public List<String> getModels() {
+        return models;
+    }
+
+    public void setModels(List<String> models) {
+        this.models = models;
+    }
+
+    public long getTtftBudget() {
+        return ttftBudget;
+    }
+
+    public void setTtftBudget(long ttftBudget) {
+        this.ttftBudget = ttftBudget;
+    }
+
+    public long getLatencyBudget() {
+        return latencyBudget;
+    }
+
+    public void setLatencyBudget(long latencyBudget) {
+        this.latencyBudget = latencyBudget;
+    }
+
+    public int getShortAnswerTokens() {
+        return shortAnswerTokens;
+    }
+
+    public void setShortAnswerTokens(int shortAnswerTokens) {
+        this.shortAnswerTokens = shortAnswerTokens;
+    }
+
+    public int getLongAnswerTokens() {
+        return longAnswerTokens;
+    }
+
+    public void setLongAnswerTokens(int longAnswerTokens) {
+        this.longAnswerTokens = longAnswerTokens;
+    }
+
+    public int getLongPromptTokens() {
+        return longPromptTokens;
+    }
+
+    public void setLongPromptTokens(int longPromptTokens) {
+        this.longPromptTokens = longPromptTokens;
+    }
+
+    public long getRouteProbeInterval() {
+        return routeProbeInterval;
+    }
+
+    public void setRouteProbeInterval(long routeProbeInterval) {
+        this.routeProbeInterval = routeProbeInterval;
+    }
+
+    public boolean isCoalesceIdentical() {
+        return coalesceIdentical;
+    }
+
+    public void setCoalesceIdentical(boolean coalesceIdentical) {
+        this.coalesceIdentical = coalesceIdentical;
+    }
+
+    public List<Provider> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(List<Provider> providers) {
+        this.providers = providers;
+    }
+
+    public long getFirstTokenTimeout() {
+        return firstTokenTimeout;
+    }
+
+    public void setFirstTokenTimeout(long firstTokenTimeout) {
+        this.firstTokenTimeout = firstTokenTimeout;
+    }
+
+    public long getProviderTtftThreshold() {
+        return providerTtftThreshold;
+    }
+
+    public void setProviderTtftThreshold(long providerTtftThreshold) {
+        this.providerTtftThreshold = providerTtftThreshold;
+    }
+
+    public double getProviderErrorRateThreshold() {
+        return providerErrorRateThreshold;
+    }
+
+    public void setProviderErrorRateThreshold(double providerErrorRateThreshold) {
+        this.providerErrorRateThreshold = providerErrorRateThreshold;
+    }
+
+    public int getProviderHealthWindow() {
+        return providerHealthWindow;
+    }
+
+    public void setProviderHealthWindow(int providerHealthWindow) {
+        this.providerHealthWindow = providerHealthWindow;
+    }
+
+    public long getProviderProbeInterval() {
+        return providerProbeInterval;
+    }
+
+    public void setProviderProbeInterval(long providerProbeInterval) {
+        this.providerProbeInterval = providerProbeInterval;
+    }
+
+    /**
+     * 生成提供方配置
+     */
+    public static class Provider {
+
+        /**
+         * 名称
+         */
+        private String name;
+
+        /**
+         * DashScope 兼容的文本生成接口地址
+         */
+        private String url;
+
+        /**
+         * API Key（为空时使用 aliyun.bailian.api-key）
+         */
+        private String apiKey;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getApiKey() {
+            return apiKey;
+        }
+
+        public void setApiKey(String apiKey) {
+            this.apiKey = apiKey;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.fastgpt.docparser.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量问答评测配置属性
+ *
+ * @author ZHONG WEI
+ */
+@Component
+@ConfigurationProperties(prefix = "evaluation")
+public class EvaluationProperties {
+
+    /**
+     * 单个评测任务允许的最大并发数
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 同时执行的评测任务数上限，超出时拒绝新任务
+     */
+    private int maxRunningJobs = 2;
+
+    /**
+     * 未指定并发数时的默认值
+     */
+    private int defaultConcurrency = 4;
+
+    /**
+     * 单个评测任务最多问题数
+     */
+    private int maxQuestions = 500;
+
+    /**
+     * 内存中保留的评测任务数上限（超出后淘汰最早结束的任务）
+     */
+    private int maxRetainedJobs = 20;
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public int getMaxRunningJobs() {
+        return maxRunningJobs;
+    }
+
+    public void setMaxRunningJobs(int maxRunningJobs) {
+        this.maxRunningJobs = maxRunningJobs;
+    }
+
+    public int getDefaultConcurrency() {
+        return defaultConcurrency;
+    }
+
+    public void setDefaultConcurrency(int defaultConcurrency) {
+        this.defaultConcurrency = defaultConcurrency;
+    }
+
+    public int getMaxQuestions() {
+        return maxQuestions;
+    }
+
+    public void setMaxQuestions(int maxQuestions) {
+        this.maxQuestions = maxQuestions;
+    }
+
+    public int getMaxRetainedJobs() {
+        return maxRetainedJobs;
+    }
+
+    public void setMaxRetainedJobs(int maxRetainedJobs) {
+        this.maxRetainedJobs = maxRetainedJobs;
+    }
+}
@@ -0,0 +1,118 @@
+package com.fastgpt.docparser.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 模拟上游服务配置属性（fake-upstream 环境下模拟百炼 Retrieve 接口和通义千问流式生成接口，用于压测）
+ *
+ * @author ZHONG WEI
+ */
+@Component
+@ConfigurationProperties(prefix = "fake-upstream")
+public class FakeUpstreamProperties {
+
+    /**
+     * 检索接口响应延迟（毫秒）
+     */
+    private long retrieveDelay = 100;
+
+    /**
+     * 检索返回的切片数
+     */
+    private int retrieveChunks = 5;
+
+    /**
+     * 每个切片的字符数
+     */
+    private int retrieveChunkChars = 300;
+
+    /**
+     * 生成接口返回首个 Token 前的延迟（毫秒）
+     */
+    private long firstTokenDelay = 300;
+
+    /**
+     * 生成速度（Token/秒）
+     */
+    private int tokensPerSecond = 50;
+
+    /**
+     * 每次回答的 Token 数（请求中 max_tokens 更小时以其为准）
+     */
+    private int answerTokens = 200;
+
+    /**
+     * 生成请求失败的比例（0 ~ 1）
+     */
+    private double failureRate = 0;
+
+    /**
+     * 失败方式：http（直接返回 500）/ stream（生成中途返回错误帧）/ disconnect（生成中途发送半个帧后断开连接，响应体不完整）
+     */
+    private String failureMode = "http";
+
+    public long getRetrieveDelay() {
+        return retrieveDelay;
+    }
+
+    public void setRetrieveDelay(long retrieveDelay) {
+        this.retrieveDelay = retrieveDelay;
+    }
+
+    public int getRetrieveChunks() {
+        return retrieveChunks;
+    }
+
+    public void setRetrieveChunks(int retrieveChunks) {
+        this.retrieveChunks = retrieveChunks;
+    }
+
+    public int getRetrieveChunkChars() {
+        return retrieveChunkChars;
+    }
+
+    public void setRetrieveChunkChars(int retrieveChunkChars) {
+        this.retrieveChunkChars = retrieveChunkChars;
+    }
+
+    public long getFirstTokenDelay() {
+        return firstTokenDelay;
+    }
+
+    public void setFirstTokenDelay(long firstTokenDelay) {
+        this.firstTokenDelay = firstTokenDelay;
+    }
+
+    public int getTokensPerSecond() {
+        return tokensPerSecond;
+    }
+
+    public void setTokensPerSecond(int tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+    }
+
+    public int getAnswerTokens() {
+        return answerTokens;
+    }
+
+    public void setAnswerTokens(int answerTokens) {
+        this.answerTokens = answerTokens;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    public String getFailureMode() {
+        return failureMode;
+    }
+
+    public void setFailureMode(String failureMode) {
+        this.failureMode = failureMode;
+    }
+}
@@ -0,0 +1,118 @@
+package com.fastgpt.docparser.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 知识库文档导入配置属性
+ *
+ * @author ZHONG WEI
+ */
+@Component
+@ConfigurationProperties(prefix = "ingestion")
+public class IngestionProperties {
+
+    /**
+     * MinerU 解析阶段并发数
+     */
+    private int parseConcurrency = 2;
+
+    /**
+     * 上传到百炼（租约、上传、解析）阶段并发数
+     */
+    private int uploadConcurrency = 4;
+
+    /**
+     * 同时进行中的索引任务数上限
+     */
+    private int indexConcurrency = 4;
+
+    /**
+     * 索引任务合并窗口（毫秒），窗口内追加到同一知识库的文件合并为一个任务
+     */
+    private long indexBatchWindow = 2000;
+
+    /**
+     * 单个索引任务最多包含的文件数，达到后立即提交
+     */
+    private int indexBatchMaxSize = 50;
+
+    /**
+     * 单次批量上传的最大文件数
+     */
+    private int maxBatchFiles = 500;
+
+    /**
+     * 内存中保留的批量任务数（超出后淘汰最早完成的任务）
+     */
+    private int maxRetainedJobs = 50;
+
+    /**
+     * 增量同步时按该级别及以上的标题切分章节（1 ~ 6，更深的标题归入上级章节）
+     */
+    private int sectionHeadingLevel = 2;
+
+    public int getParseConcurrency() {
+        return parseConcurrency;
+    }
+
+    public void setParseConcurrency(int parseConcurrency) {
+        this.parseConcurrency = parseConcurrency;
+    }
+
+    public int getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    public void setUploadConcurrency(int uploadConcurrency) {
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    public int getIndexConcurrency() {
+        return indexConcurrency;
+    }
+
+    public void setIndexConcurrency(int indexConcurrency) {
+        this.indexConcurrency = indexConcurrency;
+    }
+
+    public long getIndexBatchWindow() {
+        return indexBatchWindow;
+    }
+
+    public void setIndexBatchWindow(long indexBatchWindow) {
+        this.indexBatchWindow = indexBatchWindow;
+    }
+
+    public int getIndexBatchMaxSize() {
+        return indexBatchMaxSize;
+    }
+
+    public void setIndexBatchMaxSize(int indexBatchMaxSize) {
+        this.indexBatchMaxSize = indexBatchMaxSize;
+    }
+
+    public int getMaxBatchFiles() {
+        return maxBatchFiles;
+    }
+
+    public void setMaxBatchFiles(int maxBatchFiles) {
+        this.maxBatchFiles = maxBatchFiles;
+    }
+
+    public int getMaxRetainedJobs() {
+        return maxRetainedJobs;
+    }
+
+    public void setMaxRetainedJobs(int maxRetainedJobs) {
+        this.maxRetainedJobs = maxRetainedJobs;
+    }
+
+    public int getSectionHeadingLevel() {
+        return sectionHeadingLevel;
+    }
+
+    public void setSectionHeadingLevel(int sectionHeadingLevel) {
+        this.sectionHeadingLevel = sectionHeadingLevel;
+    }
+}
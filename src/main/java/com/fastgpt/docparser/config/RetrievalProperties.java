@@ -0,0 +1,430 @@
+package com.fastgpt.docparser.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 知识库检索配置属性
+ *
+ * @author ZHONG WEI
+ */
+@Component
+@ConfigurationProperties(prefix = "retrieval")
+public class RetrievalProperties {
+
+    /**
+     * 检索结果缓存最大条数（超出后淘汰最久未使用的条目），0 表示关闭缓存
+     */
+    private int cacheMaxEntries = 1000;
+
+    /**
+     * 检索结果缓存有效期（毫秒）
+     */
+    private long cacheTtl = 300000;
+
+    /**
+     * 是否启用本地 BM25 索引（与百炼检索结果融合，百炼超时时降级为仅本地检索）
+     */
+    private boolean localIndexEnabled = true;
+
+    /**
+     * 本地索引切片的最大字符数
+     */
+    private int chunkSize = 600;
+
+    /**
+     * 本地检索返回的切片数
+     */
+    private int localTopK = 5;
+
+    /**
+     * 融合后保留的切片数
+     */
+    private int fusedTopK = 8;
+
+    /**
+     * RRF 融合常数 k（score = Σ 1 / (k + rank)）
+     */
+    private int rrfK = 60;
+
+    /**
+     * 等待百炼检索的最长时间（毫秒），超时后仅使用本地检索结果
+     */
+    private long remoteDeadline = 1500;
+
+    /**
+     * 百炼检索线程数
+     */
+    private int remoteThreads = 16;
+
+    /**
+     * 是否启用本地向量索引（HNSW）
+     */
+    private boolean vectorEnabled = false;
+
+    /**
+     * 向量索引替代百炼检索：知识库已有本地向量时不再调用百炼 Retrieve
+     */
+    private boolean vectorReplaceRemote = false;
+
+    /**
+     * 向量化实现：hashing（本地确定性哈希，用于测试）或 dashscope（DashScope 文本向量）
+     */
+    private String embedder = "hashing";
+
+    /**
+     * DashScope 文本向量模型
+     */
+    private String embeddingModel = "text-embedding-v3";
+
+    /**
+     * 向量维度
+     */
+    private int vectorDimension = 1024;
+
+    /**
+     * HNSW 每个节点的邻居数 M（第 0 层为 2M）
+     */
+    private int hnswM = 16;
+
+    /**
+     * HNSW 构建时的候选集大小
+     */
+    private int hnswEfConstruction = 100;
+
+    /**
+     * HNSW 查询时的候选集大小
+     */
+    private int hnswEfSearch = 64;
+
+    /**
+     * 向量检索返回的切片数
+     */
+    private int vectorTopK = 5;
+
+    /**
+     * 向量索引定期保存的间隔（毫秒）；两次保存之间的更新在进程异常退出时丢失
+     */
+    private long hnswSaveInterval = 60000;
+
+    /**
+     * 未保存的新增和删除切片数达到该值时立即保存
+     */
+    private int hnswSaveThreshold = 10000;
+
+    /**
+     * 已删除节点比例达到该值时重建向量索引
+     */
+    private double hnswCompactRatio = 0.3;
+
+    /**
+     * Prompt 中参考信息的 Token 预算（估算值），0 表示不限制
+     */
+    private int contextTokenBudget = 3000;
+
+    /**
+     * 近似重复判定阈值：两段文本的字符三元组重合度（相对较短一段）达到该值时只保留排名靠前的一段
+     */
+    private double duplicateThreshold = 0.8;
+
+    /**
+     * 单次对话最多同时检索的知识库数
+     */
+    private int maxKnowledgeBases = 10;
+
+    /**
+     * 多知识库检索的共同截止时间（毫秒），届时仍未返回的知识库结果被丢弃
+     */
+    private long fanOutDeadline = 3000;
+
+    /**
+     * 多知识库并行检索线程数
+     */
+    private int fanOutThreads = 16;
+
+    /**
+     * 启用百炼检索对冲：首次请求超过近期延迟的指定分位数仍未返回时，再发送一次相同请求，取先返回的结果
+     */
+    private boolean hedgeEnabled = true;
+
+    /**
+     * 触发对冲的近期延迟分位数（0 ~ 100）
+     */
+    private double hedgePercentile = 95;
+
+    /**
+     * 对冲等待时间下限（毫秒）
+     */
+    private long hedgeMinDelay = 50;
+
+    /**
+     * 用于计算分位数的最近请求数
+     */
+    private int hedgeWindow = 200;
+
+    /**
+     * 样本数达到该值后才启用对冲
+     */
+    private int hedgeMinSamples = 20;
+
+    /**
+     * 对冲预算：额外请求数占首次请求数的比例上限
+     */
+    private double hedgeBudget = 0.05;
+
+    public int getCacheMaxEntries() {
+        return cacheMaxEntries;
+    }
+
+    public void setCacheMaxEntries(int cacheMaxEntries) {
+        this.cacheMaxEntries = cacheMaxEntries;
+    }
+
+    public long getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public boolean isLocalIndexEnabled() {
+        return localIndexEnabled;
+    }
+
+    public void setLocalIndexEnabled(boolean localIndexEnabled) {
+        this.localIndexEnabled = localIndexEnabled;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getLocalTopK() {
+        return localTopK;
+    }
+
+    public void setLocalTopK(int localTopK) {
+        this.localTopK = localTopK;
+    }
+
+    public int getFusedTopK() {
+        return fusedTopK;
+    }
+
+    public void setFusedTopK(int fusedTopK) {
+        this.fusedTopK = fusedTopK;
+    }
+
+    public int getRrfK() {
+        return rrfK;
+    }
+
+    public void setRrfK(int rrfK) {
+        this.rrfK = rrfK;
+    }
+
+    public long getRemoteDeadline() {
+        return remoteDeadline;
+    }
+
+    public void setRemoteDeadline(long remoteDeadline) {
+        this.remoteDeadline = remoteDeadline;
+    }
+
+    public int getRemoteThreads() {
+        return remoteThreads;
+    }
+
+    public void setRemoteThreads(int remoteThreads) {
+        this.remoteThreads = remoteThreads;
+    }
+
+    public boolean isVectorEnabled() {
+        return vectorEnabled;
+    }
+
+    public void setVectorEnabled(boolean vectorEnabled) {
+        this.vectorEnabled = vectorEnabled;
+    }
+
+    public boolean isVectorReplaceRemote() {
+        return vectorReplaceRemote;
+    }
+
+    public void setVectorReplaceRemote(boolean vectorReplaceRemote) {
+        this.vectorReplaceRemote = vectorReplaceRemote;
+    }
+
+    public String getEmbedder() {
+        return embedder;
+    }
+
+    public void setEmbedder(String embedder) {
+        this.embedder = embedder;
+    }
+
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public void setEmbeddingModel(String embeddingModel) {
+        this.embeddingModel = embeddingModel;
+    }
+
+    public int getVectorDimension() {
+        return vectorDimension;
+    }
+
+    public void setVectorDimension(int vectorDimension) {
+        this.vectorDimension = vectorDimension;
+    }
+
+    public int getHnswM() {
+        return hnswM;
+    }
+
+    public void setHnswM(int hnswM) {
+        this.hnswM = hnswM;
+    }
+
+    public int getHnswEfConstruction() {
+        return hnswEfConstruction;
+    }
+
+    public void setHnswEfConstruction(int hnswEfConstruction) {
+        this.hnswEfConstruction = hnswEfConstruction;
+    }
+
+    public int getHnswEfSearch() {
+        return hnswEfSearch;
+    }
+
+    public void setHnswEfSearch(int hnswEfSearch) {
+        this.hnswEfSearch = hnswEfSearch;
+    }
+
+    public int getVectorTopK() {
+        return vectorTopK;
+    }
+
+    public void setVectorTopK(int vectorTopK) {
+        this.vectorTopK = vectorTopK;
+    }
+
+    public long getHnswSaveInterval() {
+        return hnswSaveInterval;
+    }
+
+    public void setHnswSaveInterval(long hnswSaveInterval) {
+        this.hnswSaveInterval = hnswSaveInterval;
+    }
+
+    public int getHnswSaveThreshold() {
+        return hnswSaveThreshold;
+    }
+
+    public void setHnswSaveThreshold(int hnswSaveThreshold) {
+        this.hnswSaveThreshold = hnswSaveThreshold;
+    }
+
+    public double getHnswCompactRatio() {
+        return hnswCompactRatio;
+    }
+
+    public void setHnswCompactRatio(double hnswCompactRatio) {
+        this.hnswCompactRatio = hnswCompactRatio;
+    }
+
+    public int getContextTokenBudget() {
+        return contextTokenBudget;
+    }
+
+    public void setContextTokenBudget(int contextTokenBudget) {
+        this.contextTokenBudget = contextTokenBudget;
+    }
+
+    public double getDuplicateThreshold() {
+        return duplicateThreshold;
+    }
+
+    public void setDuplicateThreshold(double duplicateThreshold) {
+        this.duplicateThreshold = duplicateThreshold;
+    }
+
+    public int getMaxKnowledgeBases() {
+        return maxKnowledgeBases;
+    }
+
+    public void setMaxKnowledgeBases(int maxKnowledgeBases) {
+        this.maxKnowledgeBases = maxKnowledgeBases;
+    }
+
+    public long getFanOutDeadline() {
+        return fanOutDeadline;
+    }
+
+    public void setFanOutDeadline(long fanOutDeadline) {
+        this.fanOutDeadline = fanOutDeadline;
+    }
+
+    public int getFanOutThreads() {
+        return fanOutThreads;
+    }
+
+    public void setFanOutThreads(int fanOutThreads) {
+        this.fanOutThreads = fanOutThreads;
+    }
+
+    public boolean isHedgeEnabled() {
+        return hedgeEnabled;
+    }
+
+    public void setHedgeEnabled(boolean hedgeEnabled) {
+        this.hedgeEnabled = hedgeEnabled;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public long getHedgeMinDelay() {
+        return hedgeMinDelay;
+    }
+
+    public void setHedgeMinDelay(long hedgeMinDelay) {
+        this.hedgeMinDelay = hedgeMinDelay;
+    }
+
+    public int getHedgeWindow() {
+        return hedgeWindow;
+    }
+
+    public void setHedgeWindow(int hedgeWindow) {
+        this.hedgeWindow = hedgeWindow;
+    }
+
+    public int getHedgeMinSamples() {
+        return hedgeMinSamples;
+    }
+
+    public void setHedgeMinSamples(int hedgeMinSamples) {
+        this.hedgeMinSamples = hedgeMinSamples;
+    }
+
+    public double getHedgeBudget() {
+        return hedgeBudget;
+    }
+
+    public void setHedgeBudget(double hedgeBudget) {
+        this.hedgeBudget = hedgeBudget;
+    }
+}
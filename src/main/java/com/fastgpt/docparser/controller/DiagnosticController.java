@@ -2,11 +2,25 @@
 
 import com.fastgpt.docparser.config.AliyunBailianProperties;
 import com.fastgpt.docparser.dto.ApiResponse;
+import com.fastgpt.docparser.service.ChatCoalescer;
+import com.fastgpt.docparser.service.ChatSessionService;
+import com.fastgpt.docparser.service.ChatStreamExecutor;
+import com.fastgpt.docparser.service.GenerationRouter;
+import com.fastgpt.docparser.service.ModelRouter;
+import com.fastgpt.docparser.service.RetrievalCacheService;
+import com.fastgpt.docparser.service.RetrievalHedger;
+import com.fastgpt.docparser.service.RetrievalMetrics;
+import com.fastgpt.docparser.service.TokenBatcher;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -19,9 +33,36 @@
 public class DiagnosticController {
 
     private final AliyunBailianProperties properties;
-
-    public DiagnosticController(AliyunBailianProperties properties) {
+    private final RetrievalCacheService retrievalCacheService;
+    private final RetrievalMetrics retrievalMetrics;
+    private final ChatStreamExecutor chatStreamExecutor;
+    private final ChatSessionService chatSessionService;
+    private final TokenBatcher tokenBatcher;
+    private final ModelRouter modelRouter;
+    private final ChatCoalescer chatCoalescer;
+    private final RetrievalHedger retrievalHedger;
+    private final GenerationRouter generationRouter;
+
+    public DiagnosticController(AliyunBailianProperties properties,
+                                RetrievalCacheService retrievalCacheService,
+                                RetrievalMetrics retrievalMetrics,
+                                ChatStreamExecutor chatStreamExecutor,
+                                ChatSessionService chatSessionService,
+                                TokenBatcher tokenBatcher,
+                                ModelRouter modelRouter,
+                                ChatCoalescer chatCoalescer,
+                                RetrievalHedger retrievalHedger,
+                                GenerationRouter generationRouter) {
         this.properties = properties;
+        this.retrievalCacheService = retrievalCacheService;
+        this.retrievalMetrics = retrievalMetrics;
+        this.chatStreamExecutor = chatStreamExecutor;
+        this.chatSessionService = chatSessionService;
+        this.tokenBatcher = tokenBatcher;
+        this.modelRouter = modelRouter;
+        this.chatCoalescer = chatCoalescer;
+        this.retrievalHedger = retrievalHedger;
+        this.generationRouter = generationRouter;
     }
 
     /**
@@ -114,4 +155,80 @@ public ApiResponse<String> quickCheck() {
 
         return ApiResponse.success("配置检查通过！如果仍有 403 错误，请检查 AccessKey 权限和业务空间状态。", null);
     }
+
+    /**
+     * 检索结果缓存统计（命中率、淘汰数等）
+     */
+    @GetMapping("/retrieval-cache")
+    public ApiResponse<Map<String, Object>> retrievalCacheStats() {
+        return ApiResponse.success(retrievalCacheService.stats());
+    }
+
+    /**
+     * 按检索参数分组的检索耗时与上下文大小统计
+     */
+    @GetMapping("/retrieval-metrics")
+    public ApiResponse<List<Map<String, Object>>> retrievalMetrics() {
+        return ApiResponse.success(retrievalMetrics.snapshot());
+    }
+
+    /**
+     * 百炼检索对冲统计（当前对冲等待时间、对冲次数、对冲请求先返回次数与预算耗尽次数）
+     */
+    @GetMapping("/retrieval-hedging")
+    public ApiResponse<Map<String, Object>> retrievalHedgingStats() {
+        return ApiResponse.success(retrievalHedger.stats());
+    }
+
+    /**
+     * 生成服务提供方健康状况（首 Token 延迟、近期失败率、是否降级与切换次数）
+     */
+    @GetMapping("/generation-providers")
+    public ApiResponse<Map<String, Object>> generationProviderStats() {
+        return ApiResponse.success(generationRouter.stats());
+    }
+
+    /**
+     * 流式对话统计（进行中、排队、拒绝数与排队耗时，增量内容合并发送与相同问题合并情况）
+     */
+    @GetMapping("/chat-streams")
+    public ApiResponse<Map<String, Object>> chatStreamStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(chatStreamExecutor.stats());
+        stats.putAll(tokenBatcher.stats());
+        stats.putAll(chatCoalescer.stats());
+        return ApiResponse.success(stats);
+    }
+
+    /**
+     * 对话会话统计（会话数、淘汰、过期与摘要压缩次数）
+     */
+    @GetMapping("/chat-sessions")
+    public ApiResponse<Map<String, Object>> chatSessionStats() {
+        return ApiResponse.success(chatSessionService.stats());
+    }
+
+    /**
+     * 模型路由统计（各模型按 Prompt 长短统计的首 Token 延迟、生成速度与回退次数）
+     */
+    @GetMapping("/model-routes")
+    public ApiResponse<Map<String, Object>> modelRouteStats() {
+        return ApiResponse.success(modelRouter.stats());
+    }
+
+    /**
+     * 运行时资源（线程数、堆内存），压测时由压测工具定期采样
+     */
+    @GetMapping("/runtime")
+    public ApiResponse<Map<String, Object>> runtimeStats() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", threads.getThreadCount());
+        stats.put("peakThreads", threads.getPeakThreadCount());
+        stats.put("heapUsed", heap.getUsed());
+        stats.put("heapCommitted", heap.getCommitted());
+        stats.put("heapMax", heap.getMax());
+        stats.putAll(chatStreamExecutor.stats());
+        return ApiResponse.success(stats);
+    }
 }
@@ -0,0 +1,124 @@
+package com.fastgpt.docparser.controller;
+
+import com.fastgpt.docparser.dto.ApiResponse;
+import com.fastgpt.docparser.dto.EvaluationRequest;
+import com.fastgpt.docparser.dto.EvaluationStatus;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.fastgpt.docparser.service.EvaluationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * 批量问答评测控制器
+ *
+ * @author ZHONG WEI
+ */
+@RestController
+@RequestMapping("/api/evaluation")
+public class EvaluationController {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationController.class);
+
+    private final EvaluationService evaluationService;
+
+    public EvaluationController(EvaluationService evaluationService) {
+        this.evaluationService = evaluationService;
+    }
+
+    /**
+     * 提交评测任务（后台执行，返回任务状态）
+     */
+    @PostMapping
+    public ApiResponse<EvaluationStatus> submit(@RequestBody EvaluationRequest request) {
+        log.info("收到评测请求，知识库: {}, 问题数: {}",
+                request.getKnowledgeBaseIds() != null && !request.getKnowledgeBaseIds().isEmpty()
+                        ? request.getKnowledgeBaseIds() : request.getKnowledgeBaseId(),
+                request.getQuestions() != null ? request.getQuestions().size() : 0);
+
+        try {
+            return ApiResponse.success("评测任务已提交", evaluationService.submit(request));
+        } catch (BusinessException e) {
+            return ApiResponse.error(e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("提交评测任务失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询评测任务状态和结果
+     */
+    @GetMapping("/{jobId}")
+    public ApiResponse<EvaluationStatus> getStatus(@PathVariable String jobId) {
+        try {
+            return ApiResponse.success(evaluationService.getStatus(jobId));
+        } catch (BusinessException e) {
+            return ApiResponse.error(e.getCode(), e.getMessage());
+        } catch (Exception e) {
+            log.error("查询评测任务失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 下载评测结果（format=json 为完整结果，format=csv 便于用表格对比）
+     */
+    @GetMapping("/{jobId}/download")
+    public ResponseEntity<?> download(@PathVariable String jobId,
+                                      @RequestParam(defaultValue = "json") String format) {
+        EvaluationStatus status;
+        try {
+            status = evaluationService.getStatus(jobId);
+        } catch (BusinessException e) {
+            return ResponseEntity.notFound().build();
+        }
+
+        if ("csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.ok()
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=evaluation-" + jobId + ".csv")
+                    .contentType(MediaType.parseMediaType("text/csv; charset=UTF-8"))
+                    // BOM 便于 Excel 识别 UTF-8
+                    .body("\uFEFF" + toCsv(status));
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=evaluation-" + jobId + ".json")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(status);
+    }
+
+    private static String toCsv(EvaluationStatus status) {
+        StringBuilder csv = new StringBuilder(
+                "question,status,model,retrievalTime,promptTime,generationTime,totalTime,retrievedChunks,packedChunks,chunkIds,outputTokens,answer,error\n");
+        for (EvaluationStatus.QuestionResult result : status.getResults()) {
+            List<Object> columns = List.of(
+                    nullToEmpty(result.getQuestion()), nullToEmpty(result.getStatus()), nullToEmpty(result.getModel()),
+                    nullToEmpty(result.getRetrievalTime()), nullToEmpty(result.getPromptTime()),
+                    nullToEmpty(result.getGenerationTime()), nullToEmpty(result.getTotalTime()),
+                    nullToEmpty(result.getRetrievedChunks()), nullToEmpty(result.getPackedChunks()),
+                    result.getChunkIds() != null ? String.join(" ", result.getChunkIds()) : "",
+                    nullToEmpty(result.getOutputTokens()), nullToEmpty(result.getAnswer()), nullToEmpty(result.getError()));
+            for (int i = 0; i < columns.size(); i++) {
+                csv.append(i == 0 ? "" : ",").append(escapeCsv(columns.get(i).toString()));
+            }
+            csv.append("\n");
+        }
+        return csv.toString();
+    }
+
+    private static Object nullToEmpty(Object value) {
+        return value != null ? value : "";
+    }
+
+    private static String escapeCsv(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
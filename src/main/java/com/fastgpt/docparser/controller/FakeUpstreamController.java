@@ -0,0 +1,201 @@
+package com.fastgpt.docparser.controller;
+
+import com.fastgpt.docparser.config.FakeUpstreamProperties;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟上游服务控制器（仅 fake-upstream 环境启用）
+ * 模拟百炼 Retrieve 接口和通义千问流式生成接口，按配置的延迟、生成速度和失败方式返回，
+ * 用于在不调用真实服务的情况下压测流式对话；建议单独启动一个进程，避免影响被测节点的线程和内存统计
+ *
+ * @author ZHONG WEI
+ */
+@RestController
+@Profile("fake-upstream")
+public class FakeUpstreamController {
+
+    private static final Logger log = LoggerFactory.getLogger(FakeUpstreamController.class);
+    private static final String ANSWER_TEXT = "根据知识库中的参考信息，这是一段用于压测的模拟回答内容。";
+    private static final long DISCONNECT_CONTENT_LENGTH = 1L << 30;
+
+    private final FakeUpstreamProperties properties;
+    private final Gson gson = new Gson();
+
+    public FakeUpstreamController(FakeUpstreamProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 模拟百炼 Retrieve 接口（SDK 请求路径为 /{WorkspaceId}/index/retrieve）
+     */
+    @PostMapping("/{workspaceId}/index/retrieve")
+    public Map<String, Object> retrieve(@PathVariable String workspaceId,
+                                        @RequestParam(value = "IndexId", required = false) String indexId)
+            throws InterruptedException {
+        sleep(properties.getRetrieveDelay());
+
+        List<Map<String, Object>> nodes = new ArrayList<>();
+        for (int i = 0; i < properties.getRetrieveChunks(); i++) {
+            Map<String, Object> node = new LinkedHashMap<>();
+            node.put("Text", chunkText(indexId, i));
+            node.put("Score", 0.9 - i * 0.05);
+            node.put("Metadata", Map.of());
+            nodes.add(node);
+        }
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("Code", "Success");
+        body.put("Data", Map.of("Nodes", nodes));
+        body.put("Message", "success");
+        body.put("RequestId", UUID.randomUUID().toString());
+        body.put("Status", "200");
+        body.put("Success", true);
+        return body;
+    }
+
+    /**
+     * 模拟通义千问流式生成接口（X-DashScope-SSE 格式，增量输出）
+     */
+    @PostMapping("/fake/dashscope/generation")
+    public void generation(@RequestBody String requestBody, HttpServletResponse response) throws IOException {
+        String requestId = UUID.randomUUID().toString();
+        int answerTokens = answerTokens(requestBody);
+        boolean fail = properties.getFailureRate() > 0 && ThreadLocalRandom.current().nextDouble() < properties.getFailureRate();
+
+        if (fail && "http".equals(properties.getFailureMode())) {
+            response.setStatus(500);
+            response.setContentType("application/json");
+            response.setCharacterEncoding("UTF-8");
+            response.getOutputStream().write(errorBody(requestId).getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        response.setStatus(200);
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        boolean disconnect = fail && "disconnect".equals(properties.getFailureMode());
+        if (disconnect) {
+            // 声明的长度大于实际发送的内容并在结束后关闭连接，客户端读到不完整的响应体（unexpected end of stream），
+            // 不会像分块响应那样收到结束块而被当作正常结束
+            response.setContentLengthLong(DISCONNECT_CONTENT_LENGTH);
+            response.setHeader("Connection", "close");
+        }
+        response.flushBuffer();
+
+        OutputStream out = response.getOutputStream();
+        long intervalMillis = properties.getTokensPerSecond() > 0 ? 1000L / properties.getTokensPerSecond() : 0;
+        int failAt = fail ? ThreadLocalRandom.current().nextInt(Math.max(1, answerTokens)) : -1;
+        try {
+            sleep(properties.getFirstTokenDelay());
+            for (int i = 0; i < answerTokens; i++) {
+                if (i == failAt) {
+                    if (disconnect) {
+                        // 只发送半个帧后断开
+                        out.write(("id:" + (i + 1) + "\nevent:result\n").getBytes(StandardCharsets.UTF_8));
+                        out.flush();
+                        log.debug("模拟生成中途断开连接: {}", requestId);
+                    } else {
+                        writeEvent(out, i + 1, "error", 500, errorBody(requestId));
+                    }
+                    return;
+                }
+                if (i > 0) {
+                    sleep(intervalMillis);
+                }
+                String token = String.valueOf(ANSWER_TEXT.charAt(i % ANSWER_TEXT.length()));
+                boolean last = i == answerTokens - 1;
+                writeEvent(out, i + 1, "result", 200, resultBody(requestId, token, last ? "stop" : "null", i + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.debug("模拟生成接口的客户端已断开: {}", e.getMessage());
+        }
+    }
+
+    private int answerTokens(String requestBody) {
+        int tokens = properties.getAnswerTokens();
+        try {
+            JsonObject parameters = gson.fromJson(requestBody, JsonObject.class).getAsJsonObject("parameters");
+            JsonElement maxTokens = parameters != null ? parameters.get("max_tokens") : null;
+            if (maxTokens != null) {
+                tokens = Math.min(tokens, maxTokens.getAsInt());
+            }
+        } catch (Exception e) {
+            log.debug("解析模拟生成请求失败: {}", e.getMessage());
+        }
+        return Math.max(1, tokens);
+    }
+
+    private String resultBody(String requestId, String content, String finishReason, int outputTokens) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.add("message", message);
+        choice.addProperty("finish_reason", finishReason);
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject output = new JsonObject();
+        output.add("choices", choices);
+        JsonObject usage = new JsonObject();
+        usage.addProperty("output_tokens", outputTokens);
+
+        JsonObject body = new JsonObject();
+        body.add("output", output);
+        body.add("usage", usage);
+        body.addProperty("request_id", requestId);
+        return gson.toJson(body);
+    }
+
+    private String errorBody(String requestId) {
+        JsonObject body = new JsonObject();
+        body.addProperty("code", "InternalError");
+        body.addProperty("message", "模拟的上游错误");
+        body.addProperty("request_id", requestId);
+        return gson.toJson(body);
+    }
+
+    private static void writeEvent(OutputStream out, int id, String event, int status, String data) throws IOException {
+        String frame = "id:" + id + "\nevent:" + event + "\n:HTTP_STATUS/" + status + "\ndata:" + data + "\n\n";
+        out.write(frame.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private String chunkText(String indexId, int index) {
+        StringBuilder text = new StringBuilder("【模拟切片 " + (index + 1) + "，知识库 " + indexId + "】");
+        while (text.length() < properties.getRetrieveChunkChars()) {
+            text.append(ANSWER_TEXT);
+        }
+        return text.substring(0, Math.max(0, properties.getRetrieveChunkChars()));
+    }
+
+    private static void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.fastgpt.docparser.controller;
+
+import com.fastgpt.docparser.dto.ApiResponse;
+import com.fastgpt.docparser.dto.HistoryRecord;
+import com.fastgpt.docparser.service.HistoryService;
+import com.fastgpt.docparser.service.ResultStoreService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 历史记录控制器
+ *
+ * @author ZHONG WEI
+ */
+@RestController
+@RequestMapping("/api/history")
+public class HistoryController {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryController.class);
+
+    private final HistoryService historyService;
+    private final ResultStoreService resultStoreService;
+
+    public HistoryController(HistoryService historyService, ResultStoreService resultStoreService) {
+        this.historyService = historyService;
+        this.resultStoreService = resultStoreService;
+    }
+
+    /**
+     * 获取历史记录列表
+     */
+    @GetMapping("/list")
+    public ApiResponse<List<HistoryRecord>> listHistory() {
+        return ApiResponse.success(historyService.getHistoryList());
+    }
+
+    /**
+     * 获取历史记录详情（含 Markdown 内容）
+     */
+    @GetMapping("/{id}")
+    public ApiResponse<HistoryRecord> getHistory(@PathVariable String id) {
+        HistoryRecord record = historyService.getHistory(id);
+        if (record == null) {
+            return ApiResponse.error(404, "历史记录不存在");
+        }
+        return ApiResponse.success(record);
+    }
+
+    /**
+     * 下载 Markdown 文件（边解压边输出，不整体加载到内存）
+     */
+    @GetMapping("/{id}/download")
+    public ResponseEntity<StreamingResponseBody> downloadHistory(@PathVariable String id) {
+        HistoryRecord record = historyService.findHistory(id);
+        if (record == null || !resultStoreService.exists(record.getContentHash())) {
+            return ResponseEntity.notFound().build();
+        }
+
+        String filename = record.getOriginalFilename().replaceFirst("\\.[^.]+$", "") + ".md";
+        String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8).replace("+", "%20");
+        String contentHash = record.getContentHash();
+
+        StreamingResponseBody body = out -> resultStoreService.transferTo(contentHash, out);
+
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename*=UTF-8''" + encodedFilename)
+                .contentType(MediaType.parseMediaType("text/markdown; charset=UTF-8"))
+                .body(body);
+    }
+
+    /**
+     * 删除历史记录
+     */
+    @DeleteMapping("/{id}")
+    public ApiResponse<Void> deleteHistory(@PathVariable String id) {
+        log.info("收到删除历史记录请求: {}", id);
+
+        if (!historyService.deleteHistory(id)) {
+            return ApiResponse.error(404, "历史记录不存在");
+        }
+        return ApiResponse.success("删除成功", null);
+    }
+
+    /**
+     * 清空历史记录
+     */
+    @DeleteMapping("/clear")
+    public ApiResponse<Void> clearHistory() {
+        log.info("收到清空历史记录请求");
+
+        historyService.clearHistory();
+        return ApiResponse.success("清空成功", null);
+    }
+}
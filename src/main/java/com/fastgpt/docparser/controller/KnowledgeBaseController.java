@@ -1,8 +1,14 @@
 package com.fastgpt.docparser.controller;
 
 import com.fastgpt.docparser.dto.ApiResponse;
+import com.fastgpt.docparser.dto.BulkUploadStatus;
 import com.fastgpt.docparser.dto.KnowledgeBaseDTO;
+import com.fastgpt.docparser.dto.RetrievalOptions;
+import com.fastgpt.docparser.dto.SectionSyncResult;
+import com.fastgpt.docparser.service.BulkIngestionService;
+import com.fastgpt.docparser.service.KnowledgeBaseCatalogService;
 import com.fastgpt.docparser.service.KnowledgeBaseService;
+import com.fastgpt.docparser.service.SectionSyncService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -22,9 +28,18 @@ public class KnowledgeBaseController {
     private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseController.class);
 
     private final KnowledgeBaseService knowledgeBaseService;
-
-    public KnowledgeBaseController(KnowledgeBaseService knowledgeBaseService) {
+    private final BulkIngestionService bulkIngestionService;
+    private final SectionSyncService sectionSyncService;
+    private final KnowledgeBaseCatalogService knowledgeBaseCatalogService;
+
+    public KnowledgeBaseController(KnowledgeBaseService knowledgeBaseService,
+                                   BulkIngestionService bulkIngestionService,
+                                   SectionSyncService sectionSyncService,
+                                   KnowledgeBaseCatalogService knowledgeBaseCatalogService) {
         this.knowledgeBaseService = knowledgeBaseService;
+        this.bulkIngestionService = bulkIngestionService;
+        this.sectionSyncService = sectionSyncService;
+        this.knowledgeBaseCatalogService = knowledgeBaseCatalogService;
     }
 
     /**
@@ -66,14 +81,67 @@ public ApiResponse<String> uploadDocument(
     }
 
     /**
-     * 获取知识库列表
+     * 增量同步文档到知识库（按章节比对，只上传变化的章节）
+     */
+    @PostMapping("/{indexId}/sync")
+    public ApiResponse<SectionSyncResult> syncDocument(
+            @PathVariable String indexId,
+            @RequestParam("file") MultipartFile file) {
+
+        log.info("收到增量同步文档请求，知识库: {}, 文件: {}", indexId, file.getOriginalFilename());
+
+        try {
+            SectionSyncResult result = sectionSyncService.sync(indexId, file);
+            return ApiResponse.success("文档同步成功", result);
+        } catch (Exception e) {
+            log.error("增量同步文档失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 批量上传文档到知识库（异步执行，返回任务状态）
+     */
+    @PostMapping("/{indexId}/bulk-upload")
+    public ApiResponse<BulkUploadStatus> bulkUpload(
+            @PathVariable String indexId,
+            @RequestParam("files") List<MultipartFile> files) {
+
+        log.info("收到批量上传请求，知识库: {}, 文件数: {}", indexId, files.size());
+
+        try {
+            BulkUploadStatus status = bulkIngestionService.submit(indexId, files);
+            return ApiResponse.success("批量上传任务已提交", status);
+        } catch (Exception e) {
+            log.error("提交批量上传任务失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 查询批量上传任务状态
+     */
+    @GetMapping("/bulk-upload/{jobId}")
+    public ApiResponse<BulkUploadStatus> getBulkUploadStatus(@PathVariable String jobId) {
+        try {
+            return ApiResponse.success(bulkIngestionService.getStatus(jobId));
+        } catch (Exception e) {
+            log.error("查询批量上传任务失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 获取知识库列表（本地缓存，可分页；size 为 0 时返回全部）
      */
     @GetMapping("/list")
-    public ApiResponse<List<KnowledgeBaseDTO>> listKnowledgeBases() {
+    public ApiResponse<List<KnowledgeBaseDTO>> listKnowledgeBases(
+            @RequestParam(value = "page", defaultValue = "1") int page,
+            @RequestParam(value = "size", defaultValue = "0") int size) {
         log.info("收到查询知识库列表请求");
 
         try {
-            List<KnowledgeBaseDTO> knowledgeBases = knowledgeBaseService.listKnowledgeBases();
+            List<KnowledgeBaseDTO> knowledgeBases = knowledgeBaseService.listKnowledgeBases(page, size);
             return ApiResponse.success(knowledgeBases);
         } catch (Exception e) {
             log.error("查询知识库列表失败", e);
@@ -81,6 +149,38 @@ public ApiResponse<List<KnowledgeBaseDTO>> listKnowledgeBases() {
         }
     }
 
+    /**
+     * 查询知识库的检索参数默认值
+     */
+    @GetMapping("/{indexId}/retrieval-settings")
+    public ApiResponse<RetrievalOptions> getRetrievalSettings(@PathVariable String indexId) {
+        try {
+            RetrievalOptions options = knowledgeBaseCatalogService.getRetrievalOptions(indexId);
+            return ApiResponse.success(options != null ? options : new RetrievalOptions());
+        } catch (Exception e) {
+            log.error("查询检索参数失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 设置知识库的检索参数默认值（未填写的参数使用百炼默认值）
+     */
+    @PutMapping("/{indexId}/retrieval-settings")
+    public ApiResponse<RetrievalOptions> updateRetrievalSettings(
+            @PathVariable String indexId,
+            @RequestBody RetrievalOptions options) {
+        log.info("收到设置检索参数请求: {}, {}", indexId, options.signature());
+
+        try {
+            knowledgeBaseCatalogService.updateRetrievalOptions(indexId, options);
+            return ApiResponse.success("检索参数已更新", options);
+        } catch (Exception e) {
+            log.error("设置检索参数失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
     /**
      * 删除知识库
      */
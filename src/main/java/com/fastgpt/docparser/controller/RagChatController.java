@@ -2,8 +2,15 @@
 
 import com.fastgpt.docparser.dto.ApiResponse;
 import com.fastgpt.docparser.dto.ChatRequest;
+import com.fastgpt.docparser.config.ChatProperties;
 import com.fastgpt.docparser.dto.ChatResponse;
+import com.fastgpt.docparser.dto.ChatSessionDTO;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.fastgpt.docparser.service.ChatSessionService;
+import com.fastgpt.docparser.service.ChatStreamExecutor;
 import com.fastgpt.docparser.service.RagChatService;
+import com.fastgpt.docparser.service.StreamCancellation;
+import com.fastgpt.docparser.service.TokenBatcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.MediaType;
@@ -11,8 +18,6 @@
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * RAG 对话控制器
@@ -26,10 +31,21 @@ public class RagChatController {
     private static final Logger log = LoggerFactory.getLogger(RagChatController.class);
 
     private final RagChatService ragChatService;
-    private final ExecutorService executorService = Executors.newCachedThreadPool();
+    private final ChatStreamExecutor chatStreamExecutor;
+    private final ChatSessionService chatSessionService;
+    private final TokenBatcher tokenBatcher;
+    private final ChatProperties chatProperties;
 
-    public RagChatController(RagChatService ragChatService) {
+    public RagChatController(RagChatService ragChatService,
+                             ChatStreamExecutor chatStreamExecutor,
+                             ChatSessionService chatSessionService,
+                             TokenBatcher tokenBatcher,
+                             ChatProperties chatProperties) {
         this.ragChatService = ragChatService;
+        this.chatStreamExecutor = chatStreamExecutor;
+        this.chatSessionService = chatSessionService;
+        this.tokenBatcher = tokenBatcher;
+        this.chatProperties = chatProperties;
     }
 
     /**
@@ -39,20 +55,61 @@ public RagChatController(RagChatService ragChatService) {
     public SseEmitter sendMessage(@RequestBody ChatRequest request) {
         log.info("收到流式对话请求，知识库: {}, 问题: {}", request.getKnowledgeBaseId(), request.getQuestion());
 
-        SseEmitter emitter = new SseEmitter(5 * 60 * 1000L); // 5分钟超时
+        SseEmitter emitter = new SseEmitter(chatProperties.getStreamTimeout());
+        StreamCancellation cancellation = new StreamCancellation();
 
-        // 在异步线程中处理
-        executorService.execute(() -> {
+        // 客户端断开、超时或连接结束时取消检索和上游生成
+        emitter.onTimeout(() -> {
+            log.warn("流式对话超时");
+            cancellation.cancel();
+            emitter.complete();
+        });
+        emitter.onError(e -> {
+            log.info("SSE 连接异常，取消对话: {}", e.getMessage());
+            cancellation.cancel();
+        });
+        emitter.onCompletion(() -> {
+            log.debug("SSE 连接已关闭");
+            cancellation.cancel();
+        });
+
+        // 在对话执行器中处理（并发数和排队数有上限）
+        Runnable task = () -> {
             try {
-                ragChatService.chatStream(request, new RagChatService.StreamCallback() {
+                ragChatService.chatStream(request, tokenBatcher.wrap(new RagChatService.StreamCallback() {
                     @Override
                     public void onData(String chunk) {
+                        try {
+                            emitter.send(messageEvent(chunk));
+                        } catch (IOException e) {
+                            log.info("客户端已断开，取消对话: {}", e.getMessage());
+                            cancellation.cancel();
+                            emitter.completeWithError(e);
+                        }
+                    }
+
+                    @Override
+                    public void onSession(String sessionId) {
                         try {
                             emitter.send(SseEmitter.event()
-                                    .data(chunk)
-                                    .name("message"));
+                                    .data(sessionId)
+                                    .name("session"));
                         } catch (IOException e) {
-                            log.error("发送流式数据失败", e);
+                            log.info("客户端已断开，取消对话: {}", e.getMessage());
+                            cancellation.cancel();
+                            emitter.completeWithError(e);
+                        }
+                    }
+
+                    @Override
+                    public void onTruncated() {
+                        try {
+                            emitter.send(SseEmitter.event()
+                                    .data("回答已达到长度上限，内容可能不完整")
+                                    .name("truncated"));
+                        } catch (IOException e) {
+                            log.info("客户端已断开，取消对话: {}", e.getMessage());
+                            cancellation.cancel();
                             emitter.completeWithError(e);
                         }
                     }
@@ -83,21 +140,67 @@ public void onError(String error) {
                             emitter.completeWithError(e);
                         }
                     }
-                });
+                }), cancellation);
             } catch (Exception e) {
                 log.error("流式对话处理异常", e);
                 emitter.completeWithError(e);
             }
-        });
+        };
 
-        // 设置超时和完成回调
-        emitter.onTimeout(() -> {
-            log.warn("流式对话超时");
-            emitter.complete();
-        });
-
-        emitter.onCompletion(() -> log.debug("SSE 连接已关闭"));
+        try {
+            chatStreamExecutor.execute(task, () -> sendBusy(emitter, "当前对话请求过多，排队超时，请稍后重试"));
+        } catch (BusinessException e) {
+            sendBusy(emitter, e.getMessage());
+            return emitter;
+        }
 
         return emitter;
     }
+
+    /**
+     * 查询会话历史（摘要和最近轮次）
+     */
+    @GetMapping("/session/{sessionId}")
+    public ApiResponse<ChatSessionDTO> getSession(@PathVariable String sessionId) {
+        try {
+            return ApiResponse.success(chatSessionService.get(sessionId));
+        } catch (Exception e) {
+            log.error("查询会话失败", e);
+            return ApiResponse.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 结束会话
+     */
+    @DeleteMapping("/session/{sessionId}")
+    public ApiResponse<Void> deleteSession(@PathVariable String sessionId) {
+        chatSessionService.delete(sessionId);
+        return ApiResponse.success("会话已删除", null);
+    }
+
+    /**
+     * 构造内容事件：按 SSE 规范，多行内容拆成多个 data 行
+     */
+    private static SseEmitter.SseEventBuilder messageEvent(String chunk) {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name("message");
+        for (String line : chunk.split("\n", -1)) {
+            event.data(line);
+        }
+        return event;
+    }
+
+    /**
+     * 通知客户端服务繁忙并关闭连接
+     */
+    private void sendBusy(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .data(message)
+                    .name("error"));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
 }
@@ -0,0 +1,212 @@
+package com.fastgpt.docparser.dto;
+
+import java.util.List;
+
+/**
+ * 批量上传任务状态 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class BulkUploadStatus {
+
+    /**
+     * 任务 ID
+     */
+    private String jobId;
+
+    /**
+     * 知识库 ID
+     */
+    private String indexId;
+
+    /**
+     * 文件总数
+     */
+    private int total;
+
+    /**
+     * 已成功数
+     */
+    private int completed;
+
+    /**
+     * 已失败数
+     */
+    private int failed;
+
+    /**
+     * 是否全部结束
+     */
+    private boolean finished;
+
+    /**
+     * 创建时间
+     */
+    private long createdAt;
+
+    /**
+     * 结束时间（未结束时为 null）
+     */
+    private Long finishedAt;
+
+    /**
+     * 各文件状态
+     */
+    private List<FileStatus> files;
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getIndexId() {
+        return indexId;
+    }
+
+    public void setIndexId(String indexId) {
+        this.indexId = indexId;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public List<FileStatus> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<FileStatus> files) {
+        this.files = files;
+    }
+
+    /**
+     * 单个文件状态
+     */
+    public static class FileStatus {
+
+        /**
+         * 原文件名
+         */
+        private String filename;
+
+        /**
+         * 当前阶段（QUEUED, PARSING, UPLOADING, INDEXING, COMPLETED, FAILED）
+         */
+        private String stage;
+
+        /**
+         * 百炼 FileId（上传成功后填充）
+         */
+        private String fileId;
+
+        /**
+         * 失败原因
+         */
+        private String error;
+
+        /**
+         * 开始处理时间
+         */
+        private Long startedAt;
+
+        /**
+         * 耗时（毫秒）
+         */
+        private Long elapsed;
+
+        public String getFilename() {
+            return filename;
+        }
+
+        public void setFilename(String filename) {
+            this.filename = filename;
+        }
+
+        public String getStage() {
+            return stage;
+        }
+
+        public void setStage(String stage) {
+            this.stage = stage;
+        }
+
+        public String getFileId() {
+            return fileId;
+        }
+
+        public void setFileId(String fileId) {
+            this.fileId = fileId;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+
+        public Long getStartedAt() {
+            return startedAt;
+        }
+
+        public void setStartedAt(Long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        public Long getElapsed() {
+            return elapsed;
+        }
+
+        public void setElapsed(Long elapsed) {
+            this.elapsed = elapsed;
+        }
+    }
+}
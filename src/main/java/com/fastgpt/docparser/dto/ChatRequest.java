@@ -1,5 +1,7 @@
 package com.fastgpt.docparser.dto;
 
+import java.util.List;
+
 /**
  * 对话请求 DTO
  *
@@ -12,16 +14,51 @@ public class ChatRequest {
      */
     private String knowledgeBaseId;
 
+    /**
+     * 知识库 ID 列表（可选，同时检索多个知识库，设置后忽略 knowledgeBaseId）
+     */
+    private List<String> knowledgeBaseIds;
+
     /**
      * 用户问题
      */
     private String question;
 
+    /**
+     * 会话 ID（可选，为空或已过期时创建新会话）
+     */
+    private String sessionId;
+
     /**
      * 是否流式返回（可选）
      */
     private Boolean stream = false;
 
+    /**
+     * 向量检索返回的切片数（可选，覆盖知识库默认值）
+     */
+    private Integer denseTopK;
+
+    /**
+     * 关键词检索返回的切片数（可选）
+     */
+    private Integer sparseTopK;
+
+    /**
+     * 是否开启重排序（可选）
+     */
+    private Boolean enableReranking;
+
+    /**
+     * 重排序后保留的切片数（可选）
+     */
+    private Integer rerankTopN;
+
+    /**
+     * 相似度阈值（可选）
+     */
+    private Float minScore;
+
     public ChatRequest() {
     }
 
@@ -38,6 +75,14 @@ public void setKnowledgeBaseId(String knowledgeBaseId) {
         this.knowledgeBaseId = knowledgeBaseId;
     }
 
+    public List<String> getKnowledgeBaseIds() {
+        return knowledgeBaseIds;
+    }
+
+    public void setKnowledgeBaseIds(List<String> knowledgeBaseIds) {
+        this.knowledgeBaseIds = knowledgeBaseIds;
+    }
+
     public String getQuestion() {
         return question;
     }
@@ -46,6 +91,14 @@ public void setQuestion(String question) {
         this.question = question;
     }
 
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
     public Boolean getStream() {
         return stream;
     }
@@ -53,4 +106,44 @@ public Boolean getStream() {
     public void setStream(Boolean stream) {
         this.stream = stream;
     }
+
+    public Integer getDenseTopK() {
+        return denseTopK;
+    }
+
+    public void setDenseTopK(Integer denseTopK) {
+        this.denseTopK = denseTopK;
+    }
+
+    public Integer getSparseTopK() {
+        return sparseTopK;
+    }
+
+    public void setSparseTopK(Integer sparseTopK) {
+        this.sparseTopK = sparseTopK;
+    }
+
+    public Boolean getEnableReranking() {
+        return enableReranking;
+    }
+
+    public void setEnableReranking(Boolean enableReranking) {
+        this.enableReranking = enableReranking;
+    }
+
+    public Integer getRerankTopN() {
+        return rerankTopN;
+    }
+
+    public void setRerankTopN(Integer rerankTopN) {
+        this.rerankTopN = rerankTopN;
+    }
+
+    public Float getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(Float minScore) {
+        this.minScore = minScore;
+    }
 }
@@ -0,0 +1,76 @@
+package com.fastgpt.docparser.dto;
+
+import java.util.List;
+
+/**
+ * 对话会话 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class ChatSessionDTO {
+
+    /**
+     * 会话 ID
+     */
+    private String id;
+
+    /**
+     * 较早轮次压缩后的摘要（尚未压缩时为 null）
+     */
+    private String summary;
+
+    /**
+     * 最近的对话轮次（按时间顺序）
+     */
+    private List<ChatTurn> turns;
+
+    /**
+     * 创建时间戳（毫秒）
+     */
+    private Long createdAt;
+
+    /**
+     * 最近访问时间戳（毫秒）
+     */
+    private Long updatedAt;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public List<ChatTurn> getTurns() {
+        return turns;
+    }
+
+    public void setTurns(List<ChatTurn> turns) {
+        this.turns = turns;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
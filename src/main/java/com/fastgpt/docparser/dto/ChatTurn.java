@@ -0,0 +1,57 @@
+package com.fastgpt.docparser.dto;
+
+/**
+ * 对话轮次 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class ChatTurn {
+
+    /**
+     * 用户问题
+     */
+    private String question;
+
+    /**
+     * 模型回答
+     */
+    private String answer;
+
+    /**
+     * 时间戳（毫秒）
+     */
+    private Long createdAt;
+
+    public ChatTurn() {
+    }
+
+    public ChatTurn(String question, String answer, Long createdAt) {
+        this.question = question;
+        this.answer = answer;
+        this.createdAt = createdAt;
+    }
+
+    public String getQuestion() {
+        return question;
+    }
+
+    public void setQuestion(String question) {
+        this.question = question;
+    }
+
+    public String getAnswer() {
+        return answer;
+    }
+
+    public void setAnswer(String answer) {
+        this.answer = answer;
+    }
+
+    public Long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Long createdAt) {
+        this.createdAt = createdAt;
+    }
+}
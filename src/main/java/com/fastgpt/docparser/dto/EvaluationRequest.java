@@ -0,0 +1,141 @@
+package com.fastgpt.docparser.dto;
+
+import java.util.List;
+
+/**
+ * 批量问答评测请求 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class EvaluationRequest {
+
+    /**
+     * 知识库 ID
+     */
+    private String knowledgeBaseId;
+
+    /**
+     * 知识库 ID 列表（可选，同时检索多个知识库，设置后忽略 knowledgeBaseId）
+     */
+    private List<String> knowledgeBaseIds;
+
+    /**
+     * 问题列表
+     */
+    private List<String> questions;
+
+    /**
+     * 并发数（可选，默认 evaluation.default-concurrency，不超过 evaluation.max-concurrency）
+     */
+    private Integer concurrency;
+
+    /**
+     * 每秒最多开始的问题数（可选，不设置或为 0 时不限速）
+     */
+    private Double ratePerSecond;
+
+    /**
+     * 向量检索返回切片数（可选，覆盖知识库默认值）
+     */
+    private Integer denseTopK;
+
+    /**
+     * 关键词检索返回切片数（可选，覆盖知识库默认值）
+     */
+    private Integer sparseTopK;
+
+    /**
+     * 是否启用重排序（可选，覆盖知识库默认值）
+     */
+    private Boolean enableReranking;
+
+    /**
+     * 重排序后保留切片数（可选，覆盖知识库默认值）
+     */
+    private Integer rerankTopN;
+
+    /**
+     * 最低相似度（可选，覆盖知识库默认值）
+     */
+    private Float minScore;
+
+    public String getKnowledgeBaseId() {
+        return knowledgeBaseId;
+    }
+
+    public void setKnowledgeBaseId(String knowledgeBaseId) {
+        this.knowledgeBaseId = knowledgeBaseId;
+    }
+
+    public List<String> getKnowledgeBaseIds() {
+        return knowledgeBaseIds;
+    }
+
+    public void setKnowledgeBaseIds(List<String> knowledgeBaseIds) {
+        this.knowledgeBaseIds = knowledgeBaseIds;
+    }
+
+    public List<String> getQuestions() {
+        return questions;
+    }
+
+    public void setQuestions(List<String> questions) {
+        this.questions = questions;
+    }
+
+    public Integer getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Integer concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(Double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public Integer getDenseTopK() {
+        return denseTopK;
+    }
+
+    public void setDenseTopK(Integer denseTopK) {
+        this.denseTopK = denseTopK;
+    }
+
+    public Integer getSparseTopK() {
+        return sparseTopK;
+    }
+
+    public void setSparseTopK(Integer sparseTopK) {
+        this.sparseTopK = sparseTopK;
+    }
+
+    public Boolean getEnableReranking() {
+        return enableReranking;
+    }
+
+    public void setEnableReranking(Boolean enableReranking) {
+        this.enableReranking = enableReranking;
+    }
+
+    public Integer getRerankTopN() {
+        return rerankTopN;
+    }
+
+    public void setRerankTopN(Integer rerankTopN) {
+        this.rerankTopN = rerankTopN;
+    }
+
+    public Float getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(Float minScore) {
+        this.minScore = minScore;
+    }
+}
@@ -0,0 +1,329 @@
+package com.fastgpt.docparser.dto;
+
+import java.util.List;
+
+/**
+ * 批量问答评测任务状态 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class EvaluationStatus {
+
+    /**
+     * 任务 ID
+     */
+    private String jobId;
+
+    /**
+     * 知识库 ID 列表
+     */
+    private List<String> knowledgeBaseIds;
+
+    /**
+     * 并发数
+     */
+    private int concurrency;
+
+    /**
+     * 每秒最多开始的问题数（null 表示不限速）
+     */
+    private Double ratePerSecond;
+
+    /**
+     * 问题总数
+     */
+    private int total;
+
+    /**
+     * 已成功数
+     */
+    private int completed;
+
+    /**
+     * 已失败数
+     */
+    private int failed;
+
+    /**
+     * 是否全部结束
+     */
+    private boolean finished;
+
+    /**
+     * 创建时间
+     */
+    private long createdAt;
+
+    /**
+     * 结束时间（未结束时为 null）
+     */
+    private Long finishedAt;
+
+    /**
+     * 各问题结果（按提交顺序）
+     */
+    private List<QuestionResult> results;
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public List<String> getKnowledgeBaseIds() {
+        return knowledgeBaseIds;
+    }
+
+    public void setKnowledgeBaseIds(List<String> knowledgeBaseIds) {
+        this.knowledgeBaseIds = knowledgeBaseIds;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public Double getRatePerSecond() {
+        return ratePerSecond;
+    }
+
+    public void setRatePerSecond(Double ratePerSecond) {
+        this.ratePerSecond = ratePerSecond;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(long createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public List<QuestionResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<QuestionResult> results) {
+        this.results = results;
+    }
+
+    /**
+     * 单个问题的评测结果
+     */
+    public static class QuestionResult {
+
+        /**
+         * 问题
+         */
+        private String question;
+
+        /**
+         * 状态（QUEUED, RUNNING, COMPLETED, FAILED）
+         */
+        private String status;
+
+        /**
+         * 生成使用的模型
+         */
+        private String model;
+
+        /**
+         * 检索耗时（毫秒）
+         */
+        private Long retrievalTime;
+
+        /**
+         * 参考信息打包与 Prompt 构造耗时（毫秒）
+         */
+        private Long promptTime;
+
+        /**
+         * 生成耗时（毫秒）
+         */
+        private Long generationTime;
+
+        /**
+         * 总耗时（毫秒）
+         */
+        private Long totalTime;
+
+        /**
+         * 检索返回的切片数
+         */
+        private Integer retrievedChunks;
+
+        /**
+         * 检索返回的切片 ID（按排名，切片原文 SHA-1 的前 12 位，用于跨次对比检索结果；不受 Prompt 打包影响）
+         */
+        private List<String> chunkIds;
+
+        /**
+         * 去重并按 Token 预算截取后放入 Prompt 的段落数
+         */
+        private Integer packedChunks;
+
+        /**
+         * 输出 Token 数（上游返回）
+         */
+        private Integer outputTokens;
+
+        /**
+         * 回答
+         */
+        private String answer;
+
+        /**
+         * 失败原因
+         */
+        private String error;
+
+        public String getQuestion() {
+            return question;
+        }
+
+        public void setQuestion(String question) {
+            this.question = question;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public Long getRetrievalTime() {
+            return retrievalTime;
+        }
+
+        public void setRetrievalTime(Long retrievalTime) {
+            this.retrievalTime = retrievalTime;
+        }
+
+        public Long getPromptTime() {
+            return promptTime;
+        }
+
+        public void setPromptTime(Long promptTime) {
+            this.promptTime = promptTime;
+        }
+
+        public Long getGenerationTime() {
+            return generationTime;
+        }
+
+        public void setGenerationTime(Long generationTime) {
+            this.generationTime = generationTime;
+        }
+
+        public Long getTotalTime() {
+            return totalTime;
+        }
+
+        public void setTotalTime(Long totalTime) {
+            this.totalTime = totalTime;
+        }
+
+        public Integer getRetrievedChunks() {
+            return retrievedChunks;
+        }
+
+        public void setRetrievedChunks(Integer retrievedChunks) {
+            this.retrievedChunks = retrievedChunks;
+        }
+
+        public Integer getPackedChunks() {
+            return packedChunks;
+        }
+
+        public void setPackedChunks(Integer packedChunks) {
+            this.packedChunks = packedChunks;
+        }
+
+        public List<String> getChunkIds() {
+            return chunkIds;
+        }
+
+        public void setChunkIds(List<String> chunkIds) {
+            this.chunkIds = chunkIds;
+        }
+
+        public Integer getOutputTokens() {
+            return outputTokens;
+        }
+
+        public void setOutputTokens(Integer outputTokens) {
+            this.outputTokens = outputTokens;
+        }
+
+        public String getAnswer() {
+            return answer;
+        }
+
+        public void setAnswer(String answer) {
+            this.answer = answer;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public void setError(String error) {
+            this.error = error;
+        }
+    }
+}
@@ -22,6 +22,11 @@ public class HistoryRecord {
      */
     private String markdownContent;
 
+    /**
+     * Markdown 内容哈希（结果存储中的引用）
+     */
+    private String contentHash;
+
     /**
      * 图片数量
      */
@@ -84,6 +89,14 @@ public void setMarkdownContent(String markdownContent) {
         this.markdownContent = markdownContent;
     }
 
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public int getImageCount() {
         return imageCount;
     }
@@ -120,6 +133,7 @@ public static class Builder {
         private String id;
         private String originalFilename;
         private String markdownContent;
+        private String contentHash;
         private int imageCount;
         private String filePath;
         private long processingTime;
@@ -140,6 +154,11 @@ public Builder markdownContent(String markdownContent) {
             return this;
         }
 
+        public Builder contentHash(String contentHash) {
+            this.contentHash = contentHash;
+            return this;
+        }
+
         public Builder imageCount(int imageCount) {
             this.imageCount = imageCount;
             return this;
@@ -161,8 +180,10 @@ public Builder createdAt(long createdAt) {
         }
 
         public HistoryRecord build() {
-            return new HistoryRecord(id, originalFilename, markdownContent,
+            HistoryRecord record = new HistoryRecord(id, originalFilename, markdownContent,
                     imageCount, filePath, processingTime, createdAt);
+            record.setContentHash(contentHash);
+            return record;
         }
     }
 }
@@ -32,6 +32,26 @@ public class KnowledgeBaseDTO {
      */
     private String status;
 
+    /**
+     * 文档数量（本地统计）
+     */
+    private Integer documentCount;
+
+    /**
+     * 文档总大小（字节，本地统计）
+     */
+    private Long totalSize;
+
+    /**
+     * 最近更新时间
+     */
+    private Long updatedAt;
+
+    /**
+     * 检索参数默认值
+     */
+    private RetrievalOptions retrievalOptions;
+
     public KnowledgeBaseDTO() {
     }
 
@@ -79,6 +99,38 @@ public void setStatus(String status) {
         this.status = status;
     }
 
+    public Integer getDocumentCount() {
+        return documentCount;
+    }
+
+    public void setDocumentCount(Integer documentCount) {
+        this.documentCount = documentCount;
+    }
+
+    public Long getTotalSize() {
+        return totalSize;
+    }
+
+    public void setTotalSize(Long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    public Long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public RetrievalOptions getRetrievalOptions() {
+        return retrievalOptions;
+    }
+
+    public void setRetrievalOptions(RetrievalOptions retrievalOptions) {
+        this.retrievalOptions = retrievalOptions;
+    }
+
     public static class Builder {
         private final KnowledgeBaseDTO dto = new KnowledgeBaseDTO();
 
@@ -107,6 +159,26 @@ public Builder status(String status) {
             return this;
         }
 
+        public Builder documentCount(Integer documentCount) {
+            dto.documentCount = documentCount;
+            return this;
+        }
+
+        public Builder totalSize(Long totalSize) {
+            dto.totalSize = totalSize;
+            return this;
+        }
+
+        public Builder updatedAt(Long updatedAt) {
+            dto.updatedAt = updatedAt;
+            return this;
+        }
+
+        public Builder retrievalOptions(RetrievalOptions retrievalOptions) {
+            dto.retrievalOptions = retrievalOptions;
+            return this;
+        }
+
         public KnowledgeBaseDTO build() {
             return dto;
         }
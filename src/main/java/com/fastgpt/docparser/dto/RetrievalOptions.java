@@ -0,0 +1,93 @@
+package com.fastgpt.docparser.dto;
+
+/**
+ * 检索参数 DTO
+ * 各字段均可为空，为空时依次回退到知识库默认值、百炼默认值
+ *
+ * @author ZHONG WEI
+ */
+public class RetrievalOptions {
+
+    /**
+     * 向量检索返回的切片数
+     */
+    private Integer denseTopK;
+
+    /**
+     * 关键词检索返回的切片数
+     */
+    private Integer sparseTopK;
+
+    /**
+     * 是否开启重排序
+     */
+    private Boolean enableReranking;
+
+    /**
+     * 重排序后保留的切片数
+     */
+    private Integer rerankTopN;
+
+    /**
+     * 相似度阈值，低于该分数的切片被过滤
+     */
+    private Float minScore;
+
+    public RetrievalOptions() {
+    }
+
+    public Integer getDenseTopK() {
+        return denseTopK;
+    }
+
+    public void setDenseTopK(Integer denseTopK) {
+        this.denseTopK = denseTopK;
+    }
+
+    public Integer getSparseTopK() {
+        return sparseTopK;
+    }
+
+    public void setSparseTopK(Integer sparseTopK) {
+        this.sparseTopK = sparseTopK;
+    }
+
+    public Boolean getEnableReranking() {
+        return enableReranking;
+    }
+
+    public void setEnableReranking(Boolean enableReranking) {
+        this.enableReranking = enableReranking;
+    }
+
+    public Integer getRerankTopN() {
+        return rerankTopN;
+    }
+
+    public void setRerankTopN(Integer rerankTopN) {
+        this.rerankTopN = rerankTopN;
+    }
+
+    public Float getMinScore() {
+        return minScore;
+    }
+
+    public void setMinScore(Float minScore) {
+        this.minScore = minScore;
+    }
+
+    /**
+     * 参数签名，用于缓存键和按参数分组的统计（未设置的字段记为 -）
+     */
+    public String signature() {
+        return "dense=" + orDash(denseTopK)
+                + ",sparse=" + orDash(sparseTopK)
+                + ",rerank=" + orDash(enableReranking)
+                + ",topN=" + orDash(rerankTopN)
+                + ",minScore=" + orDash(minScore);
+    }
+
+    private static String orDash(Object value) {
+        return value != null ? value.toString() : "-";
+    }
+}
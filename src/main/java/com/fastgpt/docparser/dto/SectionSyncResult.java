@@ -0,0 +1,100 @@
+package com.fastgpt.docparser.dto;
+
+/**
+ * 章节级增量同步结果 DTO
+ *
+ * @author ZHONG WEI
+ */
+public class SectionSyncResult {
+
+    /**
+     * 知识库 ID
+     */
+    private String indexId;
+
+    /**
+     * 文档名称
+     */
+    private String documentName;
+
+    /**
+     * 文档当前章节数
+     */
+    private int totalSections;
+
+    /**
+     * 新增或内容变化的章节数（本次上传并索引）
+     */
+    private int addedSections;
+
+    /**
+     * 已删除的章节数（从知识库移除）
+     */
+    private int removedSections;
+
+    /**
+     * 未变化的章节数
+     */
+    private int unchangedSections;
+
+    /**
+     * 耗时（毫秒）
+     */
+    private long elapsed;
+
+    public String getIndexId() {
+        return indexId;
+    }
+
+    public void setIndexId(String indexId) {
+        this.indexId = indexId;
+    }
+
+    public String getDocumentName() {
+        return documentName;
+    }
+
+    public void setDocumentName(String documentName) {
+        this.documentName = documentName;
+    }
+
+    public int getTotalSections() {
+        return totalSections;
+    }
+
+    public void setTotalSections(int totalSections) {
+        this.totalSections = totalSections;
+    }
+
+    public int getAddedSections() {
+        return addedSections;
+    }
+
+    public void setAddedSections(int addedSections) {
+        this.addedSections = addedSections;
+    }
+
+    public int getRemovedSections() {
+        return removedSections;
+    }
+
+    public void setRemovedSections(int removedSections) {
+        this.removedSections = removedSections;
+    }
+
+    public int getUnchangedSections() {
+        return unchangedSections;
+    }
+
+    public void setUnchangedSections(int unchangedSections) {
+        this.unchangedSections = unchangedSections;
+    }
+
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    public void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+}
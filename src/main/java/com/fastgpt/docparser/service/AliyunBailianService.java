@@ -88,7 +88,8 @@ private Client createClient() {
 
             Config config = new Config()
                 .setCredential(credential)
-                .setEndpoint(properties.getEndpoint());
+                .setEndpoint(properties.getEndpoint())
+                .setProtocol(properties.getProtocol());
 
             return new Client(config);
         } catch (Exception e) {
@@ -0,0 +1,302 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.IngestionProperties;
+import com.fastgpt.docparser.dto.BulkUploadStatus;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 知识库批量导入服务
+ * 将文档导入拆分为 解析 → 上传 → 索引 三个阶段，解析和上传阶段独立线程池限流，
+ * 索引阶段由 {@link IndexJobCoalescer} 合并提交并限制进行中的任务数，
+ * 不同文件的各阶段可以重叠执行，总耗时取决于最慢的阶段而不是各阶段之和
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class BulkIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkIngestionService.class);
+
+    private final KnowledgeBaseService knowledgeBaseService;
+    private final DocumentCatalogService documentCatalogService;
+    private final IngestionProperties properties;
+    private final ExecutorService parseExecutor;
+    private final ExecutorService uploadExecutor;
+    private final Map<String, BulkJob> jobs = new LinkedHashMap<>();
+
+    public BulkIngestionService(KnowledgeBaseService knowledgeBaseService,
+                                DocumentCatalogService documentCatalogService,
+                                IngestionProperties properties) {
+        this.knowledgeBaseService = knowledgeBaseService;
+        this.documentCatalogService = documentCatalogService;
+        this.properties = properties;
+        this.parseExecutor = newStageExecutor("ingest-parse", properties.getParseConcurrency());
+        this.uploadExecutor = newStageExecutor("ingest-upload", properties.getUploadConcurrency());
+    }
+
+    /**
+     * 提交批量上传任务
+     * 文件在请求线程内先落盘（请求结束后 MultipartFile 将失效），随后异步进入流水线
+     */
+    public BulkUploadStatus submit(String indexId, List<MultipartFile> files) {
+        if (files == null || files.isEmpty()) {
+            throw new BusinessException(400, "请至少选择一个文件");
+        }
+        if (files.size() > properties.getMaxBatchFiles()) {
+            throw new BusinessException(400, "单次最多上传 " + properties.getMaxBatchFiles() + " 个文件");
+        }
+
+        BulkJob job = new BulkJob(UUID.randomUUID().toString().substring(0, 8), indexId);
+        for (MultipartFile file : files) {
+            BulkItem item = new BulkItem(file.getOriginalFilename());
+            try {
+                item.tmpFilePath = knowledgeBaseService.saveToTmpDir(file);
+            } catch (Exception e) {
+                log.error("保存文件失败: {}", file.getOriginalFilename(), e);
+                item.fail("保存文件失败: " + e.getMessage());
+            }
+            job.items.add(item);
+        }
+
+        if (job.isFinished()) {
+            job.finishedAt = System.currentTimeMillis();
+        }
+        registerJob(job);
+        log.info("批量上传任务已创建: {}，知识库: {}，文件数: {}", job.id, indexId, files.size());
+
+        for (BulkItem item : job.items) {
+            if (item.tmpFilePath != null) {
+                startPipeline(job, item);
+            }
+        }
+        return toStatus(job);
+    }
+
+    /**
+     * 查询批量上传任务状态
+     */
+    public BulkUploadStatus getStatus(String jobId) {
+        BulkJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new BusinessException(404, "批量上传任务不存在: " + jobId);
+        }
+        return toStatus(job);
+    }
+
+    /**
+     * 单个文件依次经过三个阶段，每个阶段在各自的线程池中执行
+     */
+    private void startPipeline(BulkJob job, BulkItem item) {
+        CompletableFuture
+                .supplyAsync(() -> parseStage(job, item), parseExecutor)
+                .thenApplyAsync(markdownFile -> uploadStage(item, markdownFile), uploadExecutor)
+                .thenCompose(fileId -> indexStage(job, item, fileId))
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        log.error("批量上传文件失败: {}", item.filename, cause);
+                        item.fail(cause.getMessage());
+                        if (item.reused) {
+                            // 复用的 FileId 可能已失效，清除后重试将重新上传
+                            documentCatalogService.forgetFileId(item.fingerprint);
+                        }
+                    } else {
+                        item.complete();
+                    }
+                    knowledgeBaseService.cleanupTmpFiles(item.tmpFilePath,
+                            item.markdownFile != null ? item.markdownFile.path : null);
+                    job.onItemFinished();
+                });
+    }
+
+    /**
+     * 解析阶段：指纹目录中已有 FileId 的文档跳过解析，直接进入索引阶段
+     */
+    private KnowledgeBaseService.MarkdownFile parseStage(BulkJob job, BulkItem item) {
+        item.start("PARSING");
+        try {
+            item.fingerprint = documentCatalogService.fingerprint(item.tmpFilePath);
+            DocumentCatalogService.CatalogEntry entry = documentCatalogService.find(item.fingerprint);
+            if (entry != null && entry.fileId != null) {
+                log.info("文档已上传过，跳过解析和上传: {}，FileId: {}", item.filename, entry.fileId);
+                item.fileId = entry.fileId;
+                item.reused = true;
+                item.alreadyIndexed = entry.indexIds.contains(job.indexId);
+                return null;
+            }
+            item.markdownFile = knowledgeBaseService.convertToMarkdown(item.tmpFilePath, item.fingerprint, item.filename);
+            return item.markdownFile;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private String uploadStage(BulkItem item, KnowledgeBaseService.MarkdownFile markdownFile) {
+        if (item.reused) {
+            return item.fileId;
+        }
+        item.stage = "UPLOADING";
+        try {
+            item.fileId = knowledgeBaseService.publishMarkdown(
+                    knowledgeBaseService.toMarkdownFilename(item.filename), markdownFile);
+            documentCatalogService.recordFileId(item.fingerprint, item.filename, item.fileId);
+            return item.fileId;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private CompletableFuture<Void> indexStage(BulkJob job, BulkItem item, String fileId) {
+        if (item.alreadyIndexed) {
+            return CompletableFuture.completedFuture(null);
+        }
+        item.stage = "INDEXING";
+        return knowledgeBaseService.indexDocumentAsync(job.indexId, fileId)
+                .thenRun(() -> knowledgeBaseService.onDocumentIndexed(job.indexId, item.fingerprint,
+                        item.markdownFile != null ? item.markdownFile.size : documentCatalogService.markdownSize(item.fingerprint)));
+    }
+
+    /**
+     * 登记任务，超出保留数量时淘汰最早已结束的任务
+     */
+    private void registerJob(BulkJob job) {
+        synchronized (jobs) {
+            jobs.put(job.id, job);
+            Iterator<BulkJob> iterator = jobs.values().iterator();
+            while (jobs.size() > properties.getMaxRetainedJobs() && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private BulkUploadStatus toStatus(BulkJob job) {
+        List<BulkUploadStatus.FileStatus> files = job.items.stream()
+                .map(BulkItem::toStatus)
+                .collect(Collectors.toList());
+
+        BulkUploadStatus status = new BulkUploadStatus();
+        status.setJobId(job.id);
+        status.setIndexId(job.indexId);
+        status.setTotal(files.size());
+        status.setCompleted((int) files.stream().filter(f -> "COMPLETED".equals(f.getStage())).count());
+        status.setFailed((int) files.stream().filter(f -> "FAILED".equals(f.getStage())).count());
+        status.setFinished(job.isFinished());
+        status.setCreatedAt(job.createdAt);
+        status.setFinishedAt(job.finishedAt);
+        status.setFiles(files);
+        return status;
+    }
+
+    private static ExecutorService newStageExecutor(String name, int threads) {
+        return Executors.newFixedThreadPool(Math.max(1, threads), new DaemonThreadFactory(name));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseExecutor.shutdownNow();
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * 批量任务
+     */
+    private static class BulkJob {
+        final String id;
+        final String indexId;
+        final long createdAt = System.currentTimeMillis();
+        final List<BulkItem> items = new ArrayList<>();
+        final AtomicInteger finishedCount = new AtomicInteger();
+        volatile Long finishedAt;
+
+        BulkJob(String id, String indexId) {
+            this.id = id;
+            this.indexId = indexId;
+        }
+
+        void onItemFinished() {
+            if (finishedCount.incrementAndGet() >= countPending()) {
+                finishedAt = System.currentTimeMillis();
+                log.info("批量上传任务结束: {}", id);
+            }
+        }
+
+        /**
+         * 进入流水线的文件数（落盘失败的文件直接记为失败，不进入流水线）
+         */
+        private int countPending() {
+            return (int) items.stream().filter(item -> item.tmpFilePath != null).count();
+        }
+
+        boolean isFinished() {
+            return finishedCount.get() >= countPending();
+        }
+    }
+
+    /**
+     * 批量任务中的单个文件
+     */
+    private static class BulkItem {
+        final String filename;
+        Path tmpFilePath;
+        volatile String fingerprint;
+        volatile boolean reused;
+        volatile boolean alreadyIndexed;
+        volatile KnowledgeBaseService.MarkdownFile markdownFile;
+        volatile String stage = "QUEUED";
+        volatile String fileId;
+        volatile String error;
+        volatile Long startedAt;
+        volatile Long finishedAt;
+
+        BulkItem(String filename) {
+            this.filename = filename;
+        }
+
+        void start(String stage) {
+            this.startedAt = System.currentTimeMillis();
+            this.stage = stage;
+        }
+
+        void complete() {
+            this.finishedAt = System.currentTimeMillis();
+            this.stage = "COMPLETED";
+        }
+
+        void fail(String error) {
+            this.finishedAt = System.currentTimeMillis();
+            this.error = error;
+            this.stage = "FAILED";
+        }
+
+        BulkUploadStatus.FileStatus toStatus() {
+            BulkUploadStatus.FileStatus status = new BulkUploadStatus.FileStatus();
+            status.setFilename(filename);
+            status.setStage(stage);
+            status.setFileId(fileId);
+            status.setError(error);
+            status.setStartedAt(startedAt);
+            if (startedAt != null) {
+                long end = finishedAt != null ? finishedAt : System.currentTimeMillis();
+                status.setElapsed(end - startedAt);
+            }
+            return status;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 相同问题合并生成（single-flight）
+ * 同一组知识库、相同检索参数下归一化后相同的问题同时到达时，只由第一个请求执行检索和生成，
+ * 其余请求订阅该次生成：先收到已生成的内容，之后与发起者同步收到增量内容；
+ * 全部订阅者断开后才取消上游生成。
+ * 每个订阅者有独立的发送队列，由发送线程池依次发送，发起者的生成线程只负责入队，
+ * 慢速客户端不会拖慢生成和其他订阅者。
+ * 合并的请求不占用对话执行器的线程，同时合并的请求数另按 chat.max-concurrent-streams 限制，
+ * 超出时与执行器一样返回繁忙；发送线程数不超过对话数上限的两倍（发起者与合并的请求各一份）
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class ChatCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatCoalescer.class);
+
+    private final ChatProperties properties;
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor sender;
+    private final Semaphore followerSlots;
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong joined = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public ChatCoalescer(ChatProperties properties) {
+        this.properties = properties;
+        int streams = Math.max(1, properties.getMaxConcurrentStreams());
+        this.followerSlots = new Semaphore(streams);
+        // 每个订阅者同一时间最多占用一个发送线程，订阅者总数不超过 发起者 + 合并的请求
+        this.sender = new ThreadPoolExecutor(2 * streams, 2 * streams, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new DaemonThreadFactory("chat-coalesce"));
+        this.sender.allowCoreThreadTimeOut(true);
+    }
+
+    public boolean isEnabled() {
+        return properties.isCoalesceIdentical();
+    }
+
+    /**
+     * 合并键：知识库及其检索参数（按知识库排序）+ 归一化问题
+     *
+     * @param settings 知识库 ID -> 检索参数签名
+     */
+    public static String key(Map<String, String> settings, String question) {
+        return new TreeMap<>(settings) + "|" + RetrievalCacheService.normalize(question);
+    }
+
+    /**
+     * 加入相同问题的生成
+     *
+     * @param subscriber   本请求的回调
+     * @param cancellation 本请求的取消信号，取消时退订
+     * @return 没有进行中的生成时返回新建的生成，由调用方通过 {@link Flight#callback()} 执行；
+     * 已加入进行中的生成时返回 null
+     * @throws BusinessException 同时合并的请求数已达上限（503）
+     */
+    public Flight join(String key, RagChatService.StreamCallback subscriber, StreamCancellation cancellation) {
+        while (true) {
+            Flight flight = flights.computeIfAbsent(key, Flight::new);
+            if (flight.subscribe(subscriber, cancellation)) {
+                if (flight.leader == subscriber) {
+                    started.incrementAndGet();
+                    return flight;
+                }
+                joined.incrementAndGet();
+                log.info("相同问题正在生成，合并到进行中的请求（订阅者 {} 个）", flight.subscriberCount());
+                return null;
+            }
+            // 该生成刚刚结束或被取消，从映射中移除后重试
+            flights.remove(key, flight);
+        }
+    }
+
+    /**
+     * 合并统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("coalesceIdentical", properties.isCoalesceIdentical());
+        stats.put("inFlight", flights.size());
+        stats.put("flightsStarted", started.get());
+        stats.put("flightsJoined", joined.get());
+        stats.put("joinsRejected", rejected.get());
+        stats.put("activeFollowers", Math.max(1, properties.getMaxConcurrentStreams()) - followerSlots.availablePermits());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        sender.shutdownNow();
+    }
+
+    /**
+     * 一次共享的生成：把发起者的回调分发给所有订阅者，并缓存已生成的内容供后加入者补发
+     */
+    public class Flight implements RagChatService.StreamCallback {
+
+        private final String key;
+        private final StreamCancellation cancellation = new StreamCancellation();
+        private final StringBuilder buffer = new StringBuilder();
+        private final Map<RagChatService.StreamCallback, Subscriber> subscribers = new LinkedHashMap<>();
+        private RagChatService.StreamCallback leader;
+        private boolean closed;
+
+        Flight(String key) {
+            this.key = key;
+        }
+
+        /**
+         * 上游生成使用的回调
+         */
+        public RagChatService.StreamCallback callback() {
+            return this;
+        }
+
+        /**
+         * 上游生成使用的取消信号：全部订阅者断开后取消
+         */
+        public StreamCancellation cancellation() {
+            return cancellation;
+        }
+
+        private synchronized int subscriberCount() {
+            return subscribers.size();
+        }
+
+        private boolean subscribe(RagChatService.StreamCallback callback, StreamCancellation subscriberCancellation) {
+            Subscriber subscriber = new Subscriber(callback);
+            synchronized (this) {
+                if (closed) {
+                    return false;
+                }
+                if (leader == null) {
+                    leader = callback;
+                } else if (followerSlots.tryAcquire()) {
+                    subscriber.follower = true;
+                } else {
+                    rejected.incrementAndGet();
+                    log.warn("合并的对话请求过多，拒绝请求（进行中的合并请求: {}）", properties.getMaxConcurrentStreams());
+                    throw new BusinessException(503, "当前对话请求过多，请稍后重试");
+                }
+                // 补发在入队时确定顺序，之后的增量内容排在其后
+                if (buffer.length() > 0) {
+                    String replay = buffer.toString();
+                    subscriber.send(target -> target.onData(replay));
+                }
+                subscribers.put(callback, subscriber);
+            }
+            StreamCancellation.Registration registration = subscriberCancellation.onCancel(() -> unsubscribe(callback));
+            synchronized (this) {
+                if (subscribers.get(callback) == subscriber) {
+                    subscriber.registration = registration;
+                }
+            }
+            return true;
+        }
+
+        private void unsubscribe(RagChatService.StreamCallback callback) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                Subscriber subscriber = subscribers.remove(callback);
+                if (subscriber != null) {
+                    subscriber.discard();
+                    subscriber.release();
+                }
+                if (!subscribers.isEmpty()) {
+                    return;
+                }
+                closed = true;
+            }
+            flights.remove(key, this);
+            log.info("合并生成的订阅者已全部断开，取消上游生成");
+            cancellation.cancel();
+        }
+
+        @Override
+        public synchronized void onData(String chunk) {
+            if (closed) {
+                return;
+            }
+            buffer.append(chunk);
+            for (Subscriber subscriber : subscribers.values()) {
+                subscriber.send(target -> target.onData(chunk));
+            }
+        }
+
+        @Override
+        public synchronized void onTruncated() {
+            if (closed) {
+                return;
+            }
+            for (Subscriber subscriber : subscribers.values()) {
+                subscriber.send(RagChatService.StreamCallback::onTruncated);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            for (Subscriber subscriber : close()) {
+                subscriber.send(RagChatService.StreamCallback::onComplete);
+            }
+        }
+
+        @Override
+        public void onError(String error) {
+            for (Subscriber subscriber : close()) {
+                subscriber.send(target -> target.onError(error));
+            }
+        }
+
+        /**
+         * 结束生成：不再接受新订阅者，返回需要通知的订阅者
+         */
+        private List<Subscriber> close() {
+            List<Subscriber> pending;
+            synchronized (this) {
+                if (closed) {
+                    return List.of();
+                }
+                closed = true;
+                pending = new ArrayList<>(subscribers.values());
+                pending.stream().map(subscriber -> subscriber.registration)
+                        .filter(Objects::nonNull).forEach(StreamCancellation.Registration::close);
+                pending.forEach(Subscriber::release);
+                subscribers.clear();
+            }
+            flights.remove(key, this);
+            return pending;
+        }
+    }
+
+    /**
+     * 订阅者及其发送队列：入队不阻塞，同一订阅者的回调按入队顺序在发送线程上依次执行
+     */
+    private class Subscriber {
+
+        private final RagChatService.StreamCallback callback;
+        private final Queue<Consumer<RagChatService.StreamCallback>> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean discarded;
+        private boolean follower;
+        private StreamCancellation.Registration registration;
+
+        Subscriber(RagChatService.StreamCallback callback) {
+            this.callback = callback;
+        }
+
+        void send(Consumer<RagChatService.StreamCallback> action) {
+            synchronized (queue) {
+                if (discarded) {
+                    return;
+                }
+                queue.add(action);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                sender.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                discard();
+            }
+        }
+
+        /**
+         * 归还合并请求的名额（调用时持有所属生成的锁，每个订阅者只归还一次）
+         */
+        void release() {
+            if (follower) {
+                follower = false;
+                followerSlots.release();
+            }
+        }
+
+        /**
+         * 订阅者已断开：丢弃尚未发送的内容
+         */
+        void discard() {
+            synchronized (queue) {
+                discarded = true;
+                queue.clear();
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Consumer<RagChatService.StreamCallback> action;
+                synchronized (queue) {
+                    action = queue.poll();
+                    if (action == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                // 单个订阅者发送失败不影响其他订阅者
+                try {
+                    action.accept(callback);
+                } catch (Exception e) {
+                    log.warn("向合并生成的订阅者发送失败: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
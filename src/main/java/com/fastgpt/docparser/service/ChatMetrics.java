@@ -0,0 +1,157 @@
+package com.fastgpt.docparser.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 对话各阶段耗时指标（Micrometer，经 Actuator 以 Prometheus 格式导出）
+ * 每次对话记录检索、Prompt 构造、上游连接、首 Token、生成速度和总耗时，
+ * 按知识库与结果（success / error / cancelled / coalesced）打标签
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class ChatMetrics {
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    /**
+     * 合并到其他请求的生成并成功收到完整回答
+     */
+    public static final String OUTCOME_COALESCED = "coalesced";
+
+    private final MeterRegistry registry;
+
+    public ChatMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * 开始记录一次对话
+     *
+     * @param indexIds 检索的知识库，多个时标签为 multiple，避免标签组合过多
+     */
+    public Trace start(List<String> indexIds) {
+        return new Trace(indexIds.size() == 1 ? indexIds.get(0) : "multiple");
+    }
+
+    /**
+     * 记录排队等待时间（对话执行器调用）
+     */
+    public void recordQueueWait(long millis) {
+        Timer.builder("rag.chat.queue.wait")
+                .description("对话开始执行前的排队时间")
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(millis, TimeUnit.MILLISECONDS);
+    }
+
+    private void recordTimer(String name, String description, long nanos, String knowledgeBase, String outcome) {
+        if (nanos < 0) {
+            return;
+        }
+        Timer.builder(name)
+                .description(description)
+                .tag("knowledge_base", knowledgeBase)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 一次对话的各阶段耗时，由生成线程依次填写，结束时一次性写入指标
+     */
+    public class Trace {
+
+        private final String knowledgeBase;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private long retrievalNanos = -1;
+        private long promptNanos = -1;
+        private long connectNanos = -1;
+        private long firstTokenAt = -1;
+        private int outputTokens;
+        private int fragments;
+
+        Trace(String knowledgeBase) {
+            this.knowledgeBase = knowledgeBase;
+        }
+
+        public void retrieval(long nanos) {
+            this.retrievalNanos = nanos;
+        }
+
+        public void promptBuilt(long nanos) {
+            this.promptNanos = nanos;
+        }
+
+        /**
+         * 上游请求已返回响应头
+         */
+        public void connected(long nanos) {
+            this.connectNanos = nanos;
+        }
+
+        /**
+         * 收到一个增量片段
+         */
+        public void fragment() {
+            if (firstTokenAt < 0) {
+                firstTokenAt = System.nanoTime();
+            }
+            fragments++;
+        }
+
+        /**
+         * 上游返回的累计输出 Token 数（usage.output_tokens）
+         */
+        public void outputTokens(int tokens) {
+            this.outputTokens = tokens;
+        }
+
+        /**
+         * 放弃记录（之后的 finish 不再写入指标）
+         */
+        public void discard() {
+            finished.set(true);
+        }
+
+        /**
+         * 结束记录（重复调用只记录第一次）
+         */
+        public void finish(String outcome) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            recordTimer("rag.chat.retrieval", "知识库检索耗时", retrievalNanos, knowledgeBase, outcome);
+            recordTimer("rag.chat.prompt.build", "参考信息打包与 Prompt 构造耗时", promptNanos, knowledgeBase, outcome);
+            recordTimer("rag.chat.upstream.connect", "大模型请求到返回响应头的耗时", connectNanos, knowledgeBase, outcome);
+            recordTimer("rag.chat.ttft", "开始处理到首个 Token 的耗时", firstTokenAt < 0 ? -1 : firstTokenAt - startedAt,
+                    knowledgeBase, outcome);
+            recordTimer("rag.chat.duration", "对话总耗时", now - startedAt, knowledgeBase, outcome);
+
+            // 生成速度：首 Token 之后的输出 Token 数 / 生成耗时；上游未返回用量时按片段数估算
+            int tokens = outputTokens > 0 ? outputTokens : fragments;
+            long generationNanos = firstTokenAt < 0 ? 0 : now - firstTokenAt;
+            if (tokens > 1 && generationNanos > 0) {
+                DistributionSummary.builder("rag.chat.tokens.per.second")
+                        .description("生成速度")
+                        .baseUnit("tokens")
+                        .tag("knowledge_base", knowledgeBase)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(registry)
+                        .record(tokens / (generationNanos / 1e9));
+            }
+        }
+    }
+}
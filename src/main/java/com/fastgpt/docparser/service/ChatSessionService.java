@@ -0,0 +1,238 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import com.fastgpt.docparser.dto.ChatSessionDTO;
+import com.fastgpt.docparser.dto.ChatTurn;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 对话会话服务
+ * 在内存中保存多轮对话历史：会话数按 LRU 淘汰，空闲超时后过期；
+ * 单个会话超出轮次或字符数上限时，较早的轮次在后台压缩进滚动摘要，
+ * 使每轮 Prompt 中的历史长度大致恒定
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class ChatSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatSessionService.class);
+
+    private final ChatProperties properties;
+    private final SessionSummarizer summarizer;
+    private final LinkedHashMap<String, Session> sessions;
+    private final ExecutorService summaryExecutor;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    public ChatSessionService(ChatProperties properties, SessionSummarizer summarizer) {
+        this.properties = properties;
+        this.summarizer = summarizer;
+        // accessOrder = true：按访问顺序排列，最久未使用的在最前
+        this.sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                if (size() > properties.getSessionMaxEntries()) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.summaryExecutor = Executors.newFixedThreadPool(2, new DaemonThreadFactory("session-summary"));
+    }
+
+    /**
+     * 获取会话，会话 ID 为空、不存在或已过期时创建新会话
+     *
+     * @return 会话快照（摘要和最近轮次）
+     */
+    public ChatSessionDTO resolve(String sessionId) {
+        Session session;
+        synchronized (this) {
+            removeExpired();
+            session = sessionId != null ? sessions.get(sessionId) : null;
+            if (session == null) {
+                session = new Session(UUID.randomUUID().toString().replace("-", ""));
+                sessions.put(session.id, session);
+                created.incrementAndGet();
+                if (sessionId != null) {
+                    log.info("会话 {} 不存在或已过期，创建新会话 {}", sessionId, session.id);
+                }
+            }
+        }
+        return session.snapshot();
+    }
+
+    /**
+     * 查询会话
+     */
+    public ChatSessionDTO get(String sessionId) {
+        Session session;
+        synchronized (this) {
+            removeExpired();
+            session = sessions.get(sessionId);
+        }
+        if (session == null) {
+            throw new BusinessException(404, "会话不存在或已过期: " + sessionId);
+        }
+        return session.snapshot();
+    }
+
+    /**
+     * 删除会话
+     */
+    public synchronized void delete(String sessionId) {
+        sessions.remove(sessionId);
+    }
+
+    /**
+     * 记录一轮完整的问答，超出上限时在后台压缩较早的轮次
+     */
+    public void appendTurn(String sessionId, String question, String answer) {
+        Session session;
+        synchronized (this) {
+            session = sessions.get(sessionId);
+        }
+        if (session == null) {
+            return;
+        }
+
+        List<ChatTurn> folded;
+        String previousSummary;
+        synchronized (session) {
+            // 单轮回答过长时只保留开头，避免一轮占满整个会话的预算
+            String stored = answer.length() > properties.getSessionMaxChars() / 2
+                    ? answer.substring(0, properties.getSessionMaxChars() / 2) + "…" : answer;
+            session.turns.add(new ChatTurn(question, stored, System.currentTimeMillis()));
+            session.touch();
+
+            int foldCount = session.compacting ? 0 : session.foldCount();
+            if (foldCount == 0) {
+                return;
+            }
+            folded = new ArrayList<>(session.turns.subList(0, foldCount));
+            previousSummary = session.summary;
+            session.compacting = true;
+        }
+
+        try {
+            summaryExecutor.execute(() -> compact(session, previousSummary, folded));
+        } catch (RejectedExecutionException e) {
+            synchronized (session) {
+                session.compacting = false;
+            }
+        }
+    }
+
+    /**
+     * 会话统计信息
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", sessions.size());
+        }
+        stats.put("maxEntries", properties.getSessionMaxEntries());
+        stats.put("idleTimeout", properties.getSessionIdleTimeout());
+        stats.put("created", created.get());
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    /**
+     * 把较早的轮次合并进摘要（压缩期间新增的轮次追加在末尾，不受影响）
+     */
+    private void compact(Session session, String previousSummary, List<ChatTurn> folded) {
+        String summary = summarizer.summarize(previousSummary, folded);
+        synchronized (session) {
+            session.turns.subList(0, folded.size()).clear();
+            session.summary = summary;
+            session.compacting = false;
+        }
+        compactions.incrementAndGet();
+        log.debug("会话 {} 已压缩 {} 轮对话，摘要 {} 字", session.id, folded.size(), summary.length());
+    }
+
+    /**
+     * 清除空闲过期的会话（访问顺序排列，从最久未使用的开始检查）
+     */
+    private void removeExpired() {
+        long deadline = System.currentTimeMillis() - properties.getSessionIdleTimeout();
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (session.lastAccessedAt >= deadline) {
+                break;
+            }
+            iterator.remove();
+            expirations.incrementAndGet();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        summaryExecutor.shutdownNow();
+    }
+
+    private class Session {
+        final String id;
+        final long createdAt = System.currentTimeMillis();
+        final List<ChatTurn> turns = new ArrayList<>();
+        volatile long lastAccessedAt = createdAt;
+        String summary;
+        boolean compacting;
+
+        Session(String id) {
+            this.id = id;
+        }
+
+        void touch() {
+            lastAccessedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 需要压缩的最早轮次数：超出轮次或字符数上限的部分，至少保留最近一轮
+         */
+        int foldCount() {
+            int chars = 0;
+            for (ChatTurn turn : turns) {
+                chars += turn.getQuestion().length() + turn.getAnswer().length();
+            }
+            int count = 0;
+            while (turns.size() - count > 1
+                    && (turns.size() - count > properties.getSessionRecentTurns()
+                    || chars > properties.getSessionMaxChars())) {
+                ChatTurn turn = turns.get(count++);
+                chars -= turn.getQuestion().length() + turn.getAnswer().length();
+            }
+            return count;
+        }
+
+        synchronized ChatSessionDTO snapshot() {
+            touch();
+            ChatSessionDTO dto = new ChatSessionDTO();
+            dto.setId(id);
+            dto.setSummary(summary);
+            dto.setTurns(new ArrayList<>(turns));
+            dto.setCreatedAt(createdAt);
+            dto.setUpdatedAt(lastAccessedAt);
+            return dto;
+        }
+    }
+}
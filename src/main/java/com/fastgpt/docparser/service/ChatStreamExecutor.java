@@ -0,0 +1,155 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 流式对话执行器
+ * 固定线程数限制同时进行的对话数，超出部分进入有界队列排队；
+ * 队列已满的对话立即返回繁忙；排队超时由定时任务从队列中移除并返回繁忙，不必等到有空闲线程，
+ * 避免突发流量创建大量线程
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class ChatStreamExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatStreamExecutor.class);
+
+    private final ChatProperties properties;
+    private final ChatMetrics chatMetrics;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong totalQueueWait = new AtomicLong();
+    private final LongAccumulator maxQueueWait = new LongAccumulator(Long::max, 0);
+
+    public ChatStreamExecutor(ChatProperties properties, ChatMetrics chatMetrics) {
+        this.properties = properties;
+        this.chatMetrics = chatMetrics;
+        int threads = Math.max(1, properties.getMaxConcurrentStreams());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                new DaemonThreadFactory("chat-stream"));
+        // 空闲时不保留线程
+        this.executor.allowCoreThreadTimeOut(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("chat-queue-timeout"));
+    }
+
+    /**
+     * 提交对话任务
+     *
+     * @param task      对话任务
+     * @param onExpired 排队超时时代替任务执行（通知客户端繁忙）
+     * @throws BusinessException 并发数和队列均已满时抛出（503）
+     */
+    public void execute(Runnable task, Runnable onExpired) {
+        QueuedTask queued = new QueuedTask(task, onExpired);
+        try {
+            executor.execute(queued);
+            submitted.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            log.warn("对话请求过多，拒绝请求（进行中: {}，排队: {}）", executor.getActiveCount(), executor.getQueue().size());
+            throw new BusinessException(503, "当前对话请求过多，请稍后重试");
+        }
+
+        if (properties.getQueueTimeout() > 0 && executor.getQueue().contains(queued)) {
+            try {
+                queued.expiry = timer.schedule(() -> expire(queued), properties.getQueueTimeout(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已关闭
+            }
+        }
+    }
+
+    /**
+     * 排队超时：任务仍在队列中时移除并通知客户端繁忙（已开始执行的任务 remove 返回 false，不受影响）
+     */
+    private void expire(QueuedTask queued) {
+        if (!executor.remove(queued)) {
+            return;
+        }
+        long waited = System.currentTimeMillis() - queued.queuedAt;
+        recordWait(waited);
+        expired.incrementAndGet();
+        completed.incrementAndGet();
+        log.warn("对话排队 {} ms 超时，不再处理", waited);
+        queued.onExpired.run();
+    }
+
+    private void recordWait(long waited) {
+        totalQueueWait.addAndGet(waited);
+        maxQueueWait.accumulate(waited);
+        chatMetrics.recordQueueWait(waited);
+    }
+
+    /**
+     * 执行器统计信息
+     */
+    public Map<String, Object> stats() {
+        long started = completed.get() + executor.getActiveCount();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrentStreams", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", properties.getQueueCapacity());
+        stats.put("submitted", submitted.get());
+        stats.put("completed", completed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("expired", expired.get());
+        stats.put("avgQueueWait", started == 0 ? 0 : totalQueueWait.get() / started);
+        stats.put("maxQueueWait", maxQueueWait.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 排队中的对话任务
+     */
+    private class QueuedTask implements Runnable {
+        final Runnable task;
+        final Runnable onExpired;
+        final long queuedAt = System.currentTimeMillis();
+        volatile ScheduledFuture<?> expiry;
+
+        QueuedTask(Runnable task, Runnable onExpired) {
+            this.task = task;
+            this.onExpired = onExpired;
+        }
+
+        @Override
+        public void run() {
+            ScheduledFuture<?> scheduled = expiry;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            long waited = System.currentTimeMillis() - queuedAt;
+            recordWait(waited);
+            try {
+                task.run();
+            } finally {
+                completed.incrementAndGet();
+            }
+        }
+    }
+}
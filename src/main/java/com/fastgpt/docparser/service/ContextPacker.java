@@ -0,0 +1,193 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.RetrievalProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 参考信息打包
+ * 按相关度顺序依次放入检索到的段落：去掉与已选段落近似重复或被其包含的段落、
+ * 去掉已出现过的图片，直到填满 Token 预算，缩短 Prompt 以降低首 Token 延迟和费用
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class ContextPacker {
+
+    private static final Logger log = LoggerFactory.getLogger(ContextPacker.class);
+    private static final Pattern IMAGE_PATTERN = Pattern.compile("!\\[[^\\]]*]\\(([^)\\s]+)[^)]*\\)");
+    private static final int MIN_TRUNCATED_TOKENS = 100;
+
+    private final RetrievalProperties properties;
+
+    public ContextPacker(RetrievalProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 打包参考信息
+     *
+     * @param references 按相关度从高到低排列的段落
+     * @return 去重并按预算截取后的段落（保持原有顺序）
+     */
+    public List<String> pack(List<String> references) {
+        int budget = properties.getContextTokenBudget();
+        int remaining = budget > 0 ? budget : Integer.MAX_VALUE;
+        int inputTokens = 0;
+
+        List<String> packed = new ArrayList<>();
+        List<Set<Integer>> selectedShingles = new ArrayList<>();
+        Set<String> seenImages = new HashSet<>();
+
+        for (String reference : references) {
+            inputTokens += estimateTokens(reference);
+            String text = removeSeenImages(reference, seenImages).strip();
+            if (text.isEmpty() || remaining <= 0) {
+                continue;
+            }
+
+            Set<Integer> shingles = shingles(text);
+            if (isDuplicate(shingles, selectedShingles)) {
+                continue;
+            }
+
+            int tokens = estimateTokens(text);
+            if (tokens > remaining) {
+                if (remaining < MIN_TRUNCATED_TOKENS) {
+                    break;
+                }
+                text = truncate(text, remaining);
+                tokens = estimateTokens(text);
+            }
+
+            packed.add(text);
+            selectedShingles.add(shingles);
+            collectImages(text, seenImages);
+            remaining -= tokens;
+        }
+
+        if (log.isDebugEnabled()) {
+            int outputTokens = packed.stream().mapToInt(ContextPacker::estimateTokens).sum();
+            log.debug("参考信息打包: {} 段 / 约 {} tokens → {} 段 / 约 {} tokens",
+                    references.size(), inputTokens, packed.size(), outputTokens);
+        }
+        return packed;
+    }
+
+    /**
+     * 估算 Token 数：中日韩文字约 1 字 1 token，其余字符约 4 个 1 token
+     */
+    static int estimateTokens(String text) {
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int cp = text.codePointAt(i);
+            if (Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN) {
+                cjk++;
+            } else if (!Character.isWhitespace(cp)) {
+                other++;
+            }
+            i += Character.charCount(cp);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 按 Token 预算截断，尽量在句末或换行处截断
+     */
+    private static String truncate(String text, int maxTokens) {
+        int low = 0;
+        int high = text.length();
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (estimateTokens(text.substring(0, mid)) <= maxTokens) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        String truncated = text.substring(0, low);
+        // 不截断在图片语法中间
+        int imageStart = truncated.lastIndexOf("![");
+        if (imageStart >= 0 && truncated.indexOf(')', imageStart) < 0) {
+            truncated = truncated.substring(0, imageStart);
+        }
+        int boundary = Math.max(truncated.lastIndexOf('\n'),
+                Math.max(truncated.lastIndexOf('。'), truncated.lastIndexOf(". ")));
+        if (boundary > truncated.length() / 2) {
+            truncated = truncated.substring(0, boundary + 1);
+        }
+        return truncated.strip() + "…";
+    }
+
+    /**
+     * 与任一已选段落的三元组重合度（相对较短一段）达到阈值即视为重复，
+     * 同时覆盖近似重复和切片重叠（一段被另一段包含）两种情况
+     */
+    private boolean isDuplicate(Set<Integer> shingles, List<Set<Integer>> selected) {
+        if (shingles.isEmpty()) {
+            return false;
+        }
+        for (Set<Integer> other : selected) {
+            Set<Integer> smaller = shingles.size() <= other.size() ? shingles : other;
+            Set<Integer> larger = smaller == shingles ? other : shingles;
+            int common = 0;
+            for (Integer shingle : smaller) {
+                if (larger.contains(shingle)) {
+                    common++;
+                }
+            }
+            if (!smaller.isEmpty() && (double) common / smaller.size() >= properties.getDuplicateThreshold()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 字符三元组（忽略空白和大小写）的哈希集合
+     */
+    private static Set<Integer> shingles(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        text.codePoints()
+                .filter(cp -> !Character.isWhitespace(cp))
+                .map(Character::toLowerCase)
+                .forEach(normalized::appendCodePoint);
+
+        Set<Integer> shingles = new HashSet<>();
+        for (int i = 0; i + 3 <= normalized.length(); i++) {
+            shingles.add(normalized.substring(i, i + 3).hashCode());
+        }
+        return shingles;
+    }
+
+    /**
+     * 去掉已在前面段落中出现过的图片
+     */
+    private static String removeSeenImages(String text, Set<String> seenImages) {
+        if (seenImages.isEmpty()) {
+            return text;
+        }
+        Matcher matcher = IMAGE_PATTERN.matcher(text);
+        StringBuilder result = new StringBuilder();
+        while (matcher.find()) {
+            matcher.appendReplacement(result, seenImages.contains(matcher.group(1))
+                    ? "" : Matcher.quoteReplacement(matcher.group()));
+        }
+        matcher.appendTail(result);
+        return result.toString();
+    }
+
+    private static void collectImages(String text, Set<String> seenImages) {
+        Matcher matcher = IMAGE_PATTERN.matcher(text);
+        while (matcher.find()) {
+            seenImages.add(matcher.group(1));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.AliyunBailianProperties;
+import com.fastgpt.docparser.config.RetrievalProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import okhttp3.*;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DashScope 文本向量化（text-embedding 系列模型）
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class DashScopeEmbedder implements Embedder {
+
+    private static final String EMBEDDING_API_URL =
+            "https://dashscope.aliyuncs.com/api/v1/services/embeddings/text-embedding/text-embedding";
+    private static final int MAX_BATCH_SIZE = 10;
+
+    private final AliyunBailianProperties bailianProperties;
+    private final RetrievalProperties properties;
+    private final OkHttpClient httpClient;
+    private final Gson gson;
+
+    public DashScopeEmbedder(AliyunBailianProperties bailianProperties, RetrievalProperties properties) {
+        this.bailianProperties = bailianProperties;
+        this.properties = properties;
+        this.httpClient = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(30, TimeUnit.SECONDS)
+                .build();
+        this.gson = new Gson();
+    }
+
+    @Override
+    public String name() {
+        return "dashscope";
+    }
+
+    @Override
+    public int dimension() {
+        return properties.getVectorDimension();
+    }
+
+    @Override
+    public float[] embed(String text) {
+        return embedAll(List.of(text)).get(0);
+    }
+
+    /**
+     * 批量向量化，每次请求最多 10 条
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (int start = 0; start < texts.size(); start += MAX_BATCH_SIZE) {
+            vectors.addAll(requestEmbeddings(texts.subList(start, Math.min(texts.size(), start + MAX_BATCH_SIZE))));
+        }
+        return vectors;
+    }
+
+    private List<float[]> requestEmbeddings(List<String> texts) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", properties.getEmbeddingModel());
+        JsonObject input = new JsonObject();
+        input.add("texts", gson.toJsonTree(texts));
+        requestBody.add("input", input);
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("dimension", properties.getVectorDimension());
+        requestBody.add("parameters", parameters);
+
+        Request request = new Request.Builder()
+                .url(EMBEDDING_API_URL)
+                .post(RequestBody.create(gson.toJson(requestBody), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + bailianProperties.getApiKey())
+                .build();
+
+        try (Response response = httpClient.newCall(request).execute()) {
+            String body = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new BusinessException("文本向量化失败: " + response.code() + ", " + body);
+            }
+
+            JsonArray embeddings = gson.fromJson(body, JsonObject.class)
+                    .getAsJsonObject("output")
+                    .getAsJsonArray("embeddings");
+            float[][] result = new float[texts.size()][];
+            for (JsonElement element : embeddings) {
+                JsonObject item = element.getAsJsonObject();
+                JsonArray values = item.getAsJsonArray("embedding");
+                float[] vector = new float[values.size()];
+                for (int i = 0; i < vector.length; i++) {
+                    vector[i] = values.get(i).getAsFloat();
+                }
+                result[item.get("text_index").getAsInt()] = Embedder.normalize(vector);
+            }
+            return List.of(result);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException("文本向量化失败: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.exception.BusinessException;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import okhttp3.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DashScope 文本生成接口（通义千问）提供方
+ * 流式请求使用 X-DashScope-SSE 增量输出，由 {@link DashScopeStreamDecoder} 解析
+ *
+ * @author ZHONG WEI
+ */
+public class DashScopeGenerationProvider implements GenerationProvider {
+
+    private static final Logger log = LoggerFactory.getLogger(DashScopeGenerationProvider.class);
+
+    private final String name;
+    private final String url;
+    private final String apiKey;
+    private final OkHttpClient httpClient;
+    private final Gson gson = new Gson();
+
+    public DashScopeGenerationProvider(String name, String url, String apiKey, OkHttpClient httpClient) {
+        this.name = name;
+        this.url = url;
+        this.apiKey = apiKey;
+        this.httpClient = httpClient;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public void stream(Request request, Listener listener, StreamCancellation cancellation) throws Exception {
+        okhttp3.Request httpRequest = newRequest(request, true);
+
+        // 取消时中止上游请求，正在读取的流立即抛出异常
+        Call call = httpClient.newCall(httpRequest);
+        long start = System.nanoTime();
+        try (StreamCancellation.Registration ignored = cancellation.onCancel(call::cancel);
+             Response response = call.execute()) {
+            listener.onConnected(System.nanoTime() - start);
+            if (!response.isSuccessful()) {
+                String errorBody = response.body() != null ? response.body().string() : "Unknown error";
+                throw new BusinessException(502, "调用通义千问 API 失败: " + response.code() + ", " + errorBody);
+            }
+
+            try (DashScopeStreamDecoder decoder = new DashScopeStreamDecoder(response.body().source())) {
+                DashScopeStreamDecoder.Frame frame = new DashScopeStreamDecoder.Frame();
+                while (decoder.next(frame)) {
+                    if (frame.isError()) {
+                        throw new BusinessException(502,
+                                "调用通义千问 API 失败: " + frame.getErrorCode() + ", " + frame.getErrorMessage());
+                    }
+                    if (frame.getOutputTokens() >= 0) {
+                        listener.onOutputTokens(frame.getOutputTokens());
+                    }
+                    String content = frame.getContent();
+                    if (content != null && !content.isEmpty()) {
+                        listener.onContent(content);
+                    }
+                    if (frame.getFinishReason() != null) {
+                        log.info("[{}] 收到 finish_reason={}", name, frame.getFinishReason());
+                        listener.onFinish(frame.getFinishReason());
+                        return;
+                    }
+                }
+            }
+            // 没有 finish_reason 就结束的流是被截断的回答，不能当作正常完成（取消时由调用方处理）
+            if (!cancellation.isCancelled()) {
+                log.warn("[{}] 流读取结束，但未收到完成信号", name);
+                throw new BusinessException(502, "通义千问 API 流式响应在完成前中断");
+            }
+        }
+    }
+
+    @Override
+    public Completion complete(Request request) throws Exception {
+        try (Response response = httpClient.newCall(newRequest(request, false)).execute()) {
+            String body = response.body() != null ? response.body().string() : "";
+            if (!response.isSuccessful()) {
+                throw new BusinessException(502, "调用通义千问 API 失败: " + response.code() + ", " + body);
+            }
+            JsonObject json = gson.fromJson(body, JsonObject.class);
+            JsonArray choices = json.getAsJsonObject("output").getAsJsonArray("choices");
+            if (choices == null || choices.isEmpty()) {
+                throw new BusinessException(502, "通义千问 API 未返回回答");
+            }
+
+            String content = choices.get(0).getAsJsonObject().getAsJsonObject("message").get("content").getAsString();
+            JsonObject usage = json.getAsJsonObject("usage");
+            Integer outputTokens = usage != null && usage.has("output_tokens") ? usage.get("output_tokens").getAsInt() : null;
+            return new Completion(content, outputTokens);
+        }
+    }
+
+    private okhttp3.Request newRequest(Request request, boolean stream) {
+        JsonObject requestBody = new JsonObject();
+        requestBody.addProperty("model", request.model());
+        JsonObject input = new JsonObject();
+        input.add("messages", request.messages());
+        requestBody.add("input", input);
+
+        JsonObject parameters = new JsonObject();
+        parameters.addProperty("result_format", "message");
+        if (stream) {
+            parameters.addProperty("incremental_output", true);  // 启用增量输出
+        }
+        if (request.maxTokens() > 0) {
+            parameters.addProperty("max_tokens", request.maxTokens());
+        }
+        requestBody.add("parameters", parameters);
+
+        okhttp3.Request.Builder builder = new okhttp3.Request.Builder()
+                .url(url)
+                .post(RequestBody.create(gson.toJson(requestBody), MediaType.parse("application/json")))
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .addHeader("Content-Type", "application/json");
+        if (stream) {
+            builder.addHeader("X-DashScope-SSE", "enable");  // 启用 SSE
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,325 @@
+package com.fastgpt.docparser.service;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * DashScope 流式响应（SSE）解码器
+ * 直接从 Okio 缓冲区按码点读取 data 行，交给同一个 {@link JsonReader} 流式解析，
+ * 只取出增量内容、finish_reason、输出 Token 数和错误信息，其余字段跳过；
+ * 不逐行生成字符串，也不构建 JSON 树，每帧只分配必要的内容字符串
+ *
+ * @author ZHONG WEI
+ */
+public class DashScopeStreamDecoder implements Closeable {
+
+    private final JsonReader reader;
+    private boolean started;
+
+    public DashScopeStreamDecoder(BufferedSource source) {
+        this.reader = new JsonReader(new SseDataReader(source));
+        // 多个 data 帧依次作为顶层值读取
+        this.reader.setLenient(true);
+    }
+
+    /**
+     * 读取下一帧
+     *
+     * @param frame 复用的帧对象，读取前清空
+     * @return 流已结束（收到 [DONE] 或连接关闭）时返回 false
+     * @throws IOException 连接异常或帧不是合法 JSON
+     */
+    public boolean next(Frame frame) throws IOException {
+        frame.reset();
+        try {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                return false;
+            }
+        } catch (EOFException e) {
+            // 一帧都没有收到，JsonReader 视为不完整的文档
+            if (!started) {
+                return false;
+            }
+            throw e;
+        }
+        started = true;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "output" -> readOutput(frame);
+                case "usage" -> readUsage(frame);
+                // 错误帧：{"code": "...", "message": "...", "request_id": "..."}
+                case "code" -> frame.errorCode = nextString();
+                case "message" -> frame.errorMessage = nextString();
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return true;
+    }
+
+    /**
+     * output 兼容两种格式：result_format=message 时为 choices[0].message.content，
+     * 否则为 output.text；finish_reason 可能位于 output 或 choices[0] 下
+     */
+    private void readOutput(Frame frame) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "choices" -> readChoices(frame);
+                case "text" -> frame.content = nextString();
+                case "finish_reason" -> readFinishReason(frame);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readUsage(Frame frame) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("output_tokens".equals(reader.nextName()) && reader.peek() == JsonToken.NUMBER) {
+                frame.outputTokens = reader.nextInt();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readChoices(Frame frame) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (!first || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+            first = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "message" -> readMessage(frame);
+                    case "finish_reason" -> readFinishReason(frame);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private void readMessage(Frame frame) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+            reader.skipValue();
+            return;
+        }
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if ("content".equals(reader.nextName())) {
+                frame.content = nextString();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * 生成过程中 DashScope 返回字符串 "null"，与 JSON null 同样视为未结束
+     */
+    private void readFinishReason(Frame frame) throws IOException {
+        String finishReason = nextString();
+        if (finishReason != null && !"null".equals(finishReason)) {
+            frame.finishReason = finishReason;
+        }
+    }
+
+    private String nextString() throws IOException {
+        JsonToken token = reader.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return reader.nextString();
+        }
+        reader.skipValue();
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 解码后的一帧（由调用方复用）
+     */
+    public static class Frame {
+
+        private String content;
+        private String finishReason;
+        private int outputTokens = -1;
+        private String errorCode;
+        private String errorMessage;
+
+        void reset() {
+            content = null;
+            finishReason = null;
+            outputTokens = -1;
+            errorCode = null;
+            errorMessage = null;
+        }
+
+        /**
+         * 增量内容（本帧无内容时为 null）
+         */
+        public String getContent() {
+            return content;
+        }
+
+        /**
+         * 结束原因（stop、length 等；未结束时为 null）
+         */
+        public String getFinishReason() {
+            return finishReason;
+        }
+
+        /**
+         * 截至本帧的累计输出 Token 数（本帧无用量信息时为 -1）
+         */
+        public int getOutputTokens() {
+            return outputTokens;
+        }
+
+        public boolean isError() {
+            return errorCode != null;
+        }
+
+        public String getErrorCode() {
+            return errorCode;
+        }
+
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+    }
+
+    /**
+     * 只输出 SSE data 行内容的字符流：跳过 id、event、注释等其他行，
+     * 每个 data 行以换行结束，data 为 [DONE] 时视为流结束；
+     * 缓冲区中已无数据时立即返回已读字符，不等待凑满 JsonReader 的缓冲区
+     */
+    private static class SseDataReader extends Reader {
+
+        private static final ByteString DATA_PREFIX = ByteString.encodeUtf8("data:");
+
+        private final BufferedSource source;
+        private boolean inData;
+        private boolean finished;
+        private char pendingLowSurrogate;
+
+        SseDataReader(BufferedSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            int count = 0;
+            while (count < length) {
+                if (pendingLowSurrogate != 0) {
+                    buffer[offset + count++] = pendingLowSurrogate;
+                    pendingLowSurrogate = 0;
+                    continue;
+                }
+                if (!inData && (count > 0 || finished || !startDataLine())) {
+                    break;
+                }
+                if (count > 0 && source.getBuffer().size() == 0) {
+                    break;
+                }
+                if (source.exhausted()) {
+                    finished = true;
+                    break;
+                }
+
+                byte b = source.getBuffer().getByte(0);
+                if (b == '\n') {
+                    // 一帧 JSON 已完整，交给 JsonReader 解析
+                    source.skip(1);
+                    inData = false;
+                    buffer[offset + count++] = '\n';
+                    break;
+                }
+                if (b == '\r') {
+                    source.skip(1);
+                    continue;
+                }
+
+                int codePoint = source.readUtf8CodePoint();
+                if (Character.isBmpCodePoint(codePoint)) {
+                    buffer[offset + count++] = (char) codePoint;
+                } else {
+                    buffer[offset + count++] = Character.highSurrogate(codePoint);
+                    pendingLowSurrogate = Character.lowSurrogate(codePoint);
+                }
+            }
+            return count == 0 ? -1 : count;
+        }
+
+        /**
+         * 跳到下一个 data 行的内容开头
+         *
+         * @return 流已结束时返回 false
+         */
+        private boolean startDataLine() throws IOException {
+            while (!source.exhausted()) {
+                if (source.rangeEquals(0, DATA_PREFIX)) {
+                    source.skip(DATA_PREFIX.size());
+                    if (source.request(1) && source.getBuffer().getByte(0) == ' ') {
+                        source.skip(1);
+                    }
+                    // data 帧均为 JSON 对象，以 [ 开头的只有结束标记 [DONE]
+                    if (source.request(1) && source.getBuffer().getByte(0) == '[') {
+                        finished = true;
+                        return false;
+                    }
+                    inData = true;
+                    return true;
+                }
+                long newline = source.indexOf((byte) '\n');
+                if (newline < 0) {
+                    break;
+                }
+                source.skip(newline + 1);
+            }
+            finished = true;
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * 文档指纹目录服务
+ * 记录 源文件 SHA-256 → MinerU Markdown（结果存储哈希）与百炼 FileId 的映射，
+ * 同一文档再次导入任意知识库时可跳过解析和上传，直接提交索引任务
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class DocumentCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentCatalogService.class);
+    private static final String CATALOG_FILE = "document-catalog.json";
+
+    private final ResultStoreService resultStoreService;
+    private final Gson gson;
+    private final Path catalogFilePath;
+    private final Map<String, CatalogEntry> entries;
+
+    public DocumentCatalogService(FileProperties fileProperties, ResultStoreService resultStoreService) {
+        this.resultStoreService = resultStoreService;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.catalogFilePath = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(CATALOG_FILE);
+        this.entries = loadCatalog();
+
+        // 目录引用的 Markdown 不允许被历史记录清理删除
+        resultStoreService.addReferenceChecker(this::isMarkdownReferenced);
+    }
+
+    /**
+     * 计算源文件指纹（流式 SHA-256，不整体读入内存）
+     */
+    public String fingerprint(Path filePath) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new DigestInputStream(Files.newInputStream(filePath), md)) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (Exception e) {
+            throw new BusinessException("计算文件指纹失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 查询指纹记录
+     */
+    public synchronized CatalogEntry find(String fingerprint) {
+        CatalogEntry entry = entries.get(fingerprint);
+        return entry != null ? entry.copy() : null;
+    }
+
+    /**
+     * 读取已缓存的 Markdown 内容（不存在时返回 null）
+     */
+    public String findMarkdown(String fingerprint) {
+        CatalogEntry entry = find(fingerprint);
+        if (entry == null || !resultStoreService.exists(entry.markdownHash)) {
+            return null;
+        }
+        return resultStoreService.read(entry.markdownHash);
+    }
+
+    /**
+     * 已缓存 Markdown 的大小（字节），未知时返回 0
+     */
+    public long markdownSize(String fingerprint) {
+        CatalogEntry entry = find(fingerprint);
+        if (entry == null || entry.markdownHash == null) {
+            return 0;
+        }
+        return Math.max(0, resultStoreService.rawSize(entry.markdownHash));
+    }
+
+    /**
+     * 记录 MinerU 解析得到的 Markdown
+     */
+    public synchronized void recordMarkdown(String fingerprint, String originalFilename, String markdownContent) {
+        String markdownHash = resultStoreService.put(markdownContent).hash;
+        try {
+            CatalogEntry entry = entries.computeIfAbsent(fingerprint, fp -> new CatalogEntry(fp, originalFilename));
+            entry.markdownHash = markdownHash;
+            saveCatalog();
+        } finally {
+            resultStoreService.unpin(markdownHash);
+        }
+    }
+
+    /**
+     * 记录百炼 FileId
+     */
+    public synchronized void recordFileId(String fingerprint, String originalFilename, String fileId) {
+        CatalogEntry entry = entries.computeIfAbsent(fingerprint, fp -> new CatalogEntry(fp, originalFilename));
+        entry.fileId = fileId;
+        saveCatalog();
+    }
+
+    /**
+     * 记录文档已加入的知识库
+     */
+    public synchronized void recordIndex(String fingerprint, String indexId) {
+        CatalogEntry entry = entries.get(fingerprint);
+        if (entry != null && entry.indexIds.add(indexId)) {
+            saveCatalog();
+        }
+    }
+
+    /**
+     * FileId 已失效（如在百炼侧被删除），清除后下次导入将重新上传
+     */
+    public synchronized void forgetFileId(String fingerprint) {
+        CatalogEntry entry = entries.get(fingerprint);
+        if (entry != null && entry.fileId != null) {
+            log.warn("清除失效的 FileId: {} ({})", entry.fileId, entry.originalFilename);
+            entry.fileId = null;
+            entry.indexIds.clear();
+            saveCatalog();
+        }
+    }
+
+    /**
+     * 查询以指定文件名加入过知识库的文档
+     */
+    public synchronized List<CatalogEntry> findIndexed(String indexId, String originalFilename) {
+        List<CatalogEntry> result = new ArrayList<>();
+        for (CatalogEntry entry : entries.values()) {
+            if (entry.indexIds.contains(indexId) && Objects.equals(entry.originalFilename, originalFilename)) {
+                result.add(entry.copy());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 文档已从知识库中移除
+     */
+    public synchronized void removeIndex(String fingerprint, String indexId) {
+        CatalogEntry entry = entries.get(fingerprint);
+        if (entry != null && entry.indexIds.remove(indexId)) {
+            saveCatalog();
+        }
+    }
+
+    /**
+     * 知识库被删除后移除对应的关联
+     */
+    public synchronized void removeIndex(String indexId) {
+        boolean changed = false;
+        for (CatalogEntry entry : entries.values()) {
+            changed |= entry.indexIds.remove(indexId);
+        }
+        if (changed) {
+            saveCatalog();
+        }
+    }
+
+    private synchronized boolean isMarkdownReferenced(String hash) {
+        return entries.values().stream().anyMatch(entry -> hash.equals(entry.markdownHash));
+    }
+
+    /**
+     * 从文件加载目录
+     */
+    private Map<String, CatalogEntry> loadCatalog() {
+        Map<String, CatalogEntry> loaded = new HashMap<>();
+        if (!Files.exists(catalogFilePath)) {
+            return loaded;
+        }
+        try {
+            String json = Files.readString(catalogFilePath);
+            List<CatalogEntry> list = gson.fromJson(json, new TypeToken<List<CatalogEntry>>(){}.getType());
+            if (list != null) {
+                for (CatalogEntry entry : list) {
+                    if (entry.indexIds == null) {
+                        entry.indexIds = new LinkedHashSet<>();
+                    }
+                    loaded.put(entry.fingerprint, entry);
+                }
+            }
+            log.info("加载文档指纹目录: {} 条", loaded.size());
+        } catch (Exception e) {
+            log.error("加载文档指纹目录失败", e);
+        }
+        return loaded;
+    }
+
+    /**
+     * 保存目录到文件
+     */
+    private void saveCatalog() {
+        try {
+            Files.writeString(catalogFilePath, gson.toJson(new ArrayList<>(entries.values())));
+        } catch (IOException e) {
+            log.error("保存文档指纹目录失败", e);
+        }
+    }
+
+    /**
+     * 目录条目
+     */
+    public static class CatalogEntry {
+        public String fingerprint;
+        public String originalFilename;
+        public String markdownHash;
+        public String fileId;
+        public Set<String> indexIds = new LinkedHashSet<>();
+        public long createdAt;
+
+        public CatalogEntry() {
+        }
+
+        CatalogEntry(String fingerprint, String originalFilename) {
+            this.fingerprint = fingerprint;
+            this.originalFilename = originalFilename;
+            this.createdAt = System.currentTimeMillis();
+        }
+
+        CatalogEntry copy() {
+            CatalogEntry copy = new CatalogEntry(fingerprint, originalFilename);
+            copy.markdownHash = markdownHash;
+            copy.fileId = fileId;
+            copy.indexIds = new LinkedHashSet<>(indexIds);
+            copy.createdAt = createdAt;
+            return copy;
+        }
+    }
+}
@@ -26,16 +26,19 @@ public class DocumentParseService {
     private final MinerUDocParserService minerUDocParserService;
     private final MarkdownProcessService markdownProcessService;
     private final HistoryService historyService;
+    private final ResultStoreService resultStoreService;
     private final FileProperties fileProperties;
 
     public DocumentParseService(
             MinerUDocParserService minerUDocParserService,
             MarkdownProcessService markdownProcessService,
             HistoryService historyService,
+            ResultStoreService resultStoreService,
             FileProperties fileProperties) {
         this.minerUDocParserService = minerUDocParserService;
         this.markdownProcessService = markdownProcessService;
         this.historyService = historyService;
+        this.resultStoreService = resultStoreService;
         this.fileProperties = fileProperties;
 
         // 确保目录存在
@@ -70,31 +73,35 @@ public ParseResult parseDocument(MultipartFile file) {
                             parseResult.markdownContent,
                             parseResult.extractDir);
 
-            // 5. 保存最终结果到 results 目录
-            Path resultFilePath = saveToResultDir(file.getOriginalFilename(), processed.content);
-            log.info("结果保存到: {}", resultFilePath);
+            // 5. 保存最终结果到结果存储（压缩、按内容去重），登记到历史记录前不会被删除
+            ResultStoreService.ContentRef contentRef = resultStoreService.put(processed.content);
+            log.info("结果保存到: {}", contentRef.path);
 
-            // 6. 清理临时文件
-            Files.deleteIfExists(tmpFilePath);
-            // 清理 MinerU 解压目录
-            cleanupDirectory(parseResult.extractDir);
+            try {
+                // 6. 清理临时文件
+                Files.deleteIfExists(tmpFilePath);
+                // 清理 MinerU 解压目录
+                cleanupDirectory(parseResult.extractDir);
 
-            // 7. 构建返回结果
-            long processingTime = System.currentTimeMillis() - startTime;
+                // 7. 构建返回结果
+                long processingTime = System.currentTimeMillis() - startTime;
 
-            ParseResult result = ParseResult.builder()
-                    .originalFilename(file.getOriginalFilename())
-                    .markdownContent(processed.content)
-                    .imageCount(processed.imageUrls.size())
-                    .imageUrls(processed.imageUrls)
-                    .resultFilePath(resultFilePath.toString())
-                    .processingTime(processingTime)
-                    .build();
+                ParseResult result = ParseResult.builder()
+                        .originalFilename(file.getOriginalFilename())
+                        .markdownContent(processed.content)
+                        .imageCount(processed.imageUrls.size())
+                        .imageUrls(processed.imageUrls)
+                        .resultFilePath(contentRef.path.toString())
+                        .processingTime(processingTime)
+                        .build();
 
-            // 8. 保存到历史记录
-            historyService.addHistory(result);
+                // 8. 保存到历史记录
+                historyService.addHistory(result, contentRef.hash);
 
-            return result;
+                return result;
+            } finally {
+                resultStoreService.unpin(contentRef.hash);
+            }
 
         } catch (Exception e) {
             log.error("文档解析失败", e);
@@ -152,30 +159,6 @@ private Path saveToTmpDir(MultipartFile file) throws IOException {
         return filePath;
     }
 
-    /**
-     * 保存 Markdown 到结果目录
-     */
-    private Path saveToResultDir(String originalFilename, String markdownContent) throws IOException {
-        // 获取绝对路径
-        Path resultDir = Paths.get(fileProperties.getResultDir()).toAbsolutePath();
-
-        // 确保目录存在
-        if (!Files.exists(resultDir)) {
-            Files.createDirectories(resultDir);
-            log.info("创建结果目录: {}", resultDir);
-        }
-
-        String fileName = generateResultFileName(originalFilename);
-        Path filePath = resultDir.resolve(fileName);
-
-        // 保存 Markdown 文件
-        Files.writeString(filePath, markdownContent);
-
-        log.debug("结果已保存到: {}", filePath);
-
-        return filePath;
-    }
-
     /**
      * 生成唯一文件名
      */
@@ -187,16 +170,6 @@ private String generateFileName(String originalFilename) {
         return String.format("%s_%s.%s", baseName, timestamp, extension);
     }
 
-    /**
-     * 生成结果文件名
-     */
-    private String generateResultFileName(String originalFilename) {
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-        String baseName = getBaseName(originalFilename);
-
-        return String.format("%s_%s.md", baseName, timestamp);
-    }
-
     /**
      * 获取文件扩展名
      */
@@ -0,0 +1,56 @@
+package com.fastgpt.docparser.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 文本向量化接口
+ * 实现类以 Spring Bean 注册，通过 retrieval.embedder 按名称选择
+ *
+ * @author ZHONG WEI
+ */
+public interface Embedder {
+
+    /**
+     * 名称（与 retrieval.embedder 配置对应）
+     */
+    String name();
+
+    /**
+     * 向量维度
+     */
+    int dimension();
+
+    /**
+     * 向量化单条文本，返回 L2 归一化后的向量
+     */
+    float[] embed(String text);
+
+    /**
+     * 批量向量化，默认逐条调用
+     */
+    default List<float[]> embedAll(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    /**
+     * L2 归一化（原地修改）
+     */
+    static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        if (norm > 0) {
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] *= scale;
+            }
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,251 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.EvaluationProperties;
+import com.fastgpt.docparser.dto.ChatRequest;
+import com.fastgpt.docparser.dto.EvaluationRequest;
+import com.fastgpt.docparser.dto.EvaluationStatus;
+import com.fastgpt.docparser.exception.BusinessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * 批量问答评测服务
+ * 对一组问题执行与对话相同的检索和 Prompt 构造，非流式生成回答，记录各阶段耗时和参考切片，
+ * 用于上线前批量对比检索参数和 Prompt 修改的效果；
+ * 每个任务在后台执行，并发数和每秒开始的问题数受限，同时执行的任务数受限，结果可查询和下载；
+ * 评测不读取检索结果缓存
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class EvaluationService {
+
+    private static final Logger log = LoggerFactory.getLogger(EvaluationService.class);
+
+    private final RagChatService ragChatService;
+    private final EvaluationProperties properties;
+    private final Map<String, EvaluationJob> jobs = new LinkedHashMap<>();
+
+    public EvaluationService(RagChatService ragChatService, EvaluationProperties properties) {
+        this.ragChatService = ragChatService;
+        this.properties = properties;
+    }
+
+    /**
+     * 提交评测任务
+     */
+    public EvaluationStatus submit(EvaluationRequest request) {
+        List<String> questions = request.getQuestions() == null ? List.of() : request.getQuestions().stream()
+                .filter(question -> question != null && !question.isBlank())
+                .collect(Collectors.toList());
+        if (questions.isEmpty()) {
+            throw new BusinessException(400, "请至少提供一个问题");
+        }
+        if (questions.size() > properties.getMaxQuestions()) {
+            throw new BusinessException(400, "单次最多评测 " + properties.getMaxQuestions() + " 个问题");
+        }
+        int concurrency = request.getConcurrency() != null ? request.getConcurrency() : properties.getDefaultConcurrency();
+        if (concurrency < 1 || concurrency > properties.getMaxConcurrency()) {
+            throw new BusinessException(400, "并发数需在 1 ~ " + properties.getMaxConcurrency() + " 之间");
+        }
+        Double rate = request.getRatePerSecond() != null && request.getRatePerSecond() > 0
+                ? request.getRatePerSecond() : null;
+
+        EvaluationJob job = new EvaluationJob(UUID.randomUUID().toString().substring(0, 8), request, concurrency, rate);
+        for (String question : questions) {
+            job.items.add(new EvaluationItem(question));
+        }
+        registerJob(job);
+        log.info("评测任务已创建: {}，问题数: {}，并发数: {}，限速: {}/s", job.id, questions.size(), concurrency,
+                rate != null ? rate : "不限");
+
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency,
+                new DaemonThreadFactory("evaluation-" + job.id));
+        for (EvaluationItem item : job.items) {
+            executor.execute(() -> run(job, item));
+        }
+        // 已提交的问题执行完后线程自动退出
+        executor.shutdown();
+        return toStatus(job);
+    }
+
+    /**
+     * 查询评测任务状态和结果
+     */
+    public EvaluationStatus getStatus(String jobId) {
+        EvaluationJob job;
+        synchronized (jobs) {
+            job = jobs.get(jobId);
+        }
+        if (job == null) {
+            throw new BusinessException(404, "评测任务不存在: " + jobId);
+        }
+        return toStatus(job);
+    }
+
+    private void run(EvaluationJob job, EvaluationItem item) {
+        try {
+            job.acquire();
+            item.status = "RUNNING";
+            EvaluationStatus.QuestionResult result = ragChatService.evaluate(job.toChatRequest(item.question));
+            result.setQuestion(item.question);
+            result.setStatus("COMPLETED");
+            item.result = result;
+            item.status = "COMPLETED";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            item.fail("评测被中断");
+        } catch (Exception e) {
+            log.warn("评测问题失败: {}，{}", item.question, e.getMessage());
+            item.fail(e.getMessage());
+        } finally {
+            job.onItemFinished();
+        }
+    }
+
+    /**
+     * 登记任务；正在执行的任务数已达上限时拒绝
+     */
+    private void registerJob(EvaluationJob job) {
+        synchronized (jobs) {
+            long running = jobs.values().stream().filter(existing -> !existing.isFinished()).count();
+            if (running >= properties.getMaxRunningJobs()) {
+                throw new BusinessException(503, "正在执行的评测任务已达上限 " + properties.getMaxRunningJobs() + "，请稍后重试");
+            }
+            jobs.put(job.id, job);
+            Iterator<EvaluationJob> iterator = jobs.values().iterator();
+            while (jobs.size() > properties.getMaxRetainedJobs() && iterator.hasNext()) {
+                if (iterator.next().isFinished()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private EvaluationStatus toStatus(EvaluationJob job) {
+        List<EvaluationStatus.QuestionResult> results = job.items.stream()
+                .map(EvaluationItem::toResult)
+                .collect(Collectors.toList());
+
+        EvaluationStatus status = new EvaluationStatus();
+        status.setJobId(job.id);
+        status.setKnowledgeBaseIds(job.request.getKnowledgeBaseIds() != null && !job.request.getKnowledgeBaseIds().isEmpty()
+                ? job.request.getKnowledgeBaseIds() : List.of(String.valueOf(job.request.getKnowledgeBaseId())));
+        status.setConcurrency(job.concurrency);
+        status.setRatePerSecond(job.ratePerSecond);
+        status.setTotal(results.size());
+        status.setCompleted((int) results.stream().filter(result -> "COMPLETED".equals(result.getStatus())).count());
+        status.setFailed((int) results.stream().filter(result -> "FAILED".equals(result.getStatus())).count());
+        status.setFinished(job.isFinished());
+        status.setCreatedAt(job.createdAt);
+        status.setFinishedAt(job.finishedAt);
+        status.setResults(results);
+        return status;
+    }
+
+    /**
+     * 评测任务
+     */
+    private static class EvaluationJob {
+        final String id;
+        final EvaluationRequest request;
+        final int concurrency;
+        final Double ratePerSecond;
+        final long createdAt = System.currentTimeMillis();
+        final List<EvaluationItem> items = new ArrayList<>();
+        final AtomicInteger finishedCount = new AtomicInteger();
+        volatile Long finishedAt;
+        private long nextStartAt = System.nanoTime();
+
+        EvaluationJob(String id, EvaluationRequest request, int concurrency, Double ratePerSecond) {
+            this.id = id;
+            this.request = request;
+            this.concurrency = concurrency;
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        /**
+         * 限速：相邻两个问题的开始时间至少间隔 1 / ratePerSecond 秒
+         */
+        void acquire() throws InterruptedException {
+            if (ratePerSecond == null) {
+                return;
+            }
+            long waitNanos;
+            synchronized (this) {
+                long now = System.nanoTime();
+                long startAt = Math.max(now, nextStartAt);
+                nextStartAt = startAt + (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+                waitNanos = startAt - now;
+            }
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+
+        /**
+         * 每个问题按对话请求执行，检索参数与知识库选择取自评测请求
+         */
+        ChatRequest toChatRequest(String question) {
+            ChatRequest chatRequest = new ChatRequest();
+            chatRequest.setKnowledgeBaseId(request.getKnowledgeBaseId());
+            chatRequest.setKnowledgeBaseIds(request.getKnowledgeBaseIds());
+            chatRequest.setQuestion(question);
+            chatRequest.setDenseTopK(request.getDenseTopK());
+            chatRequest.setSparseTopK(request.getSparseTopK());
+            chatRequest.setEnableReranking(request.getEnableReranking());
+            chatRequest.setRerankTopN(request.getRerankTopN());
+            chatRequest.setMinScore(request.getMinScore());
+            return chatRequest;
+        }
+
+        void onItemFinished() {
+            if (finishedCount.incrementAndGet() >= items.size()) {
+                finishedAt = System.currentTimeMillis();
+                log.info("评测任务结束: {}", id);
+            }
+        }
+
+        boolean isFinished() {
+            return finishedCount.get() >= items.size();
+        }
+    }
+
+    /**
+     * 评测任务中的单个问题
+     */
+    private static class EvaluationItem {
+        final String question;
+        volatile String status = "QUEUED";
+        volatile EvaluationStatus.QuestionResult result;
+        volatile String error;
+
+        EvaluationItem(String question) {
+            this.question = question;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            this.status = "FAILED";
+        }
+
+        EvaluationStatus.QuestionResult toResult() {
+            if (result != null) {
+                return result;
+            }
+            EvaluationStatus.QuestionResult pending = new EvaluationStatus.QuestionResult();
+            pending.setQuestion(question);
+            pending.setStatus(status);
+            pending.setError(error);
+            return pending;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.fastgpt.docparser.service;
+
+import com.google.gson.JsonArray;
+
+/**
+ * 大模型生成服务提供方
+ * 由 {@link GenerationRouter} 按健康状况选择，失败时切换到其他提供方
+ *
+ * @author ZHONG WEI
+ */
+public interface GenerationProvider {
+
+    /**
+     * 提供方名称（配置中唯一）
+     */
+    String name();
+
+    /**
+     * 流式生成，收到结束标记或流正常结束时返回
+     *
+     * @param cancellation 取消后中止上游请求，本方法随即抛出异常
+     * @throws Exception 连接失败、上游返回错误或流异常中断
+     */
+    void stream(Request request, Listener listener, StreamCancellation cancellation) throws Exception;
+
+    /**
+     * 非流式生成
+     */
+    Completion complete(Request request) throws Exception;
+
+    /**
+     * 生成请求
+     *
+     * @param model     模型名称
+     * @param messages  消息数组（role / content）
+     * @param maxTokens 最大输出 Token 数，0 表示不限制
+     */
+    record Request(String model, JsonArray messages, int maxTokens) {
+    }
+
+    /**
+     * 非流式生成结果
+     *
+     * @param outputTokens 输出 Token 数，上游未返回用量时为 null
+     */
+    record Completion(String content, Integer outputTokens) {
+    }
+
+    /**
+     * 流式生成回调（在调用 stream 的线程上依次回调）
+     */
+    interface Listener {
+
+        /**
+         * 上游已返回响应头
+         *
+         * @param connectNanos 本次请求发出到返回响应头的耗时
+         */
+        void onConnected(long connectNanos);
+
+        /**
+         * 收到一个增量片段
+         */
+        void onContent(String content);
+
+        /**
+         * 上游返回的累计输出 Token 数
+         */
+        void onOutputTokens(int tokens);
+
+        /**
+         * 收到结束标记（finish_reason，如 stop / length）
+         */
+        void onFinish(String finishReason);
+    }
+}
@@ -0,0 +1,323 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.AliyunBailianProperties;
+import com.fastgpt.docparser.config.ChatProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import okhttp3.OkHttpClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 大模型生成提供方路由
+ * 按配置顺序选择提供方，近期首 Token 延迟或失败率超过阈值的提供方排到最后（定期放行一次请求重新探测）；
+ * 流式生成在输出首个 Token 前失败或等待首 Token 超时时切换到下一个提供方重试，
+ * 已输出内容后失败则直接返回错误
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class GenerationRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationRouter.class);
+    private static final double SMOOTHING = 0.2;
+    /**
+     * 计算失败率所需的最少请求数
+     */
+    private static final int MIN_SAMPLES = 5;
+
+    private final ChatProperties properties;
+    private final List<ProviderState> providers = new ArrayList<>();
+    private final ScheduledExecutorService timer;
+    private final AtomicLong failovers = new AtomicLong();
+
+    public GenerationRouter(ChatProperties properties, AliyunBailianProperties bailianProperties) {
+        this.properties = properties;
+        // 配置超时时间：连接超时 10 秒，读取超时 120 秒（首 Token 另有 chat.first-token-timeout）
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(120, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+
+        if (properties.getProviders() == null || properties.getProviders().isEmpty()) {
+            providers.add(new ProviderState(new DashScopeGenerationProvider("dashscope",
+                    bailianProperties.getGenerationUrl(), bailianProperties.getApiKey(), httpClient)));
+        } else {
+            for (ChatProperties.Provider provider : properties.getProviders()) {
+                String url = provider.getUrl() != null && !provider.getUrl().isBlank()
+                        ? provider.getUrl() : bailianProperties.getGenerationUrl();
+                String apiKey = provider.getApiKey() != null && !provider.getApiKey().isBlank()
+                        ? provider.getApiKey() : bailianProperties.getApiKey();
+                providers.add(new ProviderState(
+                        new DashScopeGenerationProvider(provider.getName(), url, apiKey, httpClient)));
+            }
+        }
+
+        this.timer = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("generation-timeout"));
+    }
+
+    /**
+     * 流式生成（失败时按健康状况切换提供方）
+     *
+     * @return 最终完成生成的提供方名称
+     * @throws Exception 所有提供方均在首 Token 前失败、已输出内容后失败或已取消
+     */
+    public String stream(GenerationProvider.Request request, GenerationProvider.Listener listener,
+                         StreamCancellation cancellation) throws Exception {
+        Exception lastError = null;
+        for (ProviderState state : candidates()) {
+            StreamCancellation attempt = new StreamCancellation();
+            AtomicBoolean firstToken = new AtomicBoolean();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            AtomicLong connectNanos = new AtomicLong(-1);
+            long start = System.nanoTime();
+            ScheduledFuture<?> timeout = scheduleTimeout(() -> {
+                if (!firstToken.get()) {
+                    timedOut.set(true);
+                    attempt.cancel();
+                }
+            });
+
+            try (StreamCancellation.Registration ignored = cancellation.onCancel(attempt::cancel)) {
+                state.provider.stream(request, new GenerationProvider.Listener() {
+                    @Override
+                    public void onConnected(long nanos) {
+                        // 只转发最终输出内容的那次尝试，失败后切换的尝试不覆盖连接耗时
+                        connectNanos.set(nanos);
+                    }
+
+                    @Override
+                    public void onContent(String content) {
+                        if (firstToken.compareAndSet(false, true)) {
+                            cancelTimeout(timeout);
+                            state.recordTtft(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                            forwardConnected(listener, connectNanos);
+                        }
+                        listener.onContent(content);
+                    }
+
+                    @Override
+                    public void onOutputTokens(int tokens) {
+                        listener.onOutputTokens(tokens);
+                    }
+
+                    @Override
+                    public void onFinish(String finishReason) {
+                        listener.onFinish(finishReason);
+                    }
+                }, attempt);
+                cancelTimeout(timeout);
+                if (timedOut.get() && !firstToken.get()) {
+                    throw new BusinessException(504, "等待首个 Token 超过 " + properties.getFirstTokenTimeout() + " ms");
+                }
+                if (!firstToken.get()) {
+                    forwardConnected(listener, connectNanos);
+                }
+                state.recordOutcome(true);
+                return state.provider.name();
+            } catch (Exception e) {
+                cancelTimeout(timeout);
+                if (cancellation.isCancelled()) {
+                    throw e;
+                }
+                Exception error = e;
+                if (timedOut.get() && !firstToken.get()) {
+                    state.recordTtft(properties.getFirstTokenTimeout());
+                    error = new BusinessException(504, "等待首个 Token 超过 " + properties.getFirstTokenTimeout() + " ms");
+                }
+                state.recordOutcome(false);
+                if (firstToken.get()) {
+                    // 已向客户端输出部分内容，切换提供方会导致内容重复
+                    throw error;
+                }
+                lastError = error;
+                failovers.incrementAndGet();
+                log.warn("[{}] 生成失败（尚未输出内容），尝试下一个提供方: {}", state.provider.name(), error.getMessage());
+            }
+        }
+        throw lastError != null ? lastError : new BusinessException(503, "没有可用的生成服务");
+    }
+
+    /**
+     * 非流式生成（失败时按健康状况切换提供方）
+     */
+    public GenerationProvider.Completion complete(GenerationProvider.Request request) throws Exception {
+        Exception lastError = null;
+        for (ProviderState state : candidates()) {
+            try {
+                GenerationProvider.Completion completion = state.provider.complete(request);
+                state.recordOutcome(true);
+                return completion;
+            } catch (Exception e) {
+                state.recordOutcome(false);
+                lastError = e;
+                failovers.incrementAndGet();
+                log.warn("[{}] 生成失败，尝试下一个提供方: {}", state.provider.name(), e.getMessage());
+            }
+        }
+        throw lastError != null ? lastError : new BusinessException(503, "没有可用的生成服务");
+    }
+
+    /**
+     * 各提供方健康状况
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("firstTokenTimeout", properties.getFirstTokenTimeout());
+        stats.put("ttftThreshold", properties.getProviderTtftThreshold());
+        stats.put("errorRateThreshold", properties.getProviderErrorRateThreshold());
+        stats.put("failovers", failovers.get());
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (ProviderState state : providers) {
+            items.add(state.snapshot());
+        }
+        stats.put("providers", items);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * 本次请求尝试的提供方顺序：健康的按配置顺序在前，降级的按失败率、首 Token 延迟排在后面；
+     * 降级的提供方长时间没有请求时排到最前面探测一次（失败仍会切换到其他提供方）
+     */
+    private List<ProviderState> candidates() {
+        long now = System.currentTimeMillis();
+        List<ProviderState> healthy = new ArrayList<>();
+        List<ProviderState> degraded = new ArrayList<>();
+        ProviderState probe = null;
+        for (ProviderState state : providers) {
+            if (state.isHealthy()) {
+                healthy.add(state);
+            } else if (probe == null && state.tryProbe(now)) {
+                probe = state;
+            } else {
+                degraded.add(state);
+            }
+        }
+        degraded.sort(Comparator.comparingDouble(ProviderState::errorRate).thenComparingDouble(ProviderState::ttft));
+
+        List<ProviderState> candidates = new ArrayList<>(providers.size());
+        if (probe != null) {
+            candidates.add(probe);
+        }
+        candidates.addAll(healthy);
+        candidates.addAll(degraded);
+        return candidates;
+    }
+
+    private ScheduledFuture<?> scheduleTimeout(Runnable action) {
+        if (properties.getFirstTokenTimeout() <= 0) {
+            return null;
+        }
+        try {
+            return timer.schedule(action, properties.getFirstTokenTimeout(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return null;
+        }
+    }
+
+    private static void forwardConnected(GenerationProvider.Listener listener, AtomicLong connectNanos) {
+        long nanos = connectNanos.get();
+        if (nanos >= 0) {
+            listener.onConnected(nanos);
+        }
+    }
+
+    private static void cancelTimeout(ScheduledFuture<?> timeout) {
+        if (timeout != null) {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * 提供方及其近期健康数据
+     */
+    private class ProviderState {
+        final GenerationProvider provider;
+        private final boolean[] outcomes = new boolean[Math.max(1, properties.getProviderHealthWindow())];
+        private int outcomeCount;
+        private int outcomeIndex;
+        private double ttft = -1;
+        private long requests;
+        private long failures;
+        private long lastRequestAt;
+        private long lastProbeAt;
+
+        ProviderState(GenerationProvider provider) {
+            this.provider = provider;
+        }
+
+        synchronized void recordTtft(long millis) {
+            ttft = ttft < 0 ? millis : ttft + SMOOTHING * (millis - ttft);
+        }
+
+        synchronized void recordOutcome(boolean success) {
+            outcomes[outcomeIndex] = success;
+            outcomeIndex = (outcomeIndex + 1) % outcomes.length;
+            outcomeCount = Math.min(outcomeCount + 1, outcomes.length);
+            requests++;
+            if (!success) {
+                failures++;
+            }
+            lastRequestAt = System.currentTimeMillis();
+        }
+
+        synchronized double errorRate() {
+            if (outcomeCount == 0) {
+                return 0;
+            }
+            int failed = 0;
+            for (int i = 0; i < outcomeCount; i++) {
+                if (!outcomes[i]) {
+                    failed++;
+                }
+            }
+            return (double) failed / outcomeCount;
+        }
+
+        synchronized double ttft() {
+            return ttft;
+        }
+
+        synchronized boolean isHealthy() {
+            boolean errorsOk = outcomeCount < Math.min(MIN_SAMPLES, outcomes.length)
+                    || errorRate() <= properties.getProviderErrorRateThreshold();
+            return errorsOk && ttft <= properties.getProviderTtftThreshold();
+        }
+
+        /**
+         * 降级的提供方超过探测间隔没有请求时放行一次（每个间隔只放行一次）
+         */
+        synchronized boolean tryProbe(long now) {
+            long interval = properties.getProviderProbeInterval();
+            if (interval <= 0 || now - lastRequestAt < interval || now - lastProbeAt < interval) {
+                return false;
+            }
+            lastProbeAt = now;
+            return true;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("name", provider.name());
+            snapshot.put("healthy", isHealthy());
+            snapshot.put("ttft", Math.round(ttft));
+            snapshot.put("errorRate", Math.round(errorRate() * 1000) / 1000.0);
+            snapshot.put("requests", requests);
+            snapshot.put("failures", failures);
+            snapshot.put("lastRequestAt", lastRequestAt);
+            return snapshot;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.RetrievalProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地哈希向量化
+ * 将分词结果按哈希映射到固定维度并带符号累加，结果只依赖输入文本，
+ * 无需网络即可构建和验证向量索引，适用于测试和离线环境
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class HashingEmbedder implements Embedder {
+
+    private final int dimension;
+
+    public HashingEmbedder(RetrievalProperties properties) {
+        this.dimension = Math.max(8, properties.getVectorDimension());
+    }
+
+    @Override
+    public String name() {
+        return "hashing";
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public float[] embed(String text) {
+        float[] vector = new float[dimension];
+        for (String token : LocalBm25Index.tokenize(text)) {
+            int hash = mix(token.hashCode());
+            int bucket = Math.floorMod(hash, dimension);
+            vector[bucket] += (mix(hash) & 1) == 0 ? 1f : -1f;
+        }
+        return Embedder.normalize(vector);
+    }
+
+    /**
+     * 32 位整数哈希混合（murmur3 fmix32）
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -15,8 +15,9 @@
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
@@ -32,16 +33,20 @@ public class HistoryService {
     private static final String HISTORY_FILE = "history.json";
 
     private final FileProperties fileProperties;
+    private final ResultStoreService resultStoreService;
     private final Gson gson;
     private final Path historyFilePath;
 
-    public HistoryService(FileProperties fileProperties) {
+    public HistoryService(FileProperties fileProperties, ResultStoreService resultStoreService) {
         this.fileProperties = fileProperties;
+        this.resultStoreService = resultStoreService;
         this.gson = new GsonBuilder().setPrettyPrinting().create();
         this.historyFilePath = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(HISTORY_FILE);
 
         // 确保历史文件存在
         initHistoryFile();
+        // 旧版记录内嵌了 Markdown 全文，迁移到结果存储
+        migrateInlineContent();
     }
 
     /**
@@ -58,17 +63,51 @@ private void initHistoryFile() {
         }
     }
 
+    /**
+     * 将旧记录中内嵌的 Markdown 内容迁移到结果存储
+     */
+    private synchronized void migrateInlineContent() {
+        List<HistoryRecord> records = loadHistory();
+        List<String> pinned = new ArrayList<>();
+        int migrated = 0;
+
+        try {
+            for (HistoryRecord record : records) {
+                if (record.getMarkdownContent() != null) {
+                    if (record.getContentHash() == null) {
+                        String hash = resultStoreService.put(record.getMarkdownContent()).hash;
+                        pinned.add(hash);
+                        record.setContentHash(hash);
+                    }
+                    record.setMarkdownContent(null);
+                    migrated++;
+                }
+            }
+
+            if (migrated > 0) {
+                saveHistory(records);
+                log.info("已迁移 {} 条历史记录内容到结果存储", migrated);
+            }
+        } finally {
+            pinned.forEach(resultStoreService::unpin);
+        }
+    }
+
     /**
      * 添加历史记录
+     *
+     * @param parseResult 解析结果
+     * @param contentHash Markdown 内容在结果存储中的哈希
      */
-    public HistoryRecord addHistory(ParseResult parseResult) {
+    public synchronized HistoryRecord addHistory(ParseResult parseResult, String contentHash) {
         String id = UUID.randomUUID().toString().substring(0, 8);
         long createdAt = System.currentTimeMillis();
 
+        // 历史文件只保存内容引用，正文由结果存储负责
         HistoryRecord record = HistoryRecord.builder()
                 .id(id)
                 .originalFilename(parseResult.getOriginalFilename())
-                .markdownContent(parseResult.getMarkdownContent())
+                .contentHash(contentHash)
                 .imageCount(parseResult.getImageCount())
                 .filePath(parseResult.getResultFilePath())
                 .processingTime(parseResult.getProcessingTime())
@@ -80,10 +119,13 @@ public HistoryRecord addHistory(ParseResult parseResult) {
 
         // 只保留最近 100 条记录
         if (records.size() > 100) {
-            records = records.subList(0, 100);
+            List<HistoryRecord> dropped = new ArrayList<>(records.subList(100, records.size()));
+            records = new ArrayList<>(records.subList(0, 100));
+            saveHistory(records);
+            releaseContent(dropped, records);
+        } else {
+            saveHistory(records);
         }
-
-        saveHistory(records);
         log.info("添加历史记录: {}", record.getOriginalFilename());
 
         return record;
@@ -101,6 +143,7 @@ public List<HistoryRecord> getHistoryList() {
                     HistoryRecord brief = new HistoryRecord();
                     brief.setId(r.getId());
                     brief.setOriginalFilename(r.getOriginalFilename());
+                    brief.setContentHash(r.getContentHash());
                     brief.setImageCount(r.getImageCount());
                     brief.setFilePath(r.getFilePath());
                     brief.setProcessingTime(r.getProcessingTime());
@@ -112,9 +155,20 @@ public List<HistoryRecord> getHistoryList() {
     }
 
     /**
-     * 获取单个历史记录详情
+     * 获取单个历史记录详情（从结果存储中读取 Markdown 内容）
      */
     public HistoryRecord getHistory(String id) {
+        HistoryRecord record = findHistory(id);
+        if (record != null && record.getContentHash() != null && resultStoreService.exists(record.getContentHash())) {
+            record.setMarkdownContent(resultStoreService.read(record.getContentHash()));
+        }
+        return record;
+    }
+
+    /**
+     * 获取单个历史记录（不含 Markdown 内容）
+     */
+    public HistoryRecord findHistory(String id) {
         List<HistoryRecord> records = loadHistory();
         return records.stream()
                 .filter(r -> r.getId().equals(id))
@@ -125,12 +179,16 @@ public HistoryRecord getHistory(String id) {
     /**
      * 删除历史记录
      */
-    public boolean deleteHistory(String id) {
+    public synchronized boolean deleteHistory(String id) {
         List<HistoryRecord> records = loadHistory();
-        boolean removed = records.removeIf(r -> r.getId().equals(id));
+        List<HistoryRecord> dropped = records.stream()
+                .filter(r -> r.getId().equals(id))
+                .collect(Collectors.toList());
+        boolean removed = records.removeAll(dropped);
 
         if (removed) {
             saveHistory(records);
+            releaseContent(dropped, records);
             log.info("删除历史记录: {}", id);
         }
 
@@ -140,11 +198,30 @@ public boolean deleteHistory(String id) {
     /**
      * 清空历史记录
      */
-    public void clearHistory() {
+    public synchronized void clearHistory() {
+        List<HistoryRecord> dropped = loadHistory();
         saveHistory(new ArrayList<>());
+        releaseContent(dropped, new ArrayList<>());
         log.info("清空所有历史记录");
     }
 
+    /**
+     * 删除被移除记录引用、且不再被剩余记录共享的结果内容
+     */
+    private void releaseContent(List<HistoryRecord> dropped, List<HistoryRecord> remaining) {
+        Set<String> referenced = remaining.stream()
+                .map(HistoryRecord::getContentHash)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+
+        dropped.stream()
+                .map(HistoryRecord::getContentHash)
+                .filter(Objects::nonNull)
+                .filter(hash -> !referenced.contains(hash))
+                .distinct()
+                .forEach(resultStoreService::delete);
+    }
+
     /**
      * 从文件加载历史记录
      */
@@ -0,0 +1,693 @@
+package com.fastgpt.docparser.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个知识库的 HNSW 近似最近邻索引
+ * 向量按段存放在内存映射文件中（vectors-xxxxx.bin，堆外），图的邻接表存放在 int 数组中，
+ * 切片文本追加写入 chunks.jsonl，内存中只保留每个切片的文件偏移，检索命中时按偏移读取；
+ * 图结构通过 {@link #save()} 写入 graph.bin，重启后直接加载无需重建，未保存的更新在重启后丢弃。
+ * 删除的节点保留在图中用于导航，比例过高时通过 {@link #compactTo(Path)} 重建。
+ * 向量均已 L2 归一化，距离为 1 - 内积
+ *
+ * @author ZHONG WEI
+ */
+public class HnswIndex {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int VERSION = 1;
+    private static final int SEGMENT_VECTORS = 16384;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Path dir;
+    private final int dimension;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final Gson gson = new Gson();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final List<FloatBuffer> segmentViews = new ArrayList<>();
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private int[] levels = new int[INITIAL_CAPACITY];
+    private int[] level0;
+    private int[][] upperLinks = new int[INITIAL_CAPACITY][];
+    private final BitSet deleted = new BitSet();
+
+    /**
+     * 切片 i 在 chunks.jsonl 中的行为 [textOffsets[i], textOffsets[i + 1])
+     */
+    private long[] textOffsets = new long[INITIAL_CAPACITY + 1];
+    private FileChannel chunks;
+    private final Map<String, int[]> fileNodes = new HashMap<>();
+    private final AtomicInteger unsavedChanges = new AtomicInteger();
+    private volatile boolean closed;
+
+    private HnswIndex(Path dir, int dimension, int m, int efConstruction) {
+        this.dir = dir;
+        this.dimension = dimension;
+        this.m = Math.max(2, m);
+        this.maxM0 = this.m * 2;
+        this.efConstruction = Math.max(this.m, efConstruction);
+        this.levelMultiplier = 1 / Math.log(this.m);
+        this.level0 = new int[INITIAL_CAPACITY * (maxM0 + 1)];
+    }
+
+    /**
+     * 打开索引目录；已有索引的维度与当前配置不一致时丢弃旧索引
+     */
+    public static HnswIndex open(Path dir, int dimension, int m, int efConstruction) throws IOException {
+        Files.createDirectories(dir);
+        HnswIndex index = new HnswIndex(dir, dimension, m, efConstruction);
+        Path graphFile = dir.resolve("graph.bin");
+        if (!Files.exists(graphFile)) {
+            // 从未保存过图结构：残留的切片和向量文件无法与节点编号对应，全部清除
+            index.clearFiles();
+            index.openChunks();
+            return index;
+        }
+
+        boolean loaded;
+        try {
+            loaded = index.load(graphFile);
+        } catch (IOException e) {
+            loaded = false;
+        }
+        if (!loaded) {
+            // 索引不完整或参数已变化，清空后重新积累
+            index.close();
+            index = new HnswIndex(dir, dimension, m, efConstruction);
+            index.clearFiles();
+            index.openChunks();
+        }
+        return index;
+    }
+
+    /**
+     * 添加文档切片及其向量
+     */
+    public void add(String fileId, List<String> chunks, List<float[]> vectors) throws IOException {
+        lock.writeLock().lock();
+        try {
+            removeInternal(fileId);
+            int start = count;
+            ByteArrayOutputStream lines = new ByteArrayOutputStream();
+            for (int i = 0; i < chunks.size(); i++) {
+                insert(vectors.get(i));
+                JsonObject line = new JsonObject();
+                line.addProperty("fileId", fileId);
+                line.addProperty("text", chunks.get(i));
+                byte[] bytes = (gson.toJson(line) + "\n").getBytes(StandardCharsets.UTF_8);
+                lines.write(bytes);
+                textOffsets[count] = textOffsets[count - 1] + bytes.length;
+            }
+            writeFully(ByteBuffer.wrap(lines.toByteArray()), textOffsets[start]);
+            fileNodes.put(fileId, new int[]{start, count});
+            unsavedChanges.addAndGet(chunks.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档的全部切片（节点保留在图中用于导航，查询结果中跳过）
+     */
+    public void remove(String fileId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(fileId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 近似最近邻检索
+     *
+     * @return 与查询向量最相近的切片文本
+     */
+    public List<String> search(float[] query, int topK, int efSearch) {
+        lock.readLock().lock();
+        try {
+            if (closed || entryPoint < 0 || topK <= 0) {
+                return new ArrayList<>();
+            }
+            int ep = entryPoint;
+            for (int level = maxLevel; level > 0; level--) {
+                ep = searchLayer(query, ep, 1, level).get(0).id;
+            }
+
+            List<String> result = new ArrayList<>(topK);
+            for (Candidate candidate : searchLayer(query, ep, Math.max(efSearch, topK), 0)) {
+                if (!deleted.get(candidate.id)) {
+                    result.add(readText(candidate.id));
+                    if (result.size() == topK) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已删除节点占全部节点的比例
+     */
+    public double deletedRatio() {
+        lock.readLock().lock();
+        try {
+            return count == 0 ? 0 : (double) deleted.cardinality() / count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 上次保存后新增和删除的切片数
+     */
+    public int unsavedChanges() {
+        return unsavedChanges.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 有效切片数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count - deleted.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 刷新向量映射和切片文件并写入图结构（已关闭时跳过）
+     */
+    public void save() throws IOException {
+        lock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            segments.forEach(MappedByteBuffer::force);
+            chunks.force(false);
+
+            Path tmp = dir.resolve("graph.bin.tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(dimension);
+                out.writeInt(m);
+                out.writeInt(count);
+                out.writeInt(entryPoint);
+                out.writeInt(maxLevel);
+                for (int node = 0; node < count; node++) {
+                    out.writeInt(levels[node]);
+                    for (int level = 0; level <= levels[node]; level++) {
+                        int[] links = links(node, level);
+                        int base = linkBase(node, level);
+                        int size = links[base];
+                        out.writeInt(size);
+                        for (int i = 1; i <= size; i++) {
+                            out.writeInt(links[base + i]);
+                        }
+                    }
+                }
+                long[] words = deleted.toLongArray();
+                out.writeInt(words.length);
+                for (long word : words) {
+                    out.writeLong(word);
+                }
+            }
+            Files.move(tmp, dir.resolve("graph.bin"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            unsavedChanges.set(0);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 只用有效切片重建索引并保存到 target 目录（已删除的节点不再占用图、向量段和切片文件）
+     */
+    public void compactTo(Path target) throws IOException {
+        lock.readLock().lock();
+        try {
+            HnswIndex compacted = open(target, dimension, m, efConstruction);
+            try {
+                List<Map.Entry<String, int[]>> files = new ArrayList<>(fileNodes.entrySet());
+                files.sort(Comparator.comparingInt(entry -> entry.getValue()[0]));
+                for (Map.Entry<String, int[]> file : files) {
+                    int[] range = file.getValue();
+                    List<String> texts = new ArrayList<>(range[1] - range[0]);
+                    List<float[]> vectors = new ArrayList<>(range[1] - range[0]);
+                    for (int node = range[0]; node < range[1]; node++) {
+                        texts.add(readText(node));
+                        vectors.add(readVector(node));
+                    }
+                    compacted.add(file.getKey(), texts, vectors);
+                }
+                compacted.save();
+            } finally {
+                compacted.close();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 关闭切片文件（等待进行中的检索结束），之后的检索返回空结果
+     */
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            closeChunks();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除索引目录下的全部文件
+     */
+    public void delete() throws IOException {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            segments.clear();
+            segmentViews.clear();
+            clearFiles();
+            Files.deleteIfExists(dir);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(float[] vector) throws IOException {
+        int node = count;
+        ensureCapacity(node + 1);
+        writeVector(node, vector);
+
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        levels[node] = level;
+        upperLinks[node] = level > 0 ? new int[level * (m + 1)] : null;
+        count++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        int ep = entryPoint;
+        for (int l = maxLevel; l > level; l--) {
+            ep = searchLayer(vector, ep, 1, l).get(0).id;
+        }
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            List<Candidate> candidates = searchLayer(vector, ep, efConstruction, l);
+            List<Candidate> neighbors = selectNeighbors(candidates, l == 0 ? maxM0 : m);
+            setLinks(node, l, neighbors);
+            for (Candidate neighbor : neighbors) {
+                addLink(neighbor.id, l, node);
+            }
+            ep = candidates.get(0).id;
+        }
+
+        if (level > maxLevel) {
+            entryPoint = node;
+            maxLevel = level;
+        }
+    }
+
+    /**
+     * 在指定层上做贪心扩展搜索
+     *
+     * @return 按距离升序排列的候选节点（最多 ef 个）
+     */
+    private List<Candidate> searchLayer(float[] query, int entry, int ef, int level) {
+        BitSet visited = new BitSet(count);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(Comparator.comparingDouble((Candidate c) -> c.distance).reversed());
+
+        Candidate start = new Candidate(entry, distance(query, entry));
+        candidates.add(start);
+        results.add(start);
+        visited.set(entry);
+
+        while (!candidates.isEmpty()) {
+            Candidate current = candidates.poll();
+            if (results.size() >= ef && current.distance > results.peek().distance) {
+                break;
+            }
+            int[] links = links(current.id, level);
+            int base = linkBase(current.id, level);
+            for (int i = 1; i <= links[base]; i++) {
+                int neighbor = links[base + i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance) {
+                    Candidate candidate = new Candidate(neighbor, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(c -> c.distance));
+        return sorted;
+    }
+
+    /**
+     * 启发式邻居选择：优先保留彼此分散的邻居，不足时用被淘汰的近邻补齐
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, int max) {
+        if (candidates.size() <= max) {
+            return candidates;
+        }
+        List<Candidate> selected = new ArrayList<>(max);
+        List<Candidate> discarded = new ArrayList<>();
+        for (Candidate candidate : candidates) {
+            if (selected.size() >= max) {
+                break;
+            }
+            float[] vector = readVector(candidate.id);
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(vector, chosen.id) < candidate.distance) {
+                    diverse = false;
+                    break;
+                }
+            }
+            (diverse ? selected : discarded).add(candidate);
+        }
+        for (int i = 0; i < discarded.size() && selected.size() < max; i++) {
+            selected.add(discarded.get(i));
+        }
+        return selected;
+    }
+
+    private void setLinks(int node, int level, List<Candidate> neighbors) {
+        int[] links = links(node, level);
+        int base = linkBase(node, level);
+        links[base] = neighbors.size();
+        for (int i = 0; i < neighbors.size(); i++) {
+            links[base + 1 + i] = neighbors.get(i).id;
+        }
+    }
+
+    /**
+     * 添加反向连接，超出上限时按启发式重新选择
+     */
+    private void addLink(int node, int level, int neighbor) {
+        int max = level == 0 ? maxM0 : m;
+        int[] links = links(node, level);
+        int base = linkBase(node, level);
+        int size = links[base];
+        if (size < max) {
+            links[base + 1 + size] = neighbor;
+            links[base] = size + 1;
+            return;
+        }
+
+        float[] vector = readVector(node);
+        List<Candidate> candidates = new ArrayList<>(size + 1);
+        for (int i = 1; i <= size; i++) {
+            candidates.add(new Candidate(links[base + i], distance(vector, links[base + i])));
+        }
+        candidates.add(new Candidate(neighbor, distance(vector, neighbor)));
+        candidates.sort(Comparator.comparingDouble(c -> c.distance));
+        setLinks(node, level, selectNeighbors(candidates, max));
+    }
+
+    private int[] links(int node, int level) {
+        return level == 0 ? level0 : upperLinks[node];
+    }
+
+    private int linkBase(int node, int level) {
+        return level == 0 ? node * (maxM0 + 1) : (level - 1) * (m + 1);
+    }
+
+    private void removeInternal(String fileId) {
+        int[] range = fileNodes.remove(fileId);
+        if (range != null) {
+            deleted.set(range[0], range[1]);
+            unsavedChanges.addAndGet(range[1] - range[0]);
+        }
+    }
+
+    /**
+     * 按偏移读取切片文本
+     */
+    private String readText(int node) {
+        int length = (int) (textOffsets[node + 1] - textOffsets[node]);
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (chunks.read(buffer, textOffsets[node] + buffer.position()) < 0) {
+                    throw new EOFException("切片文件不完整: " + node);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取切片失败: " + node, e);
+        }
+        JsonObject line = gson.fromJson(new String(buffer.array(), StandardCharsets.UTF_8), JsonObject.class);
+        return line.get("text").getAsString();
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            chunks.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void openChunks() throws IOException {
+        chunks = FileChannel.open(dir.resolve("chunks.jsonl"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private void closeChunks() throws IOException {
+        if (chunks != null) {
+            chunks.close();
+            chunks = null;
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= levels.length) {
+            return;
+        }
+        int newCapacity = Math.max(capacity, levels.length * 2);
+        levels = Arrays.copyOf(levels, newCapacity);
+        upperLinks = Arrays.copyOf(upperLinks, newCapacity);
+        level0 = Arrays.copyOf(level0, newCapacity * (maxM0 + 1));
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity + 1);
+    }
+
+    private float distance(float[] query, int node) {
+        FloatBuffer segment = segmentViews.get(node / SEGMENT_VECTORS);
+        int offset = (node % SEGMENT_VECTORS) * dimension;
+        float dot = 0;
+        for (int i = 0; i < dimension; i++) {
+            dot += query[i] * segment.get(offset + i);
+        }
+        return 1 - dot;
+    }
+
+    private float[] readVector(int node) {
+        float[] vector = new float[dimension];
+        segmentViews.get(node / SEGMENT_VECTORS).get((node % SEGMENT_VECTORS) * dimension, vector);
+        return vector;
+    }
+
+    private void writeVector(int node, float[] vector) throws IOException {
+        if (vector.length != dimension) {
+            throw new IllegalArgumentException("向量维度不一致: " + vector.length + " != " + dimension);
+        }
+        while (segments.size() <= node / SEGMENT_VECTORS) {
+            addSegment(segments.size());
+        }
+        segmentViews.get(node / SEGMENT_VECTORS).put((node % SEGMENT_VECTORS) * dimension, vector);
+    }
+
+    private void addSegment(int segment) throws IOException {
+        MappedByteBuffer buffer = mapSegment(segment);
+        segments.add(buffer);
+        segmentViews.add(buffer.asFloatBuffer());
+    }
+
+    /**
+     * 映射一个向量段文件（映射建立后即可关闭通道）
+     */
+    private MappedByteBuffer mapSegment(int segment) throws IOException {
+        Path file = dir.resolve(String.format("vectors-%05d.bin", segment));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) SEGMENT_VECTORS * dimension * Float.BYTES);
+        }
+    }
+
+    /**
+     * 加载图结构、向量段和切片文本
+     *
+     * @return 维度或参数不一致时返回 false
+     */
+    private boolean load(Path graphFile) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(graphFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != dimension || in.readInt() != m) {
+                return false;
+            }
+            int nodes = in.readInt();
+            entryPoint = in.readInt();
+            maxLevel = in.readInt();
+            ensureCapacity(nodes);
+            for (int node = 0; node < nodes; node++) {
+                int level = in.readInt();
+                levels[node] = level;
+                upperLinks[node] = level > 0 ? new int[level * (m + 1)] : null;
+                for (int l = 0; l <= level; l++) {
+                    int[] links = links(node, l);
+                    int base = linkBase(node, l);
+                    int size = in.readInt();
+                    links[base] = size;
+                    for (int i = 1; i <= size; i++) {
+                        links[base + i] = in.readInt();
+                    }
+                }
+            }
+            long[] words = new long[in.readInt()];
+            for (int i = 0; i < words.length; i++) {
+                words[i] = in.readLong();
+            }
+            deleted.or(BitSet.valueOf(words));
+            count = nodes;
+        }
+
+        int segmentCount = (count + SEGMENT_VECTORS - 1) / SEGMENT_VECTORS;
+        for (int segment = 0; segment < segmentCount; segment++) {
+            addSegment(segment);
+        }
+        removeSegmentsFrom(segmentCount);
+        loadTexts();
+        return true;
+    }
+
+    /**
+     * 删除保存图结构后新增的向量段文件（段内未保存的向量会在插入时覆盖，无需处理）
+     */
+    private void removeSegmentsFrom(int segment) throws IOException {
+        for (int i = segment; ; i++) {
+            if (!Files.deleteIfExists(dir.resolve(String.format("vectors-%05d.bin", i)))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 扫描切片文件记录每行的偏移；保存图结构后追加但未保存的切片被截掉，保持与节点编号一致
+     */
+    private void loadTexts() throws IOException {
+        openChunks();
+        String currentFile = null;
+        int start = 0;
+        int node = 0;
+        long offset = 0;
+        try (InputStream in = new BufferedInputStream(Channels.newInputStream(chunks.position(0)))) {
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while (node < count && (b = in.read()) >= 0) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                offset += line.size() + 1;
+                String fileId = gson.fromJson(line.toString(StandardCharsets.UTF_8), JsonObject.class)
+                        .get("fileId").getAsString();
+                line.reset();
+                textOffsets[node + 1] = offset;
+                if (!fileId.equals(currentFile)) {
+                    trackFile(currentFile, start, node);
+                    currentFile = fileId;
+                    start = node;
+                }
+                node++;
+            }
+        }
+        // Channels.newInputStream 关闭时会关闭通道，重新打开
+        openChunks();
+        if (node < count) {
+            throw new IOException("切片文件不完整: " + node + " < " + count);
+        }
+        trackFile(currentFile, start, count);
+        if (chunks.size() > offset) {
+            chunks.truncate(offset);
+        }
+    }
+
+    private void trackFile(String fileId, int start, int end) {
+        if (fileId != null && deleted.nextClearBit(start) < end) {
+            fileNodes.put(fileId, new int[]{start, end});
+        }
+    }
+
+    private void clearFiles() throws IOException {
+        count = 0;
+        entryPoint = -1;
+        maxLevel = -1;
+        deleted.clear();
+        fileNodes.clear();
+        unsavedChanges.set(0);
+        closeChunks();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private static class Candidate {
+        final int id;
+        final float distance;
+
+        Candidate(int id, float distance) {
+            this.id = id;
+            this.distance = distance;
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.fastgpt.docparser.service;
+
+import com.aliyun.bailian20231229.models.*;
+import com.aliyun.teautil.models.RuntimeOptions;
+import com.fastgpt.docparser.config.IngestionProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 索引任务合并提交服务
+ * 同一知识库在短时间窗口内追加的文件合并为一个 SubmitIndexAddDocumentsJob，
+ * 由一个轮询任务跟踪，完成后统一通知所有等待方；
+ * 进行中的索引任务达到上限时批次按到达顺序排队，排队期间同一知识库的新文件继续合并进排队中的批次
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class IndexJobCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexJobCoalescer.class);
+
+    private final AliyunBailianService bailianService;
+    private final IngestionProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService worker;
+    private final Semaphore jobPermits;
+    private final Map<String, PendingBatch> pending = new HashMap<>();
+    /**
+     * 等待索引任务许可的批次（按到达顺序），由 pending 的锁保护
+     */
+    private final Deque<PendingBatch> waiting = new ArrayDeque<>();
+
+    public IndexJobCoalescer(AliyunBailianService bailianService, IngestionProperties properties) {
+        this.bailianService = bailianService;
+        this.properties = properties;
+        this.jobPermits = new Semaphore(Math.max(1, properties.getIndexConcurrency()));
+        this.scheduler = Executors.newScheduledThreadPool(2, new DaemonThreadFactory("index-coalescer"));
+        // 提交和轮询索引任务是阻塞的百炼调用，放在单独的线程池中，调度线程只负责计时
+        this.worker = Executors.newFixedThreadPool(Math.max(1, properties.getIndexConcurrency()),
+                new DaemonThreadFactory("index-job"));
+    }
+
+    /**
+     * 将文件加入知识库的待提交批次
+     *
+     * @return 文件所在索引任务完成时结束的 Future
+     */
+    public CompletableFuture<Void> enqueue(String indexId, String fileId) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        PendingBatch full = null;
+
+        synchronized (pending) {
+            PendingBatch batch = pending.get(indexId);
+            if (batch == null) {
+                PendingBatch created = new PendingBatch(indexId);
+                pending.put(indexId, created);
+                scheduler.schedule(() -> flush(created), properties.getIndexBatchWindow(), TimeUnit.MILLISECONDS);
+                batch = created;
+            }
+            batch.add(fileId, future);
+
+            // 达到批次上限立即提交，不等时间窗口结束
+            if (batch.size() >= properties.getIndexBatchMaxSize()) {
+                pending.remove(indexId);
+                full = batch;
+            }
+        }
+
+        if (full != null) {
+            PendingBatch ready = full;
+            submit(ready);
+        }
+        return future;
+    }
+
+    /**
+     * 时间窗口到期，提交批次（已因数量达到上限提前提交的跳过）
+     */
+    private void flush(PendingBatch batch) {
+        synchronized (pending) {
+            if (pending.get(batch.indexId) != batch) {
+                return;
+            }
+            pending.remove(batch.indexId);
+        }
+        submit(batch);
+    }
+
+    private void submit(PendingBatch batch) {
+        synchronized (pending) {
+            if (!jobPermits.tryAcquire()) {
+                // 进行中的索引任务已达上限：合并进同一知识库排队中的批次，否则排到队尾，有任务结束时按顺序提交
+                for (PendingBatch queued : waiting) {
+                    if (queued.indexId.equals(batch.indexId)
+                            && queued.size() + batch.size() <= properties.getIndexBatchMaxSize()) {
+                        queued.merge(batch);
+                        log.debug("进行中的索引任务已达上限，文件合并进排队中的批次: {}", batch.indexId);
+                        return;
+                    }
+                }
+                waiting.addLast(batch);
+                log.debug("进行中的索引任务已达上限，批次排队等待提交: {}", batch.indexId);
+                return;
+            }
+        }
+        worker.execute(() -> startJob(batch));
+    }
+
+    /**
+     * 任务结束：许可直接交给排队中的下一个批次，没有排队的批次时归还
+     */
+    private void releasePermit() {
+        PendingBatch next;
+        synchronized (pending) {
+            next = waiting.pollFirst();
+            if (next == null) {
+                jobPermits.release();
+                return;
+            }
+        }
+        worker.execute(() -> startJob(next));
+    }
+
+    private void startJob(PendingBatch batch) {
+        try {
+            List<String> documentIds = batch.documentIds();
+            String jobId = submitIndexAddDocumentsJob(batch.indexId, documentIds);
+            log.info("索引任务已提交，知识库: {}，JobId: {}，文件数: {}", batch.indexId, jobId, documentIds.size());
+            schedulePoll(batch, jobId, 0);
+        } catch (Exception e) {
+            releasePermit();
+            log.error("提交索引任务失败，知识库: {}", batch.indexId, e);
+            batch.fail(new BusinessException("提交索引任务失败: " + e.getMessage(), e));
+        }
+    }
+
+    private void schedulePoll(PendingBatch batch, String jobId, int attempts) {
+        scheduler.schedule(() -> worker.execute(() -> poll(batch, jobId, attempts)),
+                bailianService.getProperties().getPollingInterval(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 轮询索引任务状态，每个批次只有一个轮询
+     */
+    private void poll(PendingBatch batch, String jobId, int attempts) {
+        try {
+            String status = getIndexJobStatus(batch.indexId, jobId);
+            log.debug("索引任务状态: {} ({})", status, jobId);
+
+            if ("COMPLETED".equals(status)) {
+                releasePermit();
+                log.info("索引构建完成，JobId: {}", jobId);
+                batch.complete();
+            } else if ("FAILED".equals(status)) {
+                releasePermit();
+                batch.fail(new BusinessException("索引构建失败"));
+            } else if (attempts + 1 >= bailianService.getProperties().getMaxPollingAttempts()) {
+                releasePermit();
+                batch.fail(new BusinessException("索引构建超时"));
+            } else {
+                schedulePoll(batch, jobId, attempts + 1);
+            }
+        } catch (Exception e) {
+            releasePermit();
+            log.error("查询索引任务状态失败，JobId: {}", jobId, e);
+            batch.fail(new BusinessException("查询索引任务状态失败: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * 提交索引追加文档任务
+     */
+    private String submitIndexAddDocumentsJob(String indexId, List<String> fileIds) throws Exception {
+        SubmitIndexAddDocumentsJobRequest request = new SubmitIndexAddDocumentsJobRequest()
+                .setIndexId(indexId)
+                .setDocumentIds(fileIds)
+                .setSourceType("DATA_CENTER_FILE");
+
+        SubmitIndexAddDocumentsJobResponse response = bailianService.getClient().submitIndexAddDocumentsJobWithOptions(
+                bailianService.getWorkspaceId(),
+                request,
+                new HashMap<>(),
+                new RuntimeOptions()
+        );
+
+        return response.getBody().getData().getId();
+    }
+
+    /**
+     * 查询索引任务状态
+     */
+    private String getIndexJobStatus(String indexId, String jobId) throws Exception {
+        GetIndexJobStatusRequest request = new GetIndexJobStatusRequest()
+                .setIndexId(indexId)
+                .setJobId(jobId);
+
+        GetIndexJobStatusResponse response = bailianService.getClient().getIndexJobStatusWithOptions(
+                bailianService.getWorkspaceId(),
+                request,
+                new HashMap<>(),
+                new RuntimeOptions()
+        );
+
+        return response.getBody().getData().getStatus();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        worker.shutdownNow();
+    }
+
+    /**
+     * 待提交的批次
+     */
+    private static class PendingBatch {
+        final String indexId;
+        final Map<String, List<CompletableFuture<Void>>> waiters = new LinkedHashMap<>();
+
+        PendingBatch(String indexId) {
+            this.indexId = indexId;
+        }
+
+        void add(String fileId, CompletableFuture<Void> future) {
+            waiters.computeIfAbsent(fileId, id -> new ArrayList<>()).add(future);
+        }
+
+        void merge(PendingBatch other) {
+            other.waiters.forEach((fileId, futures) ->
+                    waiters.computeIfAbsent(fileId, id -> new ArrayList<>()).addAll(futures));
+        }
+
+        int size() {
+            return waiters.size();
+        }
+
+        List<String> documentIds() {
+            return new ArrayList<>(waiters.keySet());
+        }
+
+        void complete() {
+            waiters.values().forEach(futures -> futures.forEach(f -> f.complete(null)));
+        }
+
+        void fail(Throwable error) {
+            waiters.values().forEach(futures -> futures.forEach(f -> f.completeExceptionally(error)));
+        }
+    }
+}
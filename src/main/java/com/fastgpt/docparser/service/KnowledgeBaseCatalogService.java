@@ -0,0 +1,347 @@
+package com.fastgpt.docparser.service;
+
+import com.aliyun.bailian20231229.models.*;
+import com.aliyun.teautil.models.RuntimeOptions;
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.dto.KnowledgeBaseDTO;
+import com.fastgpt.docparser.dto.RetrievalOptions;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 知识库目录缓存服务
+ * 在本地维护知识库列表及文档数、大小、时间等元数据，查询直接读内存；
+ * 后台按间隔分页拉取 ListIndices 与远端同步，创建、删除、上传时同步更新本地数据
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class KnowledgeBaseCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(KnowledgeBaseCatalogService.class);
+    private static final String CATALOG_FILE = "knowledge-bases.json";
+
+    private final AliyunBailianService bailianService;
+    private final Gson gson;
+    private final Path catalogFilePath;
+    private final Map<String, KnowledgeBaseDTO> knowledgeBases = new LinkedHashMap<>();
+    private final Map<String, Long> deletedAt = new HashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+    private volatile long lastRefreshedAt;
+
+    public KnowledgeBaseCatalogService(AliyunBailianService bailianService, FileProperties fileProperties) {
+        this.bailianService = bailianService;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.catalogFilePath = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(CATALOG_FILE);
+        loadCatalog();
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("kb-catalog-refresh"));
+        long interval = bailianService.getProperties().getCatalogRefreshInterval();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 分页查询知识库列表（读取本地缓存）
+     *
+     * @param page 页码，从 1 开始
+     * @param size 每页数量，小于等于 0 时返回全部
+     */
+    public List<KnowledgeBaseDTO> list(int page, int size) {
+        // 尚未完成过同步（例如刚启动且本地无缓存）时同步拉取一次
+        if (lastRefreshedAt == 0 && isEmpty()) {
+            refresh();
+        }
+
+        List<KnowledgeBaseDTO> all;
+        synchronized (this) {
+            all = knowledgeBases.values().stream()
+                    .sorted(Comparator.comparing(
+                            (KnowledgeBaseDTO kb) -> kb.getCreatedAt() != null ? kb.getCreatedAt() : 0L).reversed())
+                    .map(this::copy)
+                    .collect(Collectors.toList());
+        }
+
+        if (size <= 0) {
+            return all;
+        }
+        int from = Math.max(0, (page - 1) * size);
+        if (from >= all.size()) {
+            return new ArrayList<>();
+        }
+        return all.subList(from, Math.min(all.size(), from + size));
+    }
+
+    /**
+     * 知识库总数
+     */
+    public synchronized int count() {
+        return knowledgeBases.size();
+    }
+
+    /**
+     * 创建知识库后写入本地目录
+     */
+    public synchronized void onCreated(KnowledgeBaseDTO knowledgeBase) {
+        KnowledgeBaseDTO entry = copy(knowledgeBase);
+        entry.setDocumentCount(0);
+        entry.setTotalSize(0L);
+        entry.setUpdatedAt(entry.getCreatedAt());
+        knowledgeBases.put(entry.getId(), entry);
+        deletedAt.remove(entry.getId());
+        saveCatalog();
+    }
+
+    /**
+     * 删除知识库后移出本地目录
+     */
+    public synchronized void onDeleted(String indexId) {
+        knowledgeBases.remove(indexId);
+        deletedAt.put(indexId, System.currentTimeMillis());
+        saveCatalog();
+    }
+
+    /**
+     * 文档加入知识库后更新文档数和大小
+     */
+    public void onDocumentAdded(String indexId, long sizeInBytes) {
+        onDocumentsChanged(indexId, 1, Math.max(0, sizeInBytes));
+    }
+
+    /**
+     * 文档增删或增量更新后调整文档数和大小
+     *
+     * @param countDelta 文档数变化量
+     * @param sizeDelta  大小变化量（字节）
+     */
+    public synchronized void onDocumentsChanged(String indexId, int countDelta, long sizeDelta) {
+        KnowledgeBaseDTO entry = knowledgeBases.computeIfAbsent(indexId,
+                id -> KnowledgeBaseDTO.builder().id(id).documentCount(0).totalSize(0L).build());
+        int count = (entry.getDocumentCount() != null ? entry.getDocumentCount() : 0) + countDelta;
+        long size = (entry.getTotalSize() != null ? entry.getTotalSize() : 0L) + sizeDelta;
+        entry.setDocumentCount(Math.max(0, count));
+        entry.setTotalSize(Math.max(0L, size));
+        entry.setUpdatedAt(System.currentTimeMillis());
+        saveCatalog();
+    }
+
+    /**
+     * 知识库的检索参数默认值（未设置时返回 null）
+     */
+    public synchronized RetrievalOptions getRetrievalOptions(String indexId) {
+        KnowledgeBaseDTO entry = knowledgeBases.get(indexId);
+        return entry != null ? entry.getRetrievalOptions() : null;
+    }
+
+    /**
+     * 设置知识库的检索参数默认值
+     */
+    public synchronized void updateRetrievalOptions(String indexId, RetrievalOptions options) {
+        KnowledgeBaseDTO entry = knowledgeBases.get(indexId);
+        if (entry == null) {
+            throw new BusinessException(404, "知识库不存在: " + indexId);
+        }
+        validateRetrievalOptions(options);
+        entry.setRetrievalOptions(options);
+        saveCatalog();
+    }
+
+    /**
+     * 校验检索参数（取值范围与百炼 Retrieve 接口一致）
+     */
+    public static void validateRetrievalOptions(RetrievalOptions options) {
+        if (options.getDenseTopK() != null && (options.getDenseTopK() < 0 || options.getDenseTopK() > 100)) {
+            throw new BusinessException(400, "denseTopK 取值范围为 0 ~ 100");
+        }
+        if (options.getSparseTopK() != null && (options.getSparseTopK() < 0 || options.getSparseTopK() > 100)) {
+            throw new BusinessException(400, "sparseTopK 取值范围为 0 ~ 100");
+        }
+        if (options.getRerankTopN() != null && (options.getRerankTopN() < 1 || options.getRerankTopN() > 20)) {
+            throw new BusinessException(400, "rerankTopN 取值范围为 1 ~ 20");
+        }
+        if (options.getMinScore() != null && (options.getMinScore() < 0.01f || options.getMinScore() > 1f)) {
+            throw new BusinessException(400, "minScore 取值范围为 0.01 ~ 1.00");
+        }
+    }
+
+    /**
+     * 从百炼分页拉取全部知识库并与本地目录合并
+     */
+    public void refresh() {
+        refreshLock.lock();
+        try {
+            doRefresh();
+        } catch (Exception e) {
+            log.error("同步知识库目录失败", e);
+            throw new BusinessException("查询知识库列表失败: " + e.getMessage(), e);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * 后台定时刷新，失败时保留旧数据等待下次刷新
+     */
+    private void refreshQuietly() {
+        if (!refreshLock.tryLock()) {
+            return;
+        }
+        try {
+            doRefresh();
+        } catch (Exception e) {
+            log.warn("后台同步知识库目录失败: {}", e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void doRefresh() throws Exception {
+        long startedAt = System.currentTimeMillis();
+        List<ListIndicesResponseBody.ListIndicesResponseBodyDataIndices> remote = fetchAllIndices();
+        merge(remote, startedAt);
+        lastRefreshedAt = System.currentTimeMillis();
+        log.info("知识库目录已同步，共 {} 个，耗时 {} ms", remote.size(), lastRefreshedAt - startedAt);
+    }
+
+    /**
+     * 分页拉取 ListIndices
+     */
+    private List<ListIndicesResponseBody.ListIndicesResponseBodyDataIndices> fetchAllIndices() throws Exception {
+        List<ListIndicesResponseBody.ListIndicesResponseBodyDataIndices> result = new ArrayList<>();
+        int pageSize = bailianService.getProperties().getListPageSize();
+        int pageNumber = 1;
+
+        while (true) {
+            ListIndicesRequest request = new ListIndicesRequest()
+                    .setPageNumber(String.valueOf(pageNumber))
+                    .setPageSize(String.valueOf(pageSize));
+            ListIndicesResponse response = bailianService.getClient().listIndicesWithOptions(
+                    bailianService.getWorkspaceId(),
+                    request,
+                    new HashMap<>(),
+                    new RuntimeOptions()
+            );
+
+            // 检查响应数据是否为空
+            if (response == null ||
+                response.getBody() == null ||
+                response.getBody().getData() == null ||
+                response.getBody().getData().getIndices() == null ||
+                response.getBody().getData().getIndices().isEmpty()) {
+                break;
+            }
+
+            result.addAll(response.getBody().getData().getIndices());
+            Integer totalCount = response.getBody().getData().getTotalCount();
+            if (response.getBody().getData().getIndices().size() < pageSize
+                    || (totalCount != null && result.size() >= totalCount)) {
+                break;
+            }
+            pageNumber++;
+        }
+        return result;
+    }
+
+    /**
+     * 合并远端列表：保留本地统计信息，
+     * 拉取期间本地新建或删除的知识库以本地为准
+     */
+    private synchronized void merge(List<ListIndicesResponseBody.ListIndicesResponseBodyDataIndices> remote,
+                                    long startedAt) {
+        Set<String> remoteIds = new HashSet<>();
+        for (ListIndicesResponseBody.ListIndicesResponseBodyDataIndices index : remote) {
+            remoteIds.add(index.getId());
+            Long deletedTime = deletedAt.get(index.getId());
+            if (deletedTime != null && deletedTime >= startedAt) {
+                continue;
+            }
+
+            KnowledgeBaseDTO entry = knowledgeBases.get(index.getId());
+            if (entry == null) {
+                entry = KnowledgeBaseDTO.builder()
+                        .id(index.getId())
+                        .documentCount(0)
+                        .totalSize(0L)
+                        .build();
+                knowledgeBases.put(index.getId(), entry);
+            }
+            entry.setName(index.getName());
+            entry.setDescription(index.getDescription());
+        }
+
+        knowledgeBases.values().removeIf(kb -> !remoteIds.contains(kb.getId())
+                && (kb.getCreatedAt() == null || kb.getCreatedAt() < startedAt));
+        deletedAt.values().removeIf(time -> time < startedAt);
+        saveCatalog();
+    }
+
+    private synchronized boolean isEmpty() {
+        return knowledgeBases.isEmpty();
+    }
+
+    private KnowledgeBaseDTO copy(KnowledgeBaseDTO source) {
+        return KnowledgeBaseDTO.builder()
+                .id(source.getId())
+                .name(source.getName())
+                .description(source.getDescription())
+                .createdAt(source.getCreatedAt())
+                .status(source.getStatus())
+                .documentCount(source.getDocumentCount())
+                .totalSize(source.getTotalSize())
+                .updatedAt(source.getUpdatedAt())
+                .retrievalOptions(source.getRetrievalOptions())
+                .build();
+    }
+
+    /**
+     * 从文件加载本地目录
+     */
+    private synchronized void loadCatalog() {
+        if (!Files.exists(catalogFilePath)) {
+            return;
+        }
+        try {
+            List<KnowledgeBaseDTO> list = gson.fromJson(Files.readString(catalogFilePath),
+                    new TypeToken<List<KnowledgeBaseDTO>>(){}.getType());
+            if (list != null) {
+                list.forEach(kb -> knowledgeBases.put(kb.getId(), kb));
+            }
+            log.info("加载本地知识库目录: {} 个", knowledgeBases.size());
+        } catch (Exception e) {
+            log.error("加载本地知识库目录失败", e);
+        }
+    }
+
+    /**
+     * 保存本地目录到文件
+     */
+    private void saveCatalog() {
+        try {
+            Files.writeString(catalogFilePath, gson.toJson(new ArrayList<>(knowledgeBases.values())));
+        } catch (IOException e) {
+            log.error("保存本地知识库目录失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
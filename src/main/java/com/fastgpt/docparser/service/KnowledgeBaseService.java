@@ -13,13 +13,22 @@
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * 知识库管理服务
@@ -35,12 +44,27 @@ public class KnowledgeBaseService {
 
     private final AliyunBailianService bailianService;
     private final MinerUDocParserService minerUDocParserService;
+    private final IndexJobCoalescer indexJobCoalescer;
+    private final DocumentCatalogService documentCatalogService;
+    private final KnowledgeBaseCatalogService knowledgeBaseCatalogService;
+    private final RetrievalCacheService retrievalCacheService;
+    private final LocalIndexService localIndexService;
     private final OkHttpClient httpClient;
 
     public KnowledgeBaseService(AliyunBailianService bailianService,
-                                MinerUDocParserService minerUDocParserService) {
+                                MinerUDocParserService minerUDocParserService,
+                                IndexJobCoalescer indexJobCoalescer,
+                                DocumentCatalogService documentCatalogService,
+                                KnowledgeBaseCatalogService knowledgeBaseCatalogService,
+                                RetrievalCacheService retrievalCacheService,
+                                LocalIndexService localIndexService) {
         this.bailianService = bailianService;
         this.minerUDocParserService = minerUDocParserService;
+        this.indexJobCoalescer = indexJobCoalescer;
+        this.documentCatalogService = documentCatalogService;
+        this.knowledgeBaseCatalogService = knowledgeBaseCatalogService;
+        this.retrievalCacheService = retrievalCacheService;
+        this.localIndexService = localIndexService;
         this.httpClient = new OkHttpClient();
     }
 
@@ -134,13 +158,15 @@ public KnowledgeBaseDTO createKnowledgeBase(String name, String description) {
 
             log.info("知识库创建成功，ID: {}", indexId);
 
-            return KnowledgeBaseDTO.builder()
+            KnowledgeBaseDTO knowledgeBase = KnowledgeBaseDTO.builder()
                     .id(indexId)
                     .name(name)
                     .description(description)
                     .createdAt(System.currentTimeMillis())
                     .status("CREATED")
                     .build();
+            knowledgeBaseCatalogService.onCreated(knowledgeBase);
+            return knowledgeBase;
 
         } catch (Exception e) {
             log.error("创建知识库失败", e);
@@ -154,50 +180,28 @@ public KnowledgeBaseDTO createKnowledgeBase(String name, String description) {
     public String uploadDocument(String indexId, MultipartFile file) {
         log.info("开始上传文档到知识库 {}: {}", indexId, file.getOriginalFilename());
 
+        Path tmpFilePath = null;
+        MarkdownFile markdownFile = null;
         try {
+            tmpFilePath = saveToTmpDir(file);
+            String fingerprint = documentCatalogService.fingerprint(tmpFilePath);
+
+            // 已上传过的文档直接复用 FileId，跳过解析和上传
+            String reusedFileId = reuseUploadedFile(indexId, fingerprint);
+            if (reusedFileId != null) {
+                return reusedFileId;
+            }
+
             // Step 1: 使用 MinerU 将文档转换为 Markdown
-            log.info("Step 1: 调用 MinerU 转换文档为 Markdown...");
-            Path tmpFilePath = saveToTmpDir(file);
-            MinerUDocParserService.ParseResult parseResult = minerUDocParserService.parseToMarkdown(tmpFilePath);
-
-            // parseResult.markdownContent 已经是处理过图片并上传到 GitHub 的版本
-            // 保存处理后的 Markdown 文件
-            String markdownFilename = file.getOriginalFilename().replaceFirst("\\.[^.]+$", ".md");
-            Path markdownPath = tmpFilePath.getParent().resolve(markdownFilename);
-            Files.writeString(markdownPath, parseResult.markdownContent);
-            log.info("Markdown 文件已保存（图片已转为 GitHub CDN 链接）: {}", markdownPath);
-
-            // Step 2: 申请文件上传租约
-            log.info("Step 2: 申请文件上传租约...");
-            ApplyFileUploadLeaseResponse leaseResponse = applyFileUploadLease(markdownFilename, markdownPath);
-            log.info("租约申请成功，LeaseId: {}", leaseResponse.getBody().getData().getFileUploadLeaseId());
-
-            // Step 3: 上传 Markdown 文件到阿里云
-            log.info("Step 3: 上传 Markdown 文件到阿里云...");
-            uploadFileToAliyun(leaseResponse, markdownPath);
-
-            // Step 4: 添加文件到类目
-            log.info("Step 4: 添加文件到类目...");
-            String fileId = addFileToCategory(leaseResponse);
-            log.info("文件已添加到类目，FileId: {}", fileId);
-
-            // Step 5: 等待文件解析完成
-            log.info("Step 5: 等待文件解析完成...");
-            waitForFileParsing(fileId);
-
-            // Step 6: 追加文件到知识库
-            log.info("Step 6: 追加文件到知识库...");
-            String jobId = submitIndexAddDocumentsJob(indexId, fileId);
-            log.info("索引任务已提交，JobId: {}", jobId);
-
-            // Step 7: 等待索引任务完成
-            log.info("Step 7: 等待索引构建完成...");
-            waitForIndexJobCompletion(indexId, jobId);
-
-            // 清理临时文件
-            Files.deleteIfExists(tmpFilePath);
-            Files.deleteIfExists(markdownPath);
-            log.info("临时文件已清理");
+            markdownFile = convertToMarkdown(tmpFilePath, fingerprint, file.getOriginalFilename());
+
+            // Step 2 ~ 5: 上传 Markdown 到百炼并等待解析
+            String fileId = publishMarkdown(toMarkdownFilename(file.getOriginalFilename()), markdownFile);
+            documentCatalogService.recordFileId(fingerprint, file.getOriginalFilename(), fileId);
+
+            // Step 6 ~ 7: 追加文件到知识库并等待索引完成
+            indexDocument(indexId, fileId);
+            onDocumentIndexed(indexId, fingerprint, markdownFile.size);
 
             log.info("文档上传成功，FileId: {}", fileId);
             return fileId;
@@ -205,20 +209,206 @@ public String uploadDocument(String indexId, MultipartFile file) {
         } catch (Exception e) {
             log.error("上传文档失败", e);
             throw new BusinessException("上传文档失败: " + e.getMessage(), e);
+        } finally {
+            cleanupTmpFiles(tmpFilePath, markdownFile != null ? markdownFile.path : null);
         }
     }
 
     /**
-     * 申请文件上传租约（返回租约响应）
+     * 复用指纹目录中已上传的文件，直接追加到知识库
+     *
+     * @return 复用的 FileId；文档未上传过或 FileId 已失效时返回 null
+     */
+    String reuseUploadedFile(String indexId, String fingerprint) {
+        DocumentCatalogService.CatalogEntry entry = documentCatalogService.find(fingerprint);
+        if (entry == null || entry.fileId == null) {
+            return null;
+        }
+
+        if (entry.indexIds.contains(indexId)) {
+            log.info("文档已存在于知识库 {}，跳过导入，FileId: {}", indexId, entry.fileId);
+            return entry.fileId;
+        }
+
+        log.info("文档已上传过，跳过解析和上传，直接追加到知识库，FileId: {}", entry.fileId);
+        try {
+            indexDocument(indexId, entry.fileId);
+            onDocumentIndexed(indexId, fingerprint, documentCatalogService.markdownSize(fingerprint));
+            return entry.fileId;
+        } catch (Exception e) {
+            log.warn("复用 FileId 失败，重新上传文档: {}", e.getMessage());
+            documentCatalogService.forgetFileId(fingerprint);
+            return null;
+        }
+    }
+
+    /**
+     * 阶段一：调用 MinerU 将文档转换为 Markdown 文件（已解析过的文档直接复用结果）
+     *
+     * @param tmpFilePath      已保存到临时目录的源文件
+     * @param fingerprint      源文件指纹
+     * @param originalFilename 原文件名
+     * @return Markdown 文件（与源文件同目录）
+     */
+    MarkdownFile convertToMarkdown(Path tmpFilePath, String fingerprint, String originalFilename) throws IOException {
+        String markdownContent = loadMarkdown(tmpFilePath, fingerprint, originalFilename);
+
+        // 以临时文件名命名，避免并发上传同名文件时互相覆盖
+        Path markdownPath = tmpFilePath.resolveSibling(toMarkdownFilename(tmpFilePath.getFileName().toString()));
+        MarkdownFile markdownFile = writeMarkdown(markdownPath, markdownContent);
+        log.info("Markdown 文件已保存（图片已转为 GitHub CDN 链接）: {}", markdownPath);
+        return markdownFile;
+    }
+
+    /**
+     * 获取源文件对应的 Markdown 内容：指纹目录中已有时直接复用，否则调用 MinerU 解析
+     */
+    String loadMarkdown(Path tmpFilePath, String fingerprint, String originalFilename) {
+        String markdownContent = documentCatalogService.findMarkdown(fingerprint);
+        if (markdownContent != null) {
+            log.info("Step 1: 复用已解析的 Markdown，跳过 MinerU 解析");
+            return markdownContent;
+        }
+
+        log.info("Step 1: 调用 MinerU 转换文档为 Markdown...");
+        MinerUDocParserService.ParseResult parseResult = minerUDocParserService.parseToMarkdown(tmpFilePath);
+        // parseResult.markdownContent 已经是处理过图片并上传到 GitHub 的版本
+        markdownContent = parseResult.markdownContent;
+        documentCatalogService.recordMarkdown(fingerprint, originalFilename, markdownContent);
+        return markdownContent;
+    }
+
+    /**
+     * 写入 Markdown 文件，写入的同时计算 MD5 和大小，供申请租约时直接使用
+     */
+    MarkdownFile writeMarkdown(Path markdownPath, String markdownContent) throws IOException {
+        MessageDigest md5;
+        try {
+            md5 = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new BusinessException("计算 MD5 失败", e);
+        }
+
+        try (Writer writer = new OutputStreamWriter(new DigestOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(markdownPath)), md5), StandardCharsets.UTF_8)) {
+            writer.write(markdownContent);
+        }
+        return new MarkdownFile(markdownPath, HexFormat.of().formatHex(md5.digest()), Files.size(markdownPath));
+    }
+
+    /**
+     * 阶段二：申请租约、上传 Markdown、添加到类目并等待百炼解析完成
+     *
+     * @param markdownFilename 在百炼中显示的文件名
+     * @param markdownFile     Markdown 文件（含预先计算的 MD5 和大小）
+     * @return 百炼 FileId
      */
-    private ApplyFileUploadLeaseResponse applyFileUploadLease(String filename, Path filePath) throws Exception {
-        byte[] fileBytes = Files.readAllBytes(filePath);
-        String md5 = calculateMD5(fileBytes);
+    String publishMarkdown(String markdownFilename, MarkdownFile markdownFile) throws Exception {
+        // Step 2: 申请文件上传租约
+        log.info("Step 2: 申请文件上传租约...");
+        ApplyFileUploadLeaseResponse leaseResponse = applyFileUploadLease(markdownFilename, markdownFile);
+        log.info("租约申请成功，LeaseId: {}", leaseResponse.getBody().getData().getFileUploadLeaseId());
+
+        // Step 3: 上传 Markdown 文件到阿里云
+        log.info("Step 3: 上传 Markdown 文件到阿里云...");
+        uploadFileToAliyun(leaseResponse, markdownFile.path);
+
+        // Step 4: 添加文件到类目
+        log.info("Step 4: 添加文件到类目...");
+        String fileId = addFileToCategory(leaseResponse);
+        log.info("文件已添加到类目，FileId: {}", fileId);
+
+        // Step 5: 等待文件解析完成
+        log.info("Step 5: 等待文件解析完成...");
+        waitForFileParsing(fileId);
+        return fileId;
+    }
+
+    /**
+     * 阶段三：追加文件到知识库并等待索引构建完成
+     */
+    void indexDocument(String indexId, String fileId) throws Exception {
+        try {
+            indexDocumentAsync(indexId, fileId).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 阶段三（异步）：同一知识库短时间内追加的文件合并为一个索引任务
+     */
+    CompletableFuture<Void> indexDocumentAsync(String indexId, String fileId) {
+        // Step 6 ~ 7: 追加文件到知识库，等待索引构建完成
+        log.info("Step 6: 追加文件到知识库（与同批次文件合并提交）...");
+        return indexJobCoalescer.enqueue(indexId, fileId)
+                .thenRun(() -> retrievalCacheService.invalidate(indexId));
+    }
+
+    /**
+     * 文档加入知识库后更新本地目录
+     */
+    void onDocumentIndexed(String indexId, String fingerprint, long sizeInBytes) {
+        documentCatalogService.recordIndex(fingerprint, indexId);
+        knowledgeBaseCatalogService.onDocumentAdded(indexId, sizeInBytes);
+
+        DocumentCatalogService.CatalogEntry entry = documentCatalogService.find(fingerprint);
+        if (entry != null) {
+            localIndexService.addDocument(indexId, entry.fileId, documentCatalogService.findMarkdown(fingerprint));
+        }
+    }
+
+    /**
+     * 从知识库中删除文档
+     */
+    void deleteDocuments(String indexId, List<String> fileIds) throws Exception {
+        if (fileIds.isEmpty()) {
+            return;
+        }
+        DeleteIndexDocumentRequest request = new DeleteIndexDocumentRequest()
+                .setIndexId(indexId)
+                .setDocumentIds(fileIds);
+
+        bailianService.getClient().deleteIndexDocumentWithOptions(
+                bailianService.getWorkspaceId(),
+                request,
+                new HashMap<>(),
+                new RuntimeOptions()
+        );
+        localIndexService.removeDocuments(indexId, fileIds);
+        retrievalCacheService.invalidate(indexId);
+        log.info("已从知识库 {} 删除 {} 个文档", indexId, fileIds.size());
+    }
+
+    /**
+     * 删除百炼数据中心中的文件（文件需已从知识库移除），单个文件失败只记录日志
+     */
+    void deleteFiles(List<String> fileIds) {
+        for (String fileId : fileIds) {
+            try {
+                bailianService.getClient().deleteFileWithOptions(
+                        fileId,
+                        bailianService.getWorkspaceId(),
+                        new HashMap<>(),
+                        new RuntimeOptions()
+                );
+            } catch (Exception e) {
+                log.warn("删除数据中心文件失败，FileId: {}，{}", fileId, e.getMessage());
+            }
+        }
+    }
 
+    /**
+     * 申请文件上传租约（返回租约响应）
+     */
+    private ApplyFileUploadLeaseResponse applyFileUploadLease(String filename, MarkdownFile markdownFile) throws Exception {
         ApplyFileUploadLeaseRequest request = new ApplyFileUploadLeaseRequest()
                 .setFileName(filename)
-                .setMd5(md5)
-                .setSizeInBytes(String.valueOf(fileBytes.length));
+                .setMd5(markdownFile.md5)
+                .setSizeInBytes(String.valueOf(markdownFile.size));
 
         ApplyFileUploadLeaseResponse response = bailianService.getClient().applyFileUploadLeaseWithOptions(
                 bailianService.getCategoryId(),
@@ -248,13 +438,10 @@ private void uploadFileToAliyun(ApplyFileUploadLeaseResponse leaseResponse, Path
             contentType = headers.getOrDefault("Content-Type", "");
         }
 
-        // 读取 Markdown 文件内容
-        byte[] fileBytes = Files.readAllBytes(filePath);
-
-        // 构建上传请求
+        // 构建上传请求（直接从文件流式上传，不读入内存）
         Request.Builder requestBuilder = new Request.Builder()
                 .url(uploadUrl)
-                .put(RequestBody.create(fileBytes, null))
+                .put(RequestBody.create(filePath.toFile(), null))
                 .addHeader("X-bailian-extra", xBailianExtra);
 
         if (contentType != null && !contentType.isEmpty()) {
@@ -321,95 +508,13 @@ private void waitForFileParsing(String fileId) throws Exception {
     }
 
     /**
-     * 提交索引追加文档任务
-     */
-    private String submitIndexAddDocumentsJob(String indexId, String fileId) throws Exception {
-        SubmitIndexAddDocumentsJobRequest request = new SubmitIndexAddDocumentsJobRequest()
-                .setIndexId(indexId)
-                .setDocumentIds(List.of(fileId))
-                .setSourceType("DATA_CENTER_FILE");
-
-        SubmitIndexAddDocumentsJobResponse response = bailianService.getClient().submitIndexAddDocumentsJobWithOptions(
-                bailianService.getWorkspaceId(),
-                request,
-                new HashMap<>(),
-                new RuntimeOptions()
-        );
-
-        return response.getBody().getData().getId();
-    }
-
-    /**
-     * 等待索引任务完成
+     * 查询知识库列表（读取本地目录缓存）
+     *
+     * @param page 页码，从 1 开始
+     * @param size 每页数量，小于等于 0 时返回全部
      */
-    private void waitForIndexJobCompletion(String indexId, String jobId) throws Exception {
-        int attempts = 0;
-        int maxAttempts = bailianService.getProperties().getMaxPollingAttempts();
-
-        while (attempts < maxAttempts) {
-            GetIndexJobStatusRequest request = new GetIndexJobStatusRequest()
-                    .setIndexId(indexId)
-                    .setJobId(jobId);
-
-            GetIndexJobStatusResponse response = bailianService.getClient().getIndexJobStatusWithOptions(
-                    bailianService.getWorkspaceId(),
-                    request,
-                    new HashMap<>(),
-                    new RuntimeOptions()
-            );
-
-            String status = response.getBody().getData().getStatus();
-            log.debug("索引任务状态: {}", status);
-
-            if ("COMPLETED".equals(status)) {
-                log.info("索引构建完成");
-                return;
-            } else if ("FAILED".equals(status)) {
-                throw new BusinessException("索引构建失败");
-            }
-
-            bailianService.waitPollingInterval();
-            attempts++;
-        }
-
-        throw new BusinessException("索引构建超时");
-    }
-
-    /**
-     * 查询知识库列表
-     */
-    public List<KnowledgeBaseDTO> listKnowledgeBases() {
-        try {
-            ListIndicesRequest request = new ListIndicesRequest();
-            ListIndicesResponse response = bailianService.getClient().listIndicesWithOptions(
-                    bailianService.getWorkspaceId(),
-                    request,
-                    new HashMap<>(),
-                    new RuntimeOptions()
-            );
-
-            // 检查响应数据是否为空
-            if (response == null ||
-                response.getBody() == null ||
-                response.getBody().getData() == null ||
-                response.getBody().getData().getIndices() == null) {
-
-                log.info("业务空间下暂无知识库");
-                return new ArrayList<>();
-            }
-
-            return response.getBody().getData().getIndices().stream()
-                    .map(index -> KnowledgeBaseDTO.builder()
-                            .id(index.getId())
-                            .name(index.getName())
-                            .description(index.getDescription())
-                            .build())
-                    .collect(Collectors.toList());
-
-        } catch (Exception e) {
-            log.error("查询知识库列表失败", e);
-            throw new BusinessException("查询知识库列表失败: " + e.getMessage(), e);
-        }
+    public List<KnowledgeBaseDTO> listKnowledgeBases(int page, int size) {
+        return knowledgeBaseCatalogService.list(page, size);
     }
 
     /**
@@ -425,6 +530,10 @@ public void deleteKnowledgeBase(String indexId) {
                     new RuntimeOptions()
             );
 
+            documentCatalogService.removeIndex(indexId);
+            knowledgeBaseCatalogService.onDeleted(indexId);
+            localIndexService.dropIndex(indexId);
+            retrievalCacheService.invalidate(indexId);
             log.info("知识库删除成功: {}", indexId);
 
         } catch (Exception e) {
@@ -436,28 +545,63 @@ public void deleteKnowledgeBase(String indexId) {
     /**
      * 保存文件到临时目录
      */
-    private Path saveToTmpDir(MultipartFile file) throws IOException {
+    Path saveToTmpDir(MultipartFile file) throws IOException {
         Path tmpDir = Path.of(System.getProperty("java.io.tmpdir"));
-        String filename = System.currentTimeMillis() + "_" + file.getOriginalFilename();
+        // 批量上传中常有不同目录下的同名文件（如 README.md），用 UUID 前缀避免互相覆盖
+        String filename = UUID.randomUUID() + "_" + baseName(file.getOriginalFilename());
         Path filePath = tmpDir.resolve(filename);
         file.transferTo(filePath.toFile());
         return filePath;
     }
 
     /**
-     * 计算文件 MD5
+     * 去掉原始文件名中的目录部分（浏览器上传文件夹时可能带有相对路径）
      */
-    private String calculateMD5(byte[] data) {
-        try {
-            java.security.MessageDigest md = java.security.MessageDigest.getInstance("MD5");
-            byte[] digest = md.digest(data);
-            StringBuilder sb = new StringBuilder();
-            for (byte b : digest) {
-                sb.append(String.format("%02x", b));
+    private static String baseName(String originalFilename) {
+        if (originalFilename == null || originalFilename.isBlank()) {
+            return "upload";
+        }
+        String name = originalFilename.substring(
+                Math.max(originalFilename.lastIndexOf('/'), originalFilename.lastIndexOf('\\')) + 1);
+        return name.isBlank() || name.equals("..") ? "upload" : name;
+    }
+
+    /**
+     * 清理临时文件
+     */
+    void cleanupTmpFiles(Path... paths) {
+        for (Path path : paths) {
+            if (path == null) {
+                continue;
             }
-            return sb.toString();
-        } catch (Exception e) {
-            throw new BusinessException("计算 MD5 失败", e);
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                log.warn("删除临时文件失败: {}", path, e);
+            }
+        }
+        log.info("临时文件已清理");
+    }
+
+    /**
+     * 源文件名转换为 Markdown 文件名
+     */
+    String toMarkdownFilename(String filename) {
+        return filename.replaceFirst("\\.[^.]+$", "") + ".md";
+    }
+
+    /**
+     * 已写入磁盘的 Markdown 文件
+     */
+    static class MarkdownFile {
+        final Path path;
+        final String md5;
+        final long size;
+
+        MarkdownFile(Path path, String md5, long size) {
+            this.path = path;
+            this.md5 = md5;
+            this.size = size;
         }
     }
 }
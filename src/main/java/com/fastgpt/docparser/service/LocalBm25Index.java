@@ -0,0 +1,306 @@
+package com.fastgpt.docparser.service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 单个知识库的本地 BM25 倒排索引
+ * 倒排表按词项存放在 int 数组中（切片编号 + 词频），切片编号单调递增，追加即有序；
+ * 删除文档只做标记，标记数超过一半时整体重建
+ *
+ * @author ZHONG WEI
+ */
+public class LocalBm25Index {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Integer> termIds = new HashMap<>();
+    private int[][] postingChunks = new int[64][];
+    private int[][] postingFreqs = new int[64][];
+    private int[] postingSizes = new int[64];
+
+    private final List<String> chunkTexts = new ArrayList<>();
+    private int[] chunkLengths = new int[64];
+    private final BitSet deleted = new BitSet();
+    private final Map<String, int[]> fileChunks = new LinkedHashMap<>();
+    private long liveLength;
+    private int liveChunks;
+
+    /**
+     * 添加文档切片（同一 FileId 已存在时先删除旧切片）
+     */
+    public void add(String fileId, List<String> chunks) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(fileId);
+            int start = chunkTexts.size();
+            for (String chunk : chunks) {
+                appendChunk(chunk);
+            }
+            fileChunks.put(fileId, new int[]{start, chunkTexts.size()});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档的全部切片
+     */
+    public void remove(String fileId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(fileId);
+            if (deleted.cardinality() > chunkTexts.size() / 2) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * BM25 检索
+     *
+     * @return 得分从高到低的切片文本
+     */
+    public List<String> search(String query, int topK) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty() || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            if (liveChunks == 0) {
+                return new ArrayList<>();
+            }
+            float avgLength = (float) liveLength / liveChunks;
+            float[] scores = new float[chunkTexts.size()];
+
+            for (String term : terms) {
+                Integer termId = termIds.get(term);
+                if (termId == null) {
+                    continue;
+                }
+                int[] chunks = postingChunks[termId];
+                int[] freqs = postingFreqs[termId];
+                int df = postingSizes[termId];
+                float idf = (float) Math.log(1 + (liveChunks - df + 0.5) / (df + 0.5));
+
+                for (int i = 0; i < df; i++) {
+                    int chunk = chunks[i];
+                    if (deleted.get(chunk)) {
+                        continue;
+                    }
+                    float tf = freqs[i];
+                    float norm = K1 * (1 - B + B * chunkLengths[chunk] / avgLength);
+                    scores[chunk] += idf * tf * (K1 + 1) / (tf + norm);
+                }
+            }
+            return topChunks(scores, topK);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 有效切片数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveChunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 选出得分最高的 topK 个切片（插入排序维护小数组，不对全部得分排序）
+     */
+    private List<String> topChunks(float[] scores, int topK) {
+        int[] topIds = new int[topK];
+        float[] topScores = new float[topK];
+        int count = 0;
+
+        for (int chunk = 0; chunk < scores.length; chunk++) {
+            float score = scores[chunk];
+            if (score <= 0 || (count == topK && score <= topScores[count - 1])) {
+                continue;
+            }
+            int pos = count < topK ? count++ : count - 1;
+            while (pos > 0 && topScores[pos - 1] < score) {
+                topScores[pos] = topScores[pos - 1];
+                topIds[pos] = topIds[pos - 1];
+                pos--;
+            }
+            topScores[pos] = score;
+            topIds[pos] = chunk;
+        }
+
+        List<String> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(chunkTexts.get(topIds[i]));
+        }
+        return result;
+    }
+
+    private void appendChunk(String text) {
+        int chunk = chunkTexts.size();
+        chunkTexts.add(text);
+
+        List<String> tokens = tokenize(text);
+        Map<String, Integer> freqs = new HashMap<>();
+        for (String token : tokens) {
+            freqs.merge(token, 1, Integer::sum);
+        }
+        for (Map.Entry<String, Integer> entry : freqs.entrySet()) {
+            appendPosting(termId(entry.getKey()), chunk, entry.getValue());
+        }
+
+        if (chunk == chunkLengths.length) {
+            chunkLengths = Arrays.copyOf(chunkLengths, chunk * 2);
+        }
+        chunkLengths[chunk] = tokens.size();
+        liveLength += tokens.size();
+        liveChunks++;
+    }
+
+    private int termId(String term) {
+        Integer existing = termIds.get(term);
+        if (existing != null) {
+            return existing;
+        }
+        int id = termIds.size();
+        termIds.put(term, id);
+        if (id == postingSizes.length) {
+            int capacity = id * 2;
+            postingChunks = Arrays.copyOf(postingChunks, capacity);
+            postingFreqs = Arrays.copyOf(postingFreqs, capacity);
+            postingSizes = Arrays.copyOf(postingSizes, capacity);
+        }
+        postingChunks[id] = new int[4];
+        postingFreqs[id] = new int[4];
+        return id;
+    }
+
+    private void appendPosting(int termId, int chunk, int freq) {
+        int size = postingSizes[termId];
+        if (size == postingChunks[termId].length) {
+            postingChunks[termId] = Arrays.copyOf(postingChunks[termId], size * 2);
+            postingFreqs[termId] = Arrays.copyOf(postingFreqs[termId], size * 2);
+        }
+        postingChunks[termId][size] = chunk;
+        postingFreqs[termId][size] = freq;
+        postingSizes[termId] = size + 1;
+    }
+
+    private void removeInternal(String fileId) {
+        int[] range = fileChunks.remove(fileId);
+        if (range == null) {
+            return;
+        }
+        for (int chunk = range[0]; chunk < range[1]; chunk++) {
+            if (!deleted.get(chunk)) {
+                deleted.set(chunk);
+                liveLength -= chunkLengths[chunk];
+                liveChunks--;
+            }
+        }
+    }
+
+    /**
+     * 丢弃已删除切片，重建倒排表
+     */
+    private void rebuild() {
+        Map<String, List<String>> live = new LinkedHashMap<>();
+        for (Map.Entry<String, int[]> entry : fileChunks.entrySet()) {
+            live.put(entry.getKey(), new ArrayList<>(chunkTexts.subList(entry.getValue()[0], entry.getValue()[1])));
+        }
+
+        termIds.clear();
+        postingChunks = new int[64][];
+        postingFreqs = new int[64][];
+        postingSizes = new int[64];
+        chunkTexts.clear();
+        chunkLengths = new int[64];
+        deleted.clear();
+        fileChunks.clear();
+        liveLength = 0;
+        liveChunks = 0;
+
+        for (Map.Entry<String, List<String>> entry : live.entrySet()) {
+            int start = chunkTexts.size();
+            entry.getValue().forEach(this::appendChunk);
+            fileChunks.put(entry.getKey(), new int[]{start, chunkTexts.size()});
+        }
+    }
+
+    /**
+     * 分词：连续的字母数字（可含 - _ . 连接符，如型号、错误码）作为一个词，同时拆出各部分；
+     * 中日韩文字按单字和相邻二元组切分
+     */
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+
+        StringBuilder word = new StringBuilder();
+        int previousCjk = -1;
+        int i = 0;
+        while (i < text.length()) {
+            int cp = text.codePointAt(i);
+            int next = i + Character.charCount(cp);
+
+            if (isCjk(cp)) {
+                flushWord(word, tokens);
+                tokens.add(new String(Character.toChars(cp)));
+                if (previousCjk != -1) {
+                    tokens.add(new String(Character.toChars(previousCjk)) + new String(Character.toChars(cp)));
+                }
+                previousCjk = cp;
+            } else if (Character.isLetterOrDigit(cp)) {
+                word.appendCodePoint(Character.toLowerCase(cp));
+                previousCjk = -1;
+            } else if ((cp == '-' || cp == '_' || cp == '.') && word.length() > 0
+                    && next < text.length() && Character.isLetterOrDigit(text.codePointAt(next))
+                    && !isCjk(text.codePointAt(next))) {
+                word.appendCodePoint(cp);
+            } else {
+                flushWord(word, tokens);
+                previousCjk = -1;
+            }
+            i = next;
+        }
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() == 0) {
+            return;
+        }
+        String token = word.toString();
+        tokens.add(token);
+        if (token.indexOf('-') >= 0 || token.indexOf('_') >= 0 || token.indexOf('.') >= 0) {
+            for (String part : token.split("[-_.]")) {
+                if (!part.isEmpty()) {
+                    tokens.add(part);
+                }
+            }
+        }
+        word.setLength(0);
+    }
+
+    private static boolean isCjk(int cp) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(cp);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,253 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.config.RetrievalProperties;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 本地检索索引服务
+ * 上传到知识库的 Markdown 同时切片写入本地 BM25 索引（每个知识库一个），
+ * 变更以追加日志形式保存到 results/local-index/{indexId}.jsonl，首次访问时回放加载；
+ * 启用向量索引时，同一批切片同时交给 {@link VectorIndexService}
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class LocalIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalIndexService.class);
+    private static final String INDEX_DIR = "local-index";
+    private static final Pattern INDEX_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final RetrievalProperties properties;
+    private final VectorIndexService vectorIndexService;
+    private final Gson gson;
+    private final Path indexDir;
+    private final Map<String, LocalBm25Index> indices = new ConcurrentHashMap<>();
+
+    public LocalIndexService(RetrievalProperties properties, FileProperties fileProperties,
+                             VectorIndexService vectorIndexService) {
+        this.properties = properties;
+        this.vectorIndexService = vectorIndexService;
+        this.gson = new Gson();
+        this.indexDir = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(INDEX_DIR);
+    }
+
+    /**
+     * 将文档 Markdown 切片后加入知识库的本地索引
+     */
+    public void addDocument(String indexId, String fileId, String markdownContent) {
+        if (fileId == null || markdownContent == null) {
+            return;
+        }
+        List<String> chunks = chunk(markdownContent, properties.getChunkSize());
+        if (isIndexable(indexId)) {
+            LocalBm25Index index = getIndex(indexId);
+            synchronized (index) {
+                index.add(fileId, chunks);
+                JsonObject record = new JsonObject();
+                record.addProperty("op", "add");
+                record.addProperty("fileId", fileId);
+                record.add("chunks", gson.toJsonTree(chunks));
+                appendLog(indexId, List.of(record));
+            }
+            log.debug("本地索引已更新，知识库: {}，FileId: {}，切片数: {}", indexId, fileId, chunks.size());
+        }
+        vectorIndexService.addDocument(indexId, fileId, chunks);
+    }
+
+    /**
+     * 从知识库的本地索引中删除文档
+     */
+    public void removeDocuments(String indexId, Collection<String> fileIds) {
+        vectorIndexService.removeDocuments(indexId, fileIds);
+        if (!isIndexable(indexId) || fileIds.isEmpty()) {
+            return;
+        }
+        LocalBm25Index index = getIndex(indexId);
+        synchronized (index) {
+            List<JsonObject> records = new ArrayList<>();
+            for (String fileId : fileIds) {
+                index.remove(fileId);
+                JsonObject record = new JsonObject();
+                record.addProperty("op", "remove");
+                record.addProperty("fileId", fileId);
+                records.add(record);
+            }
+            appendLog(indexId, records);
+        }
+    }
+
+    /**
+     * 删除知识库的本地索引
+     */
+    public void dropIndex(String indexId) {
+        vectorIndexService.dropIndex(indexId);
+        if (indexId == null || !INDEX_ID_PATTERN.matcher(indexId).matches()) {
+            return;
+        }
+        indices.remove(indexId);
+        try {
+            Files.deleteIfExists(logFile(indexId));
+        } catch (IOException e) {
+            log.warn("删除本地索引文件失败: {}", indexId, e);
+        }
+    }
+
+    /**
+     * 本地 BM25 检索
+     */
+    public List<String> search(String indexId, String query, int topK) {
+        if (!isIndexable(indexId)) {
+            return new ArrayList<>();
+        }
+        return getIndex(indexId).search(query, topK);
+    }
+
+    /**
+     * 知识库本地索引中的切片数
+     */
+    public int size(String indexId) {
+        return isIndexable(indexId) ? getIndex(indexId).size() : 0;
+    }
+
+    private boolean isIndexable(String indexId) {
+        return properties.isLocalIndexEnabled() && indexId != null && INDEX_ID_PATTERN.matcher(indexId).matches();
+    }
+
+    private LocalBm25Index getIndex(String indexId) {
+        return indices.computeIfAbsent(indexId, this::loadIndex);
+    }
+
+    /**
+     * 回放追加日志构建索引；日志中含删除或覆盖记录时顺便压缩日志
+     */
+    private LocalBm25Index loadIndex(String indexId) {
+        LocalBm25Index index = new LocalBm25Index();
+        Path file = logFile(indexId);
+        if (!Files.exists(file)) {
+            return index;
+        }
+
+        Map<String, List<String>> documents = new LinkedHashMap<>();
+        int records = 0;
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                records++;
+                JsonObject record = gson.fromJson(line, JsonObject.class);
+                String fileId = record.get("fileId").getAsString();
+                if ("add".equals(record.get("op").getAsString())) {
+                    List<String> chunks = new ArrayList<>();
+                    record.getAsJsonArray("chunks").forEach(element -> chunks.add(element.getAsString()));
+                    documents.remove(fileId);
+                    documents.put(fileId, chunks);
+                } else {
+                    documents.remove(fileId);
+                }
+            }
+        } catch (Exception e) {
+            log.error("加载本地索引失败: {}", indexId, e);
+        }
+
+        documents.forEach(index::add);
+        if (records > documents.size()) {
+            compactLog(indexId, documents);
+        }
+        log.info("加载本地索引: {}，文档数: {}，切片数: {}", indexId, documents.size(), index.size());
+        return index;
+    }
+
+    private void compactLog(String indexId, Map<String, List<String>> documents) {
+        List<JsonObject> records = new ArrayList<>();
+        documents.forEach((fileId, chunks) -> {
+            JsonObject record = new JsonObject();
+            record.addProperty("op", "add");
+            record.addProperty("fileId", fileId);
+            record.add("chunks", gson.toJsonTree(chunks));
+            records.add(record);
+        });
+        try {
+            Path tmp = logFile(indexId).resolveSibling(indexId + ".jsonl.tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+                for (JsonObject record : records) {
+                    writer.write(gson.toJson(record));
+                    writer.newLine();
+                }
+            }
+            Files.move(tmp, logFile(indexId), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("压缩本地索引日志失败: {}", indexId, e);
+        }
+    }
+
+    private void appendLog(String indexId, List<JsonObject> records) {
+        try {
+            Files.createDirectories(indexDir);
+            try (BufferedWriter writer = Files.newBufferedWriter(logFile(indexId), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                for (JsonObject record : records) {
+                    writer.write(gson.toJson(record));
+                    writer.newLine();
+                }
+            }
+        } catch (IOException e) {
+            log.error("保存本地索引失败: {}", indexId, e);
+        }
+    }
+
+    private Path logFile(String indexId) {
+        return indexDir.resolve(indexId + ".jsonl");
+    }
+
+    /**
+     * 按段落切分 Markdown：连续段落合并到不超过 chunkSize 个字符，超长段落按长度截断
+     */
+    static List<String> chunk(String markdownContent, int chunkSize) {
+        int limit = Math.max(100, chunkSize);
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+
+        for (String paragraph : markdownContent.split("\\n\\s*\\n")) {
+            String text = paragraph.strip();
+            if (text.isEmpty()) {
+                continue;
+            }
+            if (current.length() > 0 && current.length() + text.length() + 2 > limit) {
+                chunks.add(current.toString());
+                current.setLength(0);
+            }
+            while (text.length() > limit) {
+                chunks.add(text.substring(0, limit));
+                text = text.substring(limit);
+            }
+            if (current.length() > 0) {
+                current.append("\n\n");
+            }
+            current.append(text);
+        }
+        if (current.length() > 0) {
+            chunks.add(current.toString());
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,206 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * 生成模型路由
+ * 根据问题类型决定 max_tokens，再按 chat.models 的优先级选择模型：
+ * 模型最近的首 Token 延迟（指数滑动平均，按 Prompt 长短分别统计）或预计总耗时超出预算时回退到下一个模型，
+ * 全部超预算时选择预计最快的模型；被回退的模型定期放行一次请求重新探测延迟
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class ModelRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ModelRouter.class);
+    private static final String DEFAULT_MODEL = "qwen-turbo";
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_QUESTION_CHARS = 60;
+    private static final Pattern LONG_ANSWER_PATTERN =
+            Pattern.compile("详细|步骤|流程|列出|列举|哪些|对比|比较|区别|总结|介绍|分析|为什么|如何|怎么|explain|compare|list|steps",
+                    Pattern.CASE_INSENSITIVE);
+
+    private final ChatProperties properties;
+    private final Map<String, ModelStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    public ModelRouter(ChatProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 选择模型和 max_tokens
+     *
+     * @param question     用户问题
+     * @param promptTokens 本次请求的 Prompt 估算 Token 数（含会话历史）
+     */
+    public Route route(String question, int promptTokens) {
+        routed.incrementAndGet();
+        int maxTokens = expectsLongAnswer(question) ? properties.getLongAnswerTokens() : properties.getShortAnswerTokens();
+        boolean longPrompt = promptTokens > properties.getLongPromptTokens();
+        List<String> models = properties.getModels() == null || properties.getModels().isEmpty()
+                ? List.of(DEFAULT_MODEL) : properties.getModels();
+        long now = System.currentTimeMillis();
+
+        String fastest = null;
+        double fastestLatency = Double.MAX_VALUE;
+        for (int i = 0; i < models.size(); i++) {
+            String model = models.get(i);
+            ModelStats modelStats = stats.get(key(model, longPrompt));
+            if (modelStats == null || modelStats.withinBudget(maxTokens) || modelStats.tryProbe(now)) {
+                return newRoute(model, maxTokens, longPrompt, i > 0);
+            }
+            double predicted = modelStats.predictLatency(maxTokens);
+            if (predicted < fastestLatency) {
+                fastestLatency = predicted;
+                fastest = model;
+            }
+        }
+        return newRoute(fastest, maxTokens, longPrompt, !models.get(0).equals(fastest));
+    }
+
+    /**
+     * 记录一次完整回答的延迟数据
+     *
+     * @param ttftMillis      首 Token 延迟，未收到 Token 时为负数（不记录）
+     * @param tokensPerSecond 生成速度，无法计算时为 0（不记录）
+     */
+    public void record(Route route, long ttftMillis, double tokensPerSecond) {
+        if (ttftMillis < 0) {
+            return;
+        }
+        stats.computeIfAbsent(key(route.model(), route.longPrompt()), k -> new ModelStats())
+                .update(ttftMillis, tokensPerSecond);
+    }
+
+    /**
+     * 记录未收到首 Token 就结束的请求，避免持续失败或卡住的模型一直被视为在预算内
+     *
+     * @param waitedMillis 从发出请求到结束的时间
+     * @param failed       上游失败或首 Token 超时：按 max(等待时间, 2 × 首 Token 预算) 记录；
+     *                     false 表示客户端提前断开：只有等待时间已超过预算才按等待时间记录
+     */
+    public void recordNoToken(Route route, long waitedMillis, boolean failed) {
+        long ttftMillis;
+        if (failed) {
+            ttftMillis = Math.max(waitedMillis, 2 * properties.getTtftBudget());
+        } else if (waitedMillis > properties.getTtftBudget()) {
+            ttftMillis = waitedMillis;
+        } else {
+            return;
+        }
+        stats.computeIfAbsent(key(route.model(), route.longPrompt()), k -> new ModelStats())
+                .update(ttftMillis, 0);
+    }
+
+    /**
+     * 各模型的延迟统计
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("models", properties.getModels());
+        result.put("ttftBudget", properties.getTtftBudget());
+        result.put("latencyBudget", properties.getLatencyBudget());
+        result.put("routed", routed.get());
+        result.put("fallbacks", fallbacks.get());
+
+        List<Map<String, Object>> models = new ArrayList<>();
+        new TreeMap<>(stats).forEach((key, modelStats) -> {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("model", key.substring(0, key.lastIndexOf('|')));
+            item.put("prompt", key.substring(key.lastIndexOf('|') + 1));
+            item.putAll(modelStats.snapshot());
+            models.add(item);
+        });
+        result.put("observed", models);
+        return result;
+    }
+
+    private Route newRoute(String model, int maxTokens, boolean longPrompt, boolean fallback) {
+        if (fallback) {
+            fallbacks.incrementAndGet();
+            log.info("首选模型延迟超出预算，本次使用 {}", model);
+        }
+        return new Route(model, maxTokens, longPrompt, fallback);
+    }
+
+    /**
+     * 列举、步骤、对比、总结类问题或较长的问题预计需要详细回答
+     */
+    static boolean expectsLongAnswer(String question) {
+        return question != null
+                && (question.length() > LONG_QUESTION_CHARS || LONG_ANSWER_PATTERN.matcher(question).find());
+    }
+
+    private static String key(String model, boolean longPrompt) {
+        return model + "|" + (longPrompt ? "long" : "short");
+    }
+
+    /**
+     * 路由结果
+     *
+     * @param model      模型名称
+     * @param maxTokens  最大输出 Token 数
+     * @param longPrompt 是否为长 Prompt
+     * @param fallback   是否回退到了非首选模型
+     */
+    public record Route(String model, int maxTokens, boolean longPrompt, boolean fallback) {
+    }
+
+    private class ModelStats {
+        private double ttft;
+        private double tokensPerSecond;
+        private long samples;
+        private long lastSampleAt;
+        private long lastProbeAt;
+
+        synchronized void update(long ttftMillis, double throughput) {
+            ttft = samples == 0 ? ttftMillis : ttft + SMOOTHING * (ttftMillis - ttft);
+            if (throughput > 0) {
+                tokensPerSecond = tokensPerSecond == 0 ? throughput
+                        : tokensPerSecond + SMOOTHING * (throughput - tokensPerSecond);
+            }
+            samples++;
+            lastSampleAt = System.currentTimeMillis();
+        }
+
+        synchronized double predictLatency(int maxTokens) {
+            return tokensPerSecond > 0 ? ttft + maxTokens * 1000.0 / tokensPerSecond : ttft;
+        }
+
+        synchronized boolean withinBudget(int maxTokens) {
+            return ttft <= properties.getTtftBudget() && predictLatency(maxTokens) <= properties.getLatencyBudget();
+        }
+
+        /**
+         * 超预算的模型长时间没有新数据时放行一次请求（每个探测间隔只放行一次）
+         */
+        synchronized boolean tryProbe(long now) {
+            long interval = properties.getRouteProbeInterval();
+            if (interval <= 0 || now - lastSampleAt < interval || now - lastProbeAt < interval) {
+                return false;
+            }
+            lastProbeAt = now;
+            return true;
+        }
+
+        synchronized Map<String, Object> snapshot() {
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("ttft", Math.round(ttft));
+            snapshot.put("tokensPerSecond", Math.round(tokensPerSecond * 10) / 10.0);
+            snapshot.put("samples", samples);
+            snapshot.put("lastSampleAt", lastSampleAt);
+            return snapshot;
+        }
+    }
+}
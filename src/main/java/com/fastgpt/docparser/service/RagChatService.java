@@ -2,20 +2,25 @@
 
 import com.aliyun.bailian20231229.models.*;
 import com.aliyun.teautil.models.RuntimeOptions;
+import com.fastgpt.docparser.config.RetrievalProperties;
 import com.fastgpt.docparser.dto.ChatRequest;
 import com.fastgpt.docparser.dto.ChatResponse;
+import com.fastgpt.docparser.dto.ChatSessionDTO;
+import com.fastgpt.docparser.dto.ChatTurn;
+import com.fastgpt.docparser.dto.EvaluationStatus;
+import com.fastgpt.docparser.dto.RetrievalOptions;
 import com.fastgpt.docparser.exception.BusinessException;
-import com.google.gson.Gson;
 import com.google.gson.JsonObject;
-import okhttp3.*;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
 /**
@@ -28,32 +33,319 @@
 public class RagChatService {
 
     private static final Logger log = LoggerFactory.getLogger(RagChatService.class);
-    private static final String QWEN_API_URL = "https://dashscope.aliyuncs.com/api/v1/services/aigc/text-generation/generation";
 
     private final AliyunBailianService bailianService;
-    private final OkHttpClient httpClient;
-    private final Gson gson;
-
-    public RagChatService(AliyunBailianService bailianService) {
+    private final RetrievalCacheService retrievalCacheService;
+    private final LocalIndexService localIndexService;
+    private final VectorIndexService vectorIndexService;
+    private final ContextPacker contextPacker;
+    private final KnowledgeBaseCatalogService knowledgeBaseCatalogService;
+    private final RetrievalMetrics retrievalMetrics;
+    private final ChatSessionService chatSessionService;
+    private final ChatMetrics chatMetrics;
+    private final ModelRouter modelRouter;
+    private final ChatCoalescer chatCoalescer;
+    private final RetrievalHedger retrievalHedger;
+    private final RetrievalProperties retrievalProperties;
+    private final ExecutorService retrievalExecutor;
+    private final ExecutorService fanOutExecutor;
+    private final GenerationRouter generationRouter;
+
+    public RagChatService(AliyunBailianService bailianService,
+                          RetrievalCacheService retrievalCacheService,
+                          LocalIndexService localIndexService,
+                          VectorIndexService vectorIndexService,
+                          ContextPacker contextPacker,
+                          KnowledgeBaseCatalogService knowledgeBaseCatalogService,
+                          RetrievalMetrics retrievalMetrics,
+                          ChatSessionService chatSessionService,
+                          ChatMetrics chatMetrics,
+                          ModelRouter modelRouter,
+                          ChatCoalescer chatCoalescer,
+                          RetrievalHedger retrievalHedger,
+                          GenerationRouter generationRouter,
+                          RetrievalProperties retrievalProperties) {
         this.bailianService = bailianService;
-        // 配置超时时间：连接超时 30 秒，读取超时 120 秒
-        this.httpClient = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(120, TimeUnit.SECONDS)
-                .writeTimeout(30, TimeUnit.SECONDS)
-                .build();
-        this.gson = new Gson();
+        this.retrievalCacheService = retrievalCacheService;
+        this.localIndexService = localIndexService;
+        this.vectorIndexService = vectorIndexService;
+        this.contextPacker = contextPacker;
+        this.knowledgeBaseCatalogService = knowledgeBaseCatalogService;
+        this.retrievalMetrics = retrievalMetrics;
+        this.chatSessionService = chatSessionService;
+        this.chatMetrics = chatMetrics;
+        this.modelRouter = modelRouter;
+        this.chatCoalescer = chatCoalescer;
+        this.retrievalHedger = retrievalHedger;
+        this.generationRouter = generationRouter;
+        this.retrievalProperties = retrievalProperties;
+        this.retrievalExecutor = Executors.newFixedThreadPool(Math.max(1, retrievalProperties.getRemoteThreads()),
+                new DaemonThreadFactory("retrieval-remote"));
+        this.fanOutExecutor = Executors.newFixedThreadPool(Math.max(1, retrievalProperties.getFanOutThreads()),
+                new DaemonThreadFactory("retrieval-fanout"));
+    }
+
+
+    /**
+     * 本次对话检索的知识库（去重，保持请求中的顺序）
+     */
+    private List<String> resolveKnowledgeBaseIds(ChatRequest request) {
+        Set<String> indexIds = new LinkedHashSet<>();
+        if (request.getKnowledgeBaseIds() != null && !request.getKnowledgeBaseIds().isEmpty()) {
+            request.getKnowledgeBaseIds().stream()
+                    .filter(id -> id != null && !id.isBlank())
+                    .forEach(indexIds::add);
+        } else if (request.getKnowledgeBaseId() != null && !request.getKnowledgeBaseId().isBlank()) {
+            indexIds.add(request.getKnowledgeBaseId());
+        }
+
+        if (indexIds.isEmpty()) {
+            throw new BusinessException(400, "请选择知识库");
+        }
+        if (indexIds.size() > retrievalProperties.getMaxKnowledgeBases()) {
+            throw new BusinessException(400, "单次最多检索 " + retrievalProperties.getMaxKnowledgeBases() + " 个知识库");
+        }
+        return new ArrayList<>(indexIds);
+    }
+
+    /**
+     * 各知识库的检索参数
+     */
+    private Map<String, RetrievalOptions> resolveRetrievalOptions(ChatRequest request, List<String> indexIds) {
+        Map<String, RetrievalOptions> options = new LinkedHashMap<>();
+        for (String indexId : indexIds) {
+            options.put(indexId, resolveRetrievalOptions(request, indexId));
+        }
+        return options;
+    }
+
+    /**
+     * 合并检索参数：请求中的值优先，其次为知识库默认值，均未设置时使用百炼默认值
+     */
+    private RetrievalOptions resolveRetrievalOptions(ChatRequest request, String indexId) {
+        RetrievalOptions defaults = knowledgeBaseCatalogService.getRetrievalOptions(indexId);
+        if (defaults == null) {
+            defaults = new RetrievalOptions();
+        }
+
+        RetrievalOptions options = new RetrievalOptions();
+        options.setDenseTopK(request.getDenseTopK() != null ? request.getDenseTopK() : defaults.getDenseTopK());
+        options.setSparseTopK(request.getSparseTopK() != null ? request.getSparseTopK() : defaults.getSparseTopK());
+        options.setEnableReranking(request.getEnableReranking() != null
+                ? request.getEnableReranking() : defaults.getEnableReranking());
+        options.setRerankTopN(request.getRerankTopN() != null ? request.getRerankTopN() : defaults.getRerankTopN());
+        options.setMinScore(request.getMinScore() != null ? request.getMinScore() : defaults.getMinScore());
+        KnowledgeBaseCatalogService.validateRetrievalOptions(options);
+        return options;
+    }
+
+    /**
+     * 并行检索多个知识库，结果按 RRF 融合为一份参考信息；
+     * 所有知识库共用一个截止时间，届时仍未返回的知识库被取消（释放 fan-out 线程），与检索失败的一样丢弃；
+     * 所有知识库都没有结果时与单知识库一样抛出异常
+     *
+     * @param readCache 是否读取检索结果缓存（评测时为 false，每个问题都实际检索，结果仍写入缓存）
+     */
+    private List<String> retrieveKnowledgeBases(List<String> indexIds, String query,
+                                                Map<String, RetrievalOptions> options, boolean readCache,
+                                                StreamCancellation cancellation) {
+        if (indexIds.size() == 1) {
+            String indexId = indexIds.get(0);
+            return retrieveKnowledgeBase(indexId, query, options.get(indexId), readCache, cancellation);
+        }
+
+        // 截止时间到达或请求取消时，取消各知识库进行中的百炼检索
+        StreamCancellation fanOut = new StreamCancellation();
+        Map<String, CompletableFuture<List<String>>> futures = new LinkedHashMap<>();
+        for (String indexId : indexIds) {
+            futures.put(indexId, CompletableFuture.supplyAsync(
+                    () -> retrieveKnowledgeBase(indexId, query, options.get(indexId), readCache, fanOut),
+                    fanOutExecutor));
+        }
+
+        try (StreamCancellation.Registration ignored = cancellation.onCancel(fanOut::cancel)) {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[0]))
+                    .get(retrievalProperties.getFanOutDeadline(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException e) {
+            // 单个知识库超时或失败不影响其他知识库，下面逐个收集
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<List<String>> rankings = new ArrayList<>();
+        futures.forEach((indexId, future) -> {
+            if (!future.isDone()) {
+                log.warn("知识库 {} 检索超过 {} ms，本次丢弃其结果", indexId, retrievalProperties.getFanOutDeadline());
+            } else if (future.isCompletedExceptionally()) {
+                log.warn("知识库 {} 检索失败，本次丢弃其结果", indexId);
+            } else {
+                rankings.add(future.join());
+            }
+        });
+        // 尚未开始的任务不再执行，正在等待百炼检索的任务随检索取消而结束
+        futures.values().forEach(future -> future.cancel(true));
+        fanOut.cancel();
+
+        if (rankings.isEmpty()) {
+            if (cancellation.isCancelled()) {
+                throw new BusinessException("检索已取消");
+            }
+            throw new BusinessException("检索知识库失败: " + indexIds.size() + " 个知识库均检索失败或超时");
+        }
+
+        int topK = options.values().stream()
+                .mapToInt(this::fusedTopK)
+                .max()
+                .orElse(retrievalProperties.getFusedTopK());
+        return fuse(rankings, retrievalProperties.getRrfK(), topK);
+    }
+
+    /**
+     * 检索知识库（优先读取检索结果缓存）
+     *
+     * @param readCache    是否读取检索结果缓存
+     * @param cancellation 取消时放弃等待并取消百炼检索
+     */
+    private List<String> retrieveKnowledgeBase(String indexId, String query, RetrievalOptions options,
+                                               boolean readCache, StreamCancellation cancellation) {
+        String settings = options.signature();
+        List<String> cached = readCache ? retrievalCacheService.get(indexId, settings, query) : null;
+        if (cached != null) {
+            log.debug("检索缓存命中，知识库: {}", indexId);
+            return cached;
+        }
+
+        long generation = retrievalCacheService.generation(indexId);
+        if (vectorIndexService.isServing(indexId)) {
+            // 本地向量索引替代百炼检索，与 BM25 结果融合
+            List<String> fused = fuse(List.of(
+                            vectorIndexService.search(indexId, query, vectorTopK(options)),
+                            localIndexService.search(indexId, query, localTopK(options))),
+                    retrievalProperties.getRrfK(), fusedTopK(options));
+            retrievalCacheService.put(indexId, settings, query, fused, generation);
+            return fused;
+        }
+        if (localIndexService.size(indexId) > 0) {
+            return retrieveHybrid(indexId, query, options, generation, cancellation);
+        }
+
+        List<String> texts = awaitRemote(retrieveFromBailianHedged(indexId, query, options), cancellation);
+        retrievalCacheService.put(indexId, settings, query, texts, generation);
+        return texts;
+    }
+
+    /**
+     * 百炼检索（对冲）：首次请求超过近期延迟分位数仍未返回时再发送一次，取先返回的结果
+     */
+    private CompletableFuture<List<String>> retrieveFromBailianHedged(String indexId, String query,
+                                                                      RetrievalOptions options) {
+        return retrievalHedger.submit(() -> retrieveFromBailian(indexId, query, options), retrievalExecutor);
+    }
+
+    /**
+     * 等待百炼检索结果；取消（客户端断开）或等待被中断时取消检索
+     */
+    private List<String> awaitRemote(CompletableFuture<List<String>> remote, StreamCancellation cancellation) {
+        try (StreamCancellation.Registration ignored = cancellation.onCancel(() -> remote.cancel(true))) {
+            return remote.get();
+        } catch (CancellationException e) {
+            throw new BusinessException("检索已取消");
+        } catch (InterruptedException e) {
+            remote.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new BusinessException("检索已取消");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BusinessException businessException) {
+                throw businessException;
+            }
+            throw new BusinessException("检索知识库失败: " + e.getCause().getMessage(), e.getCause());
+        }
     }
 
+    /**
+     * 混合检索：百炼检索与本地 BM25 并行执行，结果按 RRF 融合；
+     * 百炼检索超时或失败时降级为仅本地结果（降级结果不写入缓存）
+     */
+    private List<String> retrieveHybrid(String indexId, String query, RetrievalOptions options, long generation,
+                                        StreamCancellation cancellation) {
+        CompletableFuture<List<String>> remote = retrieveFromBailianHedged(indexId, query, options);
+        List<String> local = localIndexService.search(indexId, query, localTopK(options));
+
+        try (StreamCancellation.Registration ignored = cancellation.onCancel(() -> remote.cancel(true))) {
+            List<String> remoteTexts = remote.get(retrievalProperties.getRemoteDeadline(), TimeUnit.MILLISECONDS);
+            List<String> fused = fuse(List.of(remoteTexts, local), retrievalProperties.getRrfK(), fusedTopK(options));
+            retrievalCacheService.put(indexId, options.signature(), query, fused, generation);
+            return fused;
+        } catch (TimeoutException e) {
+            log.warn("百炼检索超过 {} ms，仅使用本地检索结果", retrievalProperties.getRemoteDeadline());
+        } catch (ExecutionException e) {
+            log.warn("百炼检索失败，仅使用本地检索结果: {}", e.getCause().getMessage());
+        } catch (CancellationException e) {
+            log.debug("百炼检索已取消，仅使用本地检索结果");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 不再等待的检索（包括尚未发出的对冲请求）直接取消
+        remote.cancel(true);
+        return local;
+    }
+
+    private int localTopK(RetrievalOptions options) {
+        return options.getSparseTopK() != null ? options.getSparseTopK() : retrievalProperties.getLocalTopK();
+    }
+
+    private int vectorTopK(RetrievalOptions options) {
+        return options.getDenseTopK() != null ? options.getDenseTopK() : retrievalProperties.getVectorTopK();
+    }
+
+    private int fusedTopK(RetrievalOptions options) {
+        return options.getRerankTopN() != null ? options.getRerankTopN() : retrievalProperties.getFusedTopK();
+    }
+
+    /**
+     * 倒数排名融合（RRF）：score = Σ 1 / (k + rank)，相同文本的切片合并计分
+     */
+    static List<String> fuse(List<List<String>> rankings, int k, int topK) {
+        Map<String, Double> scores = new LinkedHashMap<>();
+        Map<String, String> texts = new HashMap<>();
+        for (List<String> ranking : rankings) {
+            for (int rank = 0; rank < ranking.size(); rank++) {
+                String text = ranking.get(rank);
+                String key = text.strip();
+                scores.merge(key, 1.0 / (k + rank + 1), Double::sum);
+                texts.putIfAbsent(key, text);
+            }
+        }
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<String, Double>comparingByValue().reversed())
+                .limit(Math.max(1, topK))
+                .map(entry -> texts.get(entry.getKey()))
+                .collect(Collectors.toList());
+    }
 
     /**
-     * 检索知识库
+     * 调用百炼 Retrieve 接口检索知识库
      */
-    private List<String> retrieveKnowledgeBase(String indexId, String query) {
+    private List<String> retrieveFromBailian(String indexId, String query, RetrievalOptions options) {
         try {
             RetrieveRequest request = new RetrieveRequest()
                     .setIndexId(indexId)
                     .setQuery(query);
+            if (options.getDenseTopK() != null) {
+                request.setDenseSimilarityTopK(options.getDenseTopK());
+            }
+            if (options.getSparseTopK() != null) {
+                request.setSparseSimilarityTopK(options.getSparseTopK());
+            }
+            if (options.getEnableReranking() != null) {
+                request.setEnableReranking(options.getEnableReranking());
+            }
+            if (options.getRerankTopN() != null) {
+                request.setRerankTopN(options.getRerankTopN());
+            }
+            if (options.getMinScore() != null) {
+                request.setRerankMinScore(options.getMinScore());
+            }
 
             RetrieveResponse response = bailianService.getClient().retrieveWithOptions(
                     bailianService.getWorkspaceId(),
@@ -70,6 +362,8 @@ private List<String> retrieveKnowledgeBase(String indexId, String query) {
                 !response.getBody().getData().getNodes().isEmpty()) {
 
                 return response.getBody().getData().getNodes().stream()
+                        .filter(node -> options.getMinScore() == null || node.getScore() == null
+                                || node.getScore() >= options.getMinScore())
                         .map(node -> node.getText())
                         .filter(text -> text != null && !text.isEmpty())
                         .collect(Collectors.toList());
@@ -120,47 +414,307 @@ public interface StreamCallback {
         void onData(String chunk);
         void onComplete();
         void onError(String error);
+
+        /**
+         * 回答因达到 max_tokens 被截断（在 onComplete 之前回调）
+         */
+        default void onTruncated() {
+        }
+
+        /**
+         * 本次对话所属的会话（开始生成前回调一次）
+         */
+        default void onSession(String sessionId) {
+        }
     }
 
     /**
      * 处理流式对话请求
+     * 合并到进行中的相同问题时立即返回，回答由 {@link ChatCoalescer} 的发送线程从本请求的发送队列推送；
+     * 合并的请求数已达上限时通过 onError 返回繁忙
+     *
+     * @param cancellation 客户端断开时的取消信号，取消后停止检索和生成，不再回调
      */
-    public void chatStream(ChatRequest request, StreamCallback callback) {
-        log.info("开始处理流式对话请求，知识库: {}, 问题: {}", request.getKnowledgeBaseId(), request.getQuestion());
+    public void chatStream(ChatRequest request, StreamCallback callback, StreamCancellation cancellation) {
+        if (cancellation.isCancelled()) {
+            log.info("客户端已断开，跳过对话请求，知识库: {}", request.getKnowledgeBaseId());
+            return;
+        }
+        log.info("开始处理流式对话请求，知识库: {}, 问题: {}",
+                request.getKnowledgeBaseIds() != null && !request.getKnowledgeBaseIds().isEmpty()
+                        ? request.getKnowledgeBaseIds() : request.getKnowledgeBaseId(),
+                request.getQuestion());
 
         try {
-            // Step 1: 检索知识库
+            ChatSessionDTO session = chatSessionService.resolve(request.getSessionId());
+            callback.onSession(session.getId());
+
+            List<String> indexIds = resolveKnowledgeBaseIds(request);
+            Map<String, RetrievalOptions> options = resolveRetrievalOptions(request, indexIds);
+            StreamCallback recording = recordTurn(session.getId(), request.getQuestion(), callback);
+
+            // 没有会话历史时，同时到达的相同问题共享一次检索和生成
+            if (chatCoalescer.isEnabled() && session.getTurns().isEmpty()
+                    && (session.getSummary() == null || session.getSummary().isEmpty())) {
+                Map<String, String> settings = new LinkedHashMap<>();
+                options.forEach((indexId, option) -> settings.put(indexId, option.signature()));
+                // 合并到其他请求的生成时单独记录本请求的首 Token 和总耗时
+                ChatMetrics.Trace followerTrace = chatMetrics.start(indexIds);
+                ChatCoalescer.Flight flight;
+                try {
+                    flight = chatCoalescer.join(ChatCoalescer.key(settings, request.getQuestion()),
+                            coalesced(recording, followerTrace), cancellation);
+                } catch (BusinessException e) {
+                    // 合并的请求数已达上限：与对话执行器拒绝时一样返回繁忙
+                    followerTrace.discard();
+                    callback.onError(e.getMessage());
+                    return;
+                }
+                if (flight == null) {
+                    cancellation.onCancel(() -> followerTrace.finish(ChatMetrics.OUTCOME_CANCELLED));
+                    return;
+                }
+                // 本请求发起了生成，由生成线程记录
+                followerTrace.discard();
+                generate(request, session, indexIds, options, flight.callback(), flight.cancellation());
+                return;
+            }
+            generate(request, session, indexIds, options, recording, cancellation);
+
+        } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                log.info("客户端已断开，停止处理: {}", e.getMessage());
+                return;
+            }
+            log.error("流式对话处理失败", e);
+            callback.onError("对话处理失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 检索、构造 Prompt 并流式生成回答
+     */
+    private void generate(ChatRequest request, ChatSessionDTO session, List<String> indexIds,
+                          Map<String, RetrievalOptions> options, StreamCallback callback,
+                          StreamCancellation cancellation) {
+        ChatMetrics.Trace trace = chatMetrics.start(indexIds);
+        try {
+            // Step 1: 检索知识库（取消时取消进行中的百炼检索，不再等待）
             log.debug("Step 1: 检索知识库...");
-            List<String> retrievedTexts = retrieveKnowledgeBase(
-                    request.getKnowledgeBaseId(),
-                    request.getQuestion()
-            );
+            long retrieveStart = System.nanoTime();
+            List<String> retrievedTexts = retrieveKnowledgeBases(indexIds, request.getQuestion(), options, true,
+                    cancellation);
+            long retrieveNanos = System.nanoTime() - retrieveStart;
+            trace.retrieval(retrieveNanos);
+            if (cancellation.isCancelled()) {
+                log.info("客户端已断开，检索后停止处理，知识库: {}", indexIds);
+                trace.finish(ChatMetrics.OUTCOME_CANCELLED);
+                return;
+            }
 
-            // Step 2: 构造 Prompt
+            // Step 2: 参考信息去重并按 Token 预算截取，构造 Prompt
             log.debug("Step 2: 构造 Prompt...");
-            String prompt = buildPrompt(request.getQuestion(), retrievedTexts);
-
-            // Step 3: 调用通义千问流式 API
+            long promptStart = System.nanoTime();
+            List<String> references = contextPacker.pack(retrievedTexts);
+            String signature = options.get(indexIds.get(0)).signature()
+                    + (indexIds.size() > 1 ? ",indices=" + indexIds.size() : "");
+            retrievalMetrics.record(signature, TimeUnit.NANOSECONDS.toMillis(retrieveNanos),
+                    retrievedTexts.size(), references.size(),
+                    references.stream().mapToInt(ContextPacker::estimateTokens).sum());
+            String prompt = buildPrompt(request.getQuestion(), references);
+            trace.promptBuilt(System.nanoTime() - promptStart);
+
+            // Step 3: 按 Prompt 长度和各模型近期延迟选择模型，调用通义千问流式 API
             log.debug("Step 3: 调用通义千问流式生成回答...");
-            callQwenAPIStream(prompt, callback);
+            ModelRouter.Route route = modelRouter.route(request.getQuestion(), estimatePromptTokens(prompt, session));
+            log.debug("使用模型 {}，max_tokens={}", route.model(), route.maxTokens());
+            callQwenAPIStream(prompt, session, route, instrument(callback, trace), cancellation, trace);
+            if (cancellation.isCancelled()) {
+                trace.finish(ChatMetrics.OUTCOME_CANCELLED);
+            }
 
         } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                log.info("客户端已断开，停止处理: {}", e.getMessage());
+                trace.finish(ChatMetrics.OUTCOME_CANCELLED);
+                return;
+            }
             log.error("流式对话处理失败", e);
+            trace.finish(ChatMetrics.OUTCOME_ERROR);
             callback.onError("对话处理失败: " + e.getMessage());
         }
     }
 
     /**
-     * 调用通义千问流式 API
+     * 评测单个问题：与流式对话相同的检索和 Prompt 构造，非流式生成，记录各阶段耗时
+     * 不使用会话历史，也不合并相同问题
+     *
+     * @return 评测结果（不含问题和状态，由调用方填写）
      */
-    private void callQwenAPIStream(String prompt, StreamCallback callback) {
+    public EvaluationStatus.QuestionResult evaluate(ChatRequest request) throws Exception {
+        List<String> indexIds = resolveKnowledgeBaseIds(request);
+        Map<String, RetrievalOptions> options = resolveRetrievalOptions(request, indexIds);
+        long start = System.nanoTime();
+
+        // 不读取检索缓存，检索耗时反映实际检索
+        List<String> retrievedTexts = retrieveKnowledgeBases(indexIds, request.getQuestion(), options, false,
+                new StreamCancellation());
+        long retrieveNanos = System.nanoTime() - start;
+
+        long promptStart = System.nanoTime();
+        List<String> references = contextPacker.pack(retrievedTexts);
+        String prompt = buildPrompt(request.getQuestion(), references);
+        long promptNanos = System.nanoTime() - promptStart;
+        String signature = options.get(indexIds.get(0)).signature()
+                + (indexIds.size() > 1 ? ",indices=" + indexIds.size() : "");
+        retrievalMetrics.record(signature, TimeUnit.NANOSECONDS.toMillis(retrieveNanos),
+                retrievedTexts.size(), references.size(),
+                references.stream().mapToInt(ContextPacker::estimateTokens).sum());
+
+        ModelRouter.Route route = modelRouter.route(request.getQuestion(), ContextPacker.estimateTokens(prompt));
+        long generationStart = System.nanoTime();
+        GenerationProvider.Completion completion = callQwenAPI(prompt, route);
+        long generationNanos = System.nanoTime() - generationStart;
+
+        EvaluationStatus.QuestionResult result = new EvaluationStatus.QuestionResult();
+        result.setModel(route.model());
+        result.setRetrievalTime(TimeUnit.NANOSECONDS.toMillis(retrieveNanos));
+        result.setPromptTime(TimeUnit.NANOSECONDS.toMillis(promptNanos));
+        result.setGenerationTime(TimeUnit.NANOSECONDS.toMillis(generationNanos));
+        result.setTotalTime(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        result.setRetrievedChunks(retrievedTexts.size());
+        // 切片 ID 取自检索结果原文（打包会去重、截断，且随预算变化）
+        result.setChunkIds(retrievedTexts.stream().map(RagChatService::chunkId).collect(Collectors.toList()));
+        result.setPackedChunks(references.size());
+        result.setAnswer(completion.content());
+        result.setOutputTokens(completion.outputTokens());
+        return result;
+    }
+
+    /**
+     * 切片 ID：内容 SHA-1 的前 12 位（百炼与本地索引返回的切片没有统一的 ID）
+     */
+    private static String chunkId(String text) {
         try {
-            // 构造请求体
-            JsonObject requestBody = new JsonObject();
-            requestBody.addProperty("model", "qwen-turbo");
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 估算发送给模型的 Token 数：当前 Prompt + 会话摘要 + 历史轮次
+     */
+    private static int estimatePromptTokens(String prompt, ChatSessionDTO session) {
+        int tokens = ContextPacker.estimateTokens(prompt);
+        if (session.getSummary() != null) {
+            tokens += ContextPacker.estimateTokens(session.getSummary());
+        }
+        for (ChatTurn turn : session.getTurns()) {
+            tokens += ContextPacker.estimateTokens(turn.getQuestion()) + ContextPacker.estimateTokens(turn.getAnswer());
+        }
+        return tokens;
+    }
+
+    /**
+     * 包装合并到其他请求的回调：记录本请求收到首个内容的时间，成功结束时结果记为 coalesced
+     */
+    private StreamCallback coalesced(StreamCallback callback, ChatMetrics.Trace trace) {
+        return new StreamCallback() {
+            @Override
+            public void onData(String chunk) {
+                trace.fragment();
+                callback.onData(chunk);
+            }
+
+            @Override
+            public void onComplete() {
+                trace.finish(ChatMetrics.OUTCOME_COALESCED);
+                callback.onComplete();
+            }
+
+            @Override
+            public void onError(String error) {
+                trace.finish(ChatMetrics.OUTCOME_ERROR);
+                callback.onError(error);
+            }
 
-            JsonObject input = new JsonObject();
+            @Override
+            public void onTruncated() {
+                callback.onTruncated();
+            }
+        };
+    }
+
+    /**
+     * 包装回调：记录首 Token 时间和对话结果
+     */
+    private StreamCallback instrument(StreamCallback callback, ChatMetrics.Trace trace) {
+        return new StreamCallback() {
+            @Override
+            public void onData(String chunk) {
+                trace.fragment();
+                callback.onData(chunk);
+            }
+
+            @Override
+            public void onComplete() {
+                trace.finish(ChatMetrics.OUTCOME_SUCCESS);
+                callback.onComplete();
+            }
+
+            @Override
+            public void onError(String error) {
+                trace.finish(ChatMetrics.OUTCOME_ERROR);
+                callback.onError(error);
+            }
+
+            @Override
+            public void onTruncated() {
+                callback.onTruncated();
+            }
+        };
+    }
+
+    /**
+     * 包装回调：累积回答内容，完整结束后写入会话历史
+     */
+    private StreamCallback recordTurn(String sessionId, String question, StreamCallback callback) {
+        StringBuilder answer = new StringBuilder();
+        return new StreamCallback() {
+            @Override
+            public void onData(String chunk) {
+                answer.append(chunk);
+                callback.onData(chunk);
+            }
 
+            @Override
+            public void onComplete() {
+                chatSessionService.appendTurn(sessionId, question, answer.toString());
+                callback.onComplete();
+            }
+
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+
+            @Override
+            public void onTruncated() {
+                callback.onTruncated();
+            }
+        };
+    }
+
+    /**
+     * 调用通义千问流式 API（由 GenerationRouter 选择提供方，首 Token 前失败时自动切换）
+     * 会话历史以摘要 + 最近轮次（只含原始问题，不含参考信息）的形式放在当前问题之前
+     */
+    private void callQwenAPIStream(String prompt, ChatSessionDTO session, ModelRouter.Route route,
+                                   StreamCallback callback, StreamCancellation cancellation, ChatMetrics.Trace trace) {
+        GenerationProgress progress = new GenerationProgress(callback, trace);
+        try {
             // 构造消息数组
             com.google.gson.JsonArray messages = new com.google.gson.JsonArray();
             JsonObject systemMessage = new JsonObject();
@@ -168,115 +722,137 @@ private void callQwenAPIStream(String prompt, StreamCallback callback) {
             systemMessage.addProperty("content", "你是一个helpful的AI助手");
             messages.add(systemMessage);
 
+            if (session.getSummary() != null && !session.getSummary().isEmpty()) {
+                JsonObject summaryMessage = new JsonObject();
+                summaryMessage.addProperty("role", "system");
+                summaryMessage.addProperty("content", "此前对话摘要：" + session.getSummary());
+                messages.add(summaryMessage);
+            }
+            for (ChatTurn turn : session.getTurns()) {
+                JsonObject historyQuestion = new JsonObject();
+                historyQuestion.addProperty("role", "user");
+                historyQuestion.addProperty("content", turn.getQuestion());
+                messages.add(historyQuestion);
+                JsonObject historyAnswer = new JsonObject();
+                historyAnswer.addProperty("role", "assistant");
+                historyAnswer.addProperty("content", turn.getAnswer());
+                messages.add(historyAnswer);
+            }
+
             JsonObject userMessage = new JsonObject();
             userMessage.addProperty("role", "user");
             userMessage.addProperty("content", prompt);
             messages.add(userMessage);
 
-            input.add("messages", messages);
-            requestBody.add("input", input);
-
-            JsonObject parameters = new JsonObject();
-            parameters.addProperty("result_format", "message");
-            parameters.addProperty("incremental_output", true);  // 启用增量输出
-            requestBody.add("parameters", parameters);
-
-            // 发送请求
-            Request request = new Request.Builder()
-                    .url(QWEN_API_URL)
-                    .post(RequestBody.create(
-                            gson.toJson(requestBody),
-                            MediaType.parse("application/json")
-                    ))
-                    .addHeader("Authorization", "Bearer " + bailianService.getProperties().getApiKey())
-                    .addHeader("Content-Type", "application/json")
-                    .addHeader("X-DashScope-SSE", "enable")  // 启用 SSE
-                    .build();
-
-            try (Response response = httpClient.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    String errorBody = response.body() != null ? response.body().string() : "Unknown error";
-                    log.error("通义千问流式 API 错误: {} - {}", response.code(), errorBody);
-                    callback.onError("调用通义千问 API 失败: " + response.code() + ", " + errorBody);
-                    return;
-                }
+            // 读取流式响应，同时记录该模型的首 Token 延迟和生成速度供路由参考
+            String provider = generationRouter.stream(
+                    new GenerationProvider.Request(route.model(), messages, route.maxTokens()), progress, cancellation);
+            if (cancellation.isCancelled()) {
+                recordRoute(route, progress, false);
+                return;
+            }
+            log.debug("生成完成，提供方: {}", provider);
+            recordRoute(route, progress, false);
+            if ("length".equals(progress.finishReason)) {
+                log.info("回答达到 max_tokens={} 被截断", route.maxTokens());
+                callback.onTruncated();
+            }
+            callback.onComplete();
 
-                // 读取流式响应
-                boolean completed = false;
-                try (var source = response.body().source()) {
-                    while (!source.exhausted()) {
-                        String line = source.readUtf8Line();
-
-                        if (line == null || line.trim().isEmpty()) {
-                            continue;
-                        }
-
-                        // SSE 格式: data: {...}
-                        if (line.startsWith("data:")) {
-                            String jsonData = line.substring(5).trim();
-
-                            // 检查是否是结束标记
-                            if (jsonData.equals("[DONE]")) {
-                                log.info("收到 [DONE] 标记");
-                                callback.onComplete();
-                                completed = true;
-                                break;
-                            }
-
-                            try {
-                                JsonObject jsonResponse = gson.fromJson(jsonData, JsonObject.class);
-
-                                // 提取增量内容
-                                if (jsonResponse.has("output") &&
-                                    jsonResponse.getAsJsonObject("output").has("choices")) {
-
-                                    com.google.gson.JsonArray choices = jsonResponse.getAsJsonObject("output")
-                                            .getAsJsonArray("choices");
-
-                                    if (choices.size() > 0) {
-                                        JsonObject firstChoice = choices.get(0).getAsJsonObject();
-                                        if (firstChoice.has("message")) {
-                                            String content = firstChoice.getAsJsonObject("message")
-                                                    .get("content").getAsString();
-
-                                            if (content != null && !content.isEmpty()) {
-                                                callback.onData(content);
-                                            }
-                                        }
-                                    }
-                                }
-
-                                // 检查是否完成
-                                if (jsonResponse.has("output") &&
-                                    jsonResponse.getAsJsonObject("output").has("finish_reason")) {
-                                    String finishReason = jsonResponse.getAsJsonObject("output")
-                                            .get("finish_reason").getAsString();
-                                    if ("stop".equals(finishReason)) {
-                                        log.info("收到 finish_reason=stop");
-                                        callback.onComplete();
-                                        completed = true;
-                                        break;
-                                    }
-                                }
-
-                            } catch (Exception e) {
-                                log.warn("解析流式响应失败: {}", jsonData, e);
-                            }
-                        }
-                    }
-                }
+        } catch (Exception e) {
+            recordRoute(route, progress, !cancellation.isCancelled());
+            if (cancellation.isCancelled()) {
+                log.info("客户端已断开，已取消通义千问流式请求");
+                return;
+            }
+            log.error("调用通义千问流式 API 失败", e);
+            callback.onError(e instanceof BusinessException
+                    ? e.getMessage() : "调用通义千问流式 API 失败: " + e.getMessage());
+        }
+    }
 
-                // 如果流读取完但没有收到完成信号，手动调用完成
-                if (!completed) {
-                    log.info("流读取结束，但未收到完成信号，手动调用 onComplete");
-                    callback.onComplete();
-                }
+    /**
+     * 流式生成进度：转发增量内容，记录连接耗时、首个片段时间和输出 Token 数
+     */
+    private static class GenerationProgress implements GenerationProvider.Listener {
+        private final StreamCallback callback;
+        private final ChatMetrics.Trace trace;
+        private final long requestStart = System.nanoTime();
+        private long firstContentAt = -1;
+        private int fragments;
+        private int outputTokens = -1;
+        private String finishReason;
+
+        GenerationProgress(StreamCallback callback, ChatMetrics.Trace trace) {
+            this.callback = callback;
+            this.trace = trace;
+        }
+
+        @Override
+        public void onConnected(long connectNanos) {
+            trace.connected(connectNanos);
+        }
 
+        @Override
+        public void onContent(String content) {
+            if (firstContentAt < 0) {
+                firstContentAt = System.nanoTime();
             }
+            fragments++;
+            callback.onData(content);
+        }
 
-        } catch (Exception e) {
-            log.error("调用通义千问流式 API 失败", e);
-            callback.onError("调用通义千问流式 API 失败: " + e.getMessage());
+        @Override
+        public void onOutputTokens(int tokens) {
+            outputTokens = tokens;
+            trace.outputTokens(tokens);
+        }
+
+        @Override
+        public void onFinish(String reason) {
+            finishReason = reason;
         }
     }
+
+    /**
+     * 调用通义千问非流式 API（批量评测使用）
+     */
+    private GenerationProvider.Completion callQwenAPI(String prompt, ModelRouter.Route route) throws Exception {
+        com.google.gson.JsonArray messages = new com.google.gson.JsonArray();
+        JsonObject systemMessage = new JsonObject();
+        systemMessage.addProperty("role", "system");
+        systemMessage.addProperty("content", "你是一个helpful的AI助手");
+        messages.add(systemMessage);
+        JsonObject userMessage = new JsonObject();
+        userMessage.addProperty("role", "user");
+        userMessage.addProperty("content", prompt);
+        messages.add(userMessage);
+
+        return generationRouter.complete(new GenerationProvider.Request(route.model(), messages, route.maxTokens()));
+    }
+
+    /**
+     * 把本次生成的首 Token 延迟（从发出请求算起）和生成速度反馈给模型路由；
+     * 未收到内容就失败、超时或被客户端放弃的请求也记录，使持续异常的模型被回退
+     *
+     * @param failed 上游失败（含首 Token 超时），false 表示正常结束或客户端断开
+     */
+    private void recordRoute(ModelRouter.Route route, GenerationProgress progress, boolean failed) {
+        long now = System.nanoTime();
+        if (progress.firstContentAt < 0) {
+            modelRouter.recordNoToken(route, TimeUnit.NANOSECONDS.toMillis(now - progress.requestStart), failed);
+            return;
+        }
+        int tokens = progress.outputTokens > 0 ? progress.outputTokens : progress.fragments;
+        long generationNanos = now - progress.firstContentAt;
+        double tokensPerSecond = tokens > 1 && generationNanos > 0 ? tokens / (generationNanos / 1e9) : 0;
+        modelRouter.record(route, TimeUnit.NANOSECONDS.toMillis(progress.firstContentAt - progress.requestStart),
+                tokensPerSecond);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        retrievalExecutor.shutdownNow();
+        fanOutExecutor.shutdownNow();
+    }
 }
@@ -0,0 +1,290 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 解析结果存储服务
+ * 按内容 SHA-256 寻址，相同内容只保存一份，正文以 Deflate 压缩存放
+ *
+ * 文件格式：魔数 "MDZ1"（4 字节）+ 原始长度（8 字节）+ Deflate 数据
+ *
+ * 保存的内容在调用方登记引用前处于固定状态，删除时跳过；删除检查引用期间有保存相同内容的也不删除，
+ * 避免复用已存在的内容后、登记引用前被其他模块删除
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class ResultStoreService {
+
+    private static final Logger log = LoggerFactory.getLogger(ResultStoreService.class);
+    private static final String STORE_DIR = "store";
+    private static final String BLOB_SUFFIX = ".mdz";
+    private static final byte[] MAGIC = {'M', 'D', 'Z', '1'};
+    private static final int BUFFER_SIZE = 8192;
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path storeDir;
+    private final List<Predicate<String>> referenceCheckers = new CopyOnWriteArrayList<>();
+    /**
+     * 已保存、尚未登记引用的内容（哈希 -> 固定次数），与下面两个集合一起由 pins 的锁保护
+     */
+    private final Map<String, Integer> pins = new HashMap<>();
+    /**
+     * 正在检查引用、准备删除的内容
+     */
+    private final Set<String> deleting = new HashSet<>();
+    /**
+     * 检查引用期间被再次保存的内容
+     */
+    private final Set<String> savedWhileDeleting = new HashSet<>();
+
+    public ResultStoreService(FileProperties fileProperties) {
+        this.storeDir = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(STORE_DIR);
+        try {
+            Files.createDirectories(storeDir);
+        } catch (IOException e) {
+            log.error("结果存储目录初始化失败", e);
+            throw new BusinessException("结果存储目录初始化失败", e);
+        }
+    }
+
+    /**
+     * 保存内容，已存在相同内容时直接复用
+     * 返回时内容处于固定状态，调用方登记引用后（或放弃登记时）必须调用 {@link #unpin(String)}
+     *
+     * @return 内容引用（哈希、存储路径、原始大小）
+     */
+    public ContentRef put(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256(raw);
+        Path blobPath = blobPath(hash);
+
+        // 先固定再检查是否存在：之后开始的删除会跳过，正在进行的删除会放弃
+        synchronized (pins) {
+            pins.merge(hash, 1, Integer::sum);
+            if (deleting.contains(hash)) {
+                savedWhileDeleting.add(hash);
+            }
+        }
+        try {
+            return write(hash, blobPath, raw);
+        } catch (RuntimeException e) {
+            unpin(hash);
+            throw e;
+        }
+    }
+
+    /**
+     * 解除 {@link #put(String)} 的固定
+     */
+    public void unpin(String hash) {
+        synchronized (pins) {
+            pins.computeIfPresent(hash, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private ContentRef write(String hash, Path blobPath, byte[] raw) {
+        if (Files.exists(blobPath)) {
+            log.debug("结果内容已存在，复用: {}", hash);
+            return new ContentRef(hash, blobPath, raw.length);
+        }
+
+        try {
+            Files.createDirectories(blobPath.getParent());
+            // 先写临时文件再原子移动，避免并发写入相同内容时读到半个文件
+            Path tmpPath = Files.createTempFile(blobPath.getParent(), hash, ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpPath))) {
+                out.write(MAGIC);
+                new DataOutputStream(out).writeLong(raw.length);
+                Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater, BUFFER_SIZE)) {
+                    deflaterOut.write(raw);
+                } finally {
+                    deflater.end();
+                }
+            }
+            try {
+                Files.move(tmpPath, blobPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(tmpPath);
+            }
+            log.info("结果内容已压缩保存: {} ({} -> {} 字节)", hash, raw.length, Files.size(blobPath));
+            return new ContentRef(hash, blobPath, raw.length);
+        } catch (IOException e) {
+            log.error("保存结果内容失败", e);
+            throw new BusinessException("保存结果内容失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 打开解压后的内容流，调用方负责关闭
+     */
+    public InputStream openStream(String hash) throws IOException {
+        Path blobPath = blobPath(hash);
+        if (!Files.exists(blobPath)) {
+            throw new FileNotFoundException("结果内容不存在: " + hash);
+        }
+
+        InputStream in = new BufferedInputStream(Files.newInputStream(blobPath), BUFFER_SIZE);
+        try {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!java.util.Arrays.equals(magic, MAGIC)) {
+                throw new IOException("结果内容格式错误: " + hash);
+            }
+            new DataInputStream(in).readLong();
+            return new InflaterInputStream(in);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 将解压后的内容流式写出
+     */
+    public void transferTo(String hash, OutputStream out) throws IOException {
+        try (InputStream in = openStream(hash)) {
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * 读取完整内容
+     */
+    public String read(String hash) {
+        try (InputStream in = openStream(hash)) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.error("读取结果内容失败: {}", hash, e);
+            throw new BusinessException("读取结果内容失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 读取原始（未压缩）大小
+     */
+    public long rawSize(String hash) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(blobPath(hash)))) {
+            in.skipNBytes(MAGIC.length);
+            return in.readLong();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    public boolean exists(String hash) {
+        return hash != null && Files.exists(blobPath(hash));
+    }
+
+    /**
+     * 注册引用检查器，其他模块仍在引用的内容不会被删除
+     */
+    public void addReferenceChecker(Predicate<String> checker) {
+        referenceCheckers.add(checker);
+    }
+
+    /**
+     * 删除内容（仍被其他模块引用、尚未登记引用或检查引用期间被再次保存时跳过）
+     * 引用检查器在锁外调用，避免与在自身锁内保存内容的模块死锁
+     */
+    public boolean delete(String hash) {
+        synchronized (pins) {
+            if (pins.containsKey(hash) || !deleting.add(hash)) {
+                log.debug("结果内容正在保存或删除，跳过删除: {}", hash);
+                return false;
+            }
+        }
+        boolean referenced;
+        try {
+            referenced = referenceCheckers.stream().anyMatch(checker -> checker.test(hash));
+        } catch (RuntimeException e) {
+            synchronized (pins) {
+                deleting.remove(hash);
+                savedWhileDeleting.remove(hash);
+            }
+            throw e;
+        }
+        synchronized (pins) {
+            deleting.remove(hash);
+            boolean savedAgain = savedWhileDeleting.remove(hash) || pins.containsKey(hash);
+            if (referenced || savedAgain) {
+                log.debug("结果内容仍被引用，跳过删除: {}", hash);
+                return false;
+            }
+            return deleteBlob(hash);
+        }
+    }
+
+    /**
+     * 删除内容文件（调用时持有 pins 的锁）
+     *
+     * @return 是否已删除
+     */
+    private boolean deleteBlob(String hash) {
+        try {
+            boolean deleted = Files.deleteIfExists(blobPath(hash));
+            if (deleted) {
+                log.info("删除结果内容: {}", hash);
+            }
+            return deleted;
+        } catch (IOException e) {
+            log.warn("删除结果内容失败: {}", hash, e);
+            return false;
+        }
+    }
+
+    /**
+     * 内容存放路径：store/前两位/完整哈希.mdz
+     */
+    private Path blobPath(String hash) {
+        if (!HASH_PATTERN.matcher(hash).matches()) {
+            throw new BusinessException(400, "非法的内容哈希: " + hash);
+        }
+        return storeDir.resolve(hash.substring(0, 2)).resolve(hash + BLOB_SUFFIX);
+    }
+
+    private String sha256(byte[] data) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(data));
+        } catch (Exception e) {
+            throw new BusinessException("计算内容哈希失败", e);
+        }
+    }
+
+    /**
+     * 内容引用
+     */
+    public static class ContentRef {
+        public final String hash;
+        public final Path path;
+        public final long rawSize;
+
+        public ContentRef(String hash, Path path, long rawSize) {
+            this.hash = hash;
+            this.path = path;
+            this.rawSize = rawSize;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.RetrievalProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 检索结果缓存服务
+ * 以 知识库 ID + 检索参数 + 归一化问题 为键缓存检索到的文本切片，按 LRU 淘汰并设置有效期；
+ * 知识库新增或删除文档后立即失效该知识库的全部缓存
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class RetrievalCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(RetrievalCacheService.class);
+
+    private final RetrievalProperties properties;
+    private final LinkedHashMap<CacheKey, CacheEntry> entries;
+    private final Map<String, Long> generations = new HashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public RetrievalCacheService(RetrievalProperties properties) {
+        this.properties = properties;
+        // accessOrder = true：按访问顺序排列，最久未使用的在最前
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                if (size() > properties.getCacheMaxEntries()) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 查询缓存
+     *
+     * @param settings 检索参数签名，参数不同的检索分别缓存
+     * @return 缓存的文本切片；未命中或已过期时返回 null
+     */
+    public List<String> get(String indexId, String settings, String query) {
+        if (!isEnabled()) {
+            return null;
+        }
+        CacheKey key = new CacheKey(indexId, settings, normalize(query));
+        synchronized (this) {
+            CacheEntry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > System.currentTimeMillis()) {
+                hits.incrementAndGet();
+                return entry.texts;
+            }
+            if (entry != null) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 当前知识库的缓存版本号，检索前读取，写入缓存时校验
+     */
+    public synchronized long generation(String indexId) {
+        return generations.getOrDefault(indexId, 0L);
+    }
+
+    /**
+     * 写入缓存
+     * 检索期间知识库发生变化（版本号已变）时丢弃结果，避免写入过期数据
+     *
+     * @param generation 检索开始前通过 {@link #generation(String)} 读取的版本号
+     */
+    public void put(String indexId, String settings, String query, List<String> texts, long generation) {
+        if (!isEnabled()) {
+            return;
+        }
+        CacheKey key = new CacheKey(indexId, settings, normalize(query));
+        CacheEntry entry = new CacheEntry(List.copyOf(texts), System.currentTimeMillis() + properties.getCacheTtl());
+        synchronized (this) {
+            if (generations.getOrDefault(indexId, 0L) == generation) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * 失效知识库的全部缓存（新增、删除文档或删除知识库后调用）
+     */
+    public void invalidate(String indexId) {
+        int removed;
+        synchronized (this) {
+            generations.merge(indexId, 1L, Long::sum);
+            int before = entries.size();
+            entries.keySet().removeIf(key -> key.indexId.equals(indexId));
+            removed = before - entries.size();
+        }
+        invalidations.incrementAndGet();
+        if (removed > 0) {
+            log.info("知识库 {} 内容已变化，清除 {} 条检索缓存", indexId, removed);
+        }
+    }
+
+    /**
+     * 缓存统计信息
+     */
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", isEnabled());
+        synchronized (this) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", properties.getCacheMaxEntries());
+        stats.put("ttl", properties.getCacheTtl());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        stats.put("evictions", evictions.get());
+        stats.put("expirations", expirations.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private boolean isEnabled() {
+        return properties.getCacheMaxEntries() > 0 && properties.getCacheTtl() > 0;
+    }
+
+    /**
+     * 归一化问题：去除首尾空白和结尾标点、合并连续空白、统一小写
+     */
+    static String normalize(String query) {
+        if (query == null) {
+            return "";
+        }
+        return query.strip()
+                .replaceAll("\\s+", " ")
+                .replaceAll("[?？!！.。,，;；~～\\s]+$", "")
+                .toLowerCase(Locale.ROOT);
+    }
+
+    private record CacheKey(String indexId, String settings, String query) {
+    }
+
+    private static class CacheEntry {
+        final List<String> texts;
+        final long expiresAt;
+
+        CacheEntry(List<String> texts, long expiresAt) {
+            this.texts = texts;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
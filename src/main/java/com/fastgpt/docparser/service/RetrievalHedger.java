@@ -0,0 +1,219 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.RetrievalProperties;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 检索请求对冲（hedged request）
+ * 首次请求超过近期延迟的指定分位数仍未返回时，再发送一次相同请求，取先成功返回的结果并取消另一个；
+ * 额外请求数受预算限制（每次首次请求积累 hedge-budget 个额度，对冲一次消耗一个），
+ * 避免上游整体变慢时对冲请求成倍放大负载
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class RetrievalHedger {
+
+    private static final Logger log = LoggerFactory.getLogger(RetrievalHedger.class);
+    /**
+     * 预算额度上限，避免长时间空闲后集中对冲
+     */
+    private static final double MAX_BUDGET = 10;
+
+    private final RetrievalProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final long[] latencies;
+    private int latencyCount;
+    private int latencyIndex;
+    private double budget;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong budgetExhausted = new AtomicLong();
+
+    public RetrievalHedger(RetrievalProperties properties) {
+        this.properties = properties;
+        this.latencies = new long[Math.max(1, properties.getHedgeWindow())];
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("retrieval-hedge"));
+    }
+
+    /**
+     * 在指定线程池中执行请求，必要时发送对冲请求
+     * 首次请求在对冲发出前失败时直接失败（对冲只针对慢请求，不做重试）；对冲发出后两个请求都失败才失败
+     *
+     * @return 先成功返回的结果；取消返回的 Future 会一并取消尚未开始的请求
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> request, Executor executor) {
+        requests.incrementAndGet();
+        synchronized (this) {
+            budget = Math.min(MAX_BUDGET, budget + properties.getHedgeBudget());
+        }
+
+        HedgedCall<T> call = new HedgedCall<>(request, executor);
+        call.launch(false);
+        long delay = hedgeDelay();
+        if (delay >= 0) {
+            try {
+                scheduler.schedule(call::hedge, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 已关闭：不再对冲
+            }
+        }
+        return call.result;
+    }
+
+    /**
+     * 对冲统计
+     */
+    public Map<String, Object> stats() {
+        long requestCount = requests.get();
+        long hedgeCount = hedges.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isHedgeEnabled());
+        stats.put("percentile", properties.getHedgePercentile());
+        stats.put("hedgeDelay", hedgeDelay());
+        stats.put("requests", requestCount);
+        stats.put("hedges", hedgeCount);
+        stats.put("hedgeRate", requestCount == 0 ? 0.0 : (double) hedgeCount / requestCount);
+        stats.put("hedgeWins", hedgeWins.get());
+        stats.put("budgetExhausted", budgetExhausted.get());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 对冲等待时间：最近成功请求延迟的分位数，不低于 hedge-min-delay；样本不足或未启用时返回 -1
+     */
+    private long hedgeDelay() {
+        if (!properties.isHedgeEnabled()) {
+            return -1;
+        }
+        long[] samples;
+        synchronized (this) {
+            if (latencyCount < Math.max(1, properties.getHedgeMinSamples())) {
+                return -1;
+            }
+            samples = Arrays.copyOf(latencies, latencyCount);
+        }
+        Arrays.sort(samples);
+        int index = (int) Math.ceil(properties.getHedgePercentile() / 100.0 * samples.length) - 1;
+        long percentile = samples[Math.max(0, Math.min(index, samples.length - 1))];
+        return Math.max(properties.getHedgeMinDelay(), percentile);
+    }
+
+    private synchronized void recordLatency(long millis) {
+        latencies[latencyIndex] = millis;
+        latencyIndex = (latencyIndex + 1) % latencies.length;
+        latencyCount = Math.min(latencyCount + 1, latencies.length);
+    }
+
+    private synchronized boolean tryAcquireBudget() {
+        if (budget < 1) {
+            return false;
+        }
+        budget -= 1;
+        return true;
+    }
+
+    /**
+     * 一次检索及其可能的对冲请求
+     */
+    private class HedgedCall<T> {
+        private final Supplier<T> request;
+        private final Executor executor;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private volatile CompletableFuture<T> primary;
+        private volatile CompletableFuture<T> secondary;
+        private int failures;
+
+        HedgedCall(Supplier<T> request, Executor executor) {
+            this.request = request;
+            this.executor = executor;
+            // 结果确定（或调用方取消）后取消其余请求：尚未开始执行的请求不再发出
+            result.whenComplete((value, error) -> {
+                cancel(primary);
+                cancel(secondary);
+            });
+        }
+
+        /**
+         * 首次请求仍未返回时发出对冲请求
+         */
+        void hedge() {
+            synchronized (this) {
+                if (result.isDone() || primary.isDone()) {
+                    return;
+                }
+            }
+            if (!tryAcquireBudget()) {
+                budgetExhausted.incrementAndGet();
+                return;
+            }
+            hedges.incrementAndGet();
+            log.debug("百炼检索超过 {} ms 未返回，发送对冲请求", hedgeDelay());
+            launch(true);
+        }
+
+        void launch(boolean hedge) {
+            long start = System.nanoTime();
+            CompletableFuture<T> attempt;
+            try {
+                attempt = CompletableFuture.supplyAsync(request, executor);
+            } catch (RejectedExecutionException e) {
+                if (!hedge) {
+                    result.completeExceptionally(e);
+                }
+                return;
+            }
+            synchronized (this) {
+                if (hedge) {
+                    secondary = attempt;
+                } else {
+                    primary = attempt;
+                }
+            }
+            attempt.whenComplete((value, error) -> {
+                if (error == null) {
+                    recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                    if (result.complete(value) && hedge) {
+                        hedgeWins.incrementAndGet();
+                    }
+                    return;
+                }
+                boolean fail;
+                synchronized (this) {
+                    failures++;
+                    fail = secondary == null || failures >= 2;
+                }
+                if (fail) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error);
+                }
+            });
+            if (result.isDone()) {
+                cancel(attempt);
+            }
+        }
+
+        private void cancel(CompletableFuture<T> attempt) {
+            if (attempt != null && !attempt.isDone()) {
+                attempt.cancel(true);
+            }
+        }
+    }
+}
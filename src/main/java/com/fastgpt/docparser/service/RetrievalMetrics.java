@@ -0,0 +1,74 @@
+package com.fastgpt.docparser.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * 检索统计
+ * 按检索参数签名分组记录检索次数、耗时和进入 Prompt 的参考信息大小，
+ * 用于比较不同参数组合的延迟与上下文开销
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class RetrievalMetrics {
+
+    private static final int MAX_GROUPS = 100;
+    private static final String OTHER_GROUP = "other";
+
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次检索
+     *
+     * @param signature     检索参数签名
+     * @param latencyMillis 检索耗时（含缓存命中）
+     * @param chunks        检索到的切片数
+     * @param contextChunks 打包后进入 Prompt 的切片数
+     * @param contextTokens 打包后参考信息的估算 Token 数
+     */
+    public void record(String signature, long latencyMillis, int chunks, int contextChunks, int contextTokens) {
+        String key = groups.containsKey(signature) || groups.size() < MAX_GROUPS ? signature : OTHER_GROUP;
+        Group group = groups.computeIfAbsent(key, k -> new Group());
+        group.count.incrementAndGet();
+        group.totalLatency.addAndGet(latencyMillis);
+        group.maxLatency.accumulate(latencyMillis);
+        group.totalChunks.addAndGet(chunks);
+        group.totalContextChunks.addAndGet(contextChunks);
+        group.totalContextTokens.addAndGet(contextTokens);
+    }
+
+    /**
+     * 各参数组合的统计（平均值按次数计算）
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        groups.forEach((signature, group) -> {
+            long count = group.count.get();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("settings", signature);
+            stats.put("count", count);
+            stats.put("avgLatency", count == 0 ? 0 : group.totalLatency.get() / count);
+            stats.put("maxLatency", group.maxLatency.get());
+            stats.put("avgChunks", count == 0 ? 0.0 : (double) group.totalChunks.get() / count);
+            stats.put("avgContextChunks", count == 0 ? 0.0 : (double) group.totalContextChunks.get() / count);
+            stats.put("avgContextTokens", count == 0 ? 0 : group.totalContextTokens.get() / count);
+            result.add(stats);
+        });
+        result.sort(Comparator.comparing((Map<String, Object> stats) -> (Long) stats.get("count")).reversed());
+        return result;
+    }
+
+    private static class Group {
+        final AtomicLong count = new AtomicLong();
+        final AtomicLong totalLatency = new AtomicLong();
+        final LongAccumulator maxLatency = new LongAccumulator(Long::max, 0);
+        final AtomicLong totalChunks = new AtomicLong();
+        final AtomicLong totalContextChunks = new AtomicLong();
+        final AtomicLong totalContextTokens = new AtomicLong();
+    }
+}
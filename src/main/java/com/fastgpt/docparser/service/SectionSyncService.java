@@ -0,0 +1,425 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.config.IngestionProperties;
+import com.fastgpt.docparser.dto.SectionSyncResult;
+import com.fastgpt.docparser.exception.BusinessException;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 章节级增量同步服务
+ * 文档按标题切分为章节并逐章计算 SHA-256，每个章节作为独立文件上传到百炼；
+ * 再次同步同名文档时只上传新增或内容变化的章节，已删除章节对应的文件从知识库移除，
+ * 索引耗时与成本取决于改动量而不是文档大小
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class SectionSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(SectionSyncService.class);
+    private static final String MANIFEST_FILE = "section-manifests.json";
+    private static final Pattern HEADING_PATTERN = Pattern.compile("^ {0,3}(#{1,6})\\s+(.*?)\\s*#*\\s*$");
+
+    private final KnowledgeBaseService knowledgeBaseService;
+    private final DocumentCatalogService documentCatalogService;
+    private final KnowledgeBaseCatalogService knowledgeBaseCatalogService;
+    private final LocalIndexService localIndexService;
+    private final IngestionProperties properties;
+    private final Gson gson;
+    private final Path manifestFilePath;
+    private final Map<String, DocumentManifest> manifests;
+    private final Map<String, Object> documentLocks = new ConcurrentHashMap<>();
+    private final ExecutorService uploadExecutor;
+
+    public SectionSyncService(KnowledgeBaseService knowledgeBaseService,
+                              DocumentCatalogService documentCatalogService,
+                              KnowledgeBaseCatalogService knowledgeBaseCatalogService,
+                              LocalIndexService localIndexService,
+                              IngestionProperties properties,
+                              FileProperties fileProperties) {
+        this.knowledgeBaseService = knowledgeBaseService;
+        this.documentCatalogService = documentCatalogService;
+        this.knowledgeBaseCatalogService = knowledgeBaseCatalogService;
+        this.localIndexService = localIndexService;
+        this.properties = properties;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.manifestFilePath = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(MANIFEST_FILE);
+        this.manifests = loadManifests();
+
+        this.uploadExecutor = Executors.newFixedThreadPool(Math.max(1, properties.getUploadConcurrency()),
+                new DaemonThreadFactory("section-upload"));
+    }
+
+    /**
+     * 同步文档到知识库（以文件名识别同一文档）
+     */
+    public SectionSyncResult sync(String indexId, MultipartFile file) {
+        String documentName = file.getOriginalFilename();
+        if (documentName == null || documentName.isBlank()) {
+            throw new BusinessException(400, "文件名不能为空");
+        }
+
+        // 同一文档的同步串行执行，避免清单被并发覆盖
+        Object lock = documentLocks.computeIfAbsent(manifestKey(indexId, documentName), key -> new Object());
+        synchronized (lock) {
+            return doSync(indexId, documentName, file);
+        }
+    }
+
+    private SectionSyncResult doSync(String indexId, String documentName, MultipartFile file) {
+        long startedAt = System.currentTimeMillis();
+        log.info("开始增量同步文档到知识库 {}: {}", indexId, documentName);
+
+        Path tmpFilePath = null;
+        List<Path> sectionFiles = Collections.synchronizedList(new ArrayList<>());
+        try {
+            tmpFilePath = knowledgeBaseService.saveToTmpDir(file);
+            String fingerprint = documentCatalogService.fingerprint(tmpFilePath);
+            String markdownContent = knowledgeBaseService.loadMarkdown(tmpFilePath, fingerprint, documentName);
+
+            // 相同内容的章节只保留一份
+            Map<String, Section> current = new LinkedHashMap<>();
+            for (Section section : splitSections(markdownContent, properties.getSectionHeadingLevel())) {
+                current.putIfAbsent(section.hash, section);
+            }
+
+            DocumentManifest previous = findManifest(indexId, documentName);
+            Map<String, SectionRecord> previousByHash = new HashMap<>();
+            if (previous != null) {
+                previous.sections.forEach(record -> previousByHash.put(record.hash, record));
+            }
+
+            List<Section> added = new ArrayList<>();
+            for (Section section : current.values()) {
+                if (!previousByHash.containsKey(section.hash)) {
+                    added.add(section);
+                }
+            }
+            List<SectionRecord> removed = new ArrayList<>();
+            for (SectionRecord record : previousByHash.values()) {
+                if (!current.containsKey(record.hash)) {
+                    removed.add(record);
+                }
+            }
+            log.info("章节比对完成，共 {} 个章节，新增/变化 {} 个，删除 {} 个",
+                    current.size(), added.size(), removed.size());
+
+            // Step 1: 上传新增章节并合并提交索引任务
+            Map<String, SectionRecord> published = publishSections(indexId, documentName, tmpFilePath, added, sectionFiles);
+
+            // Step 2: 从知识库和数据中心删除已移除章节
+            // 首次同步（含上次首次同步中途失败的重试）时同时移除整篇上传的旧版本
+            List<String> removedFileIds = removed.stream().map(record -> record.fileId).toList();
+            knowledgeBaseService.deleteDocuments(indexId, removedFileIds);
+            knowledgeBaseService.deleteFiles(removedFileIds);
+            boolean firstSync = previous == null || previous.pending;
+            long replacedSize = firstSync ? removeWholeDocumentUploads(indexId, documentName) : 0;
+
+            // Step 3: 按文档顺序更新章节清单和知识库统计
+            List<SectionRecord> sections = new ArrayList<>();
+            for (Section section : current.values()) {
+                SectionRecord record = published.get(section.hash);
+                sections.add(record != null ? record : previousByHash.get(section.hash));
+            }
+            long previousSize = (previous != null ? previous.countedSize() : 0) + replacedSize;
+            DocumentManifest manifest = new DocumentManifest(indexId, documentName, sections);
+            manifest.countedSize = manifest.totalSize();
+            saveManifest(manifest);
+            knowledgeBaseCatalogService.onDocumentsChanged(indexId, firstSync && replacedSize == 0 ? 1 : 0,
+                    manifest.totalSize() - previousSize);
+
+            SectionSyncResult result = new SectionSyncResult();
+            result.setIndexId(indexId);
+            result.setDocumentName(documentName);
+            result.setTotalSections(current.size());
+            result.setAddedSections(added.size());
+            result.setRemovedSections(removed.size());
+            result.setUnchangedSections(current.size() - added.size());
+            result.setElapsed(System.currentTimeMillis() - startedAt);
+            log.info("增量同步完成: {}，新增/变化 {} 个章节，删除 {} 个章节，耗时 {} ms",
+                    documentName, added.size(), removed.size(), result.getElapsed());
+            return result;
+
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("增量同步文档失败", e);
+            throw new BusinessException("增量同步文档失败: " + e.getMessage(), e);
+        } finally {
+            List<Path> cleanup = new ArrayList<>(sectionFiles);
+            cleanup.add(tmpFilePath);
+            knowledgeBaseService.cleanupTmpFiles(cleanup.toArray(new Path[0]));
+        }
+    }
+
+    /**
+     * 并行上传章节文件并加入知识库，索引任务由 {@link IndexJobCoalescer} 合并提交
+     * 部分章节失败时，已成功的章节仍写入清单，避免重试时重复上传；
+     * 此时知识库统计不变，首次同步的清单标记为未完成，由重试完成旧版本清理和文档计数
+     *
+     * @return 章节哈希 → 章节记录
+     */
+    private Map<String, SectionRecord> publishSections(String indexId, String documentName, Path tmpFilePath,
+                                                       List<Section> sections, List<Path> sectionFiles) {
+        String baseName = documentName.replaceFirst("\\.[^.]+$", "");
+        String tmpBaseName = tmpFilePath.getFileName().toString();
+
+        Map<String, CompletableFuture<SectionRecord>> futures = new LinkedHashMap<>();
+        for (Section section : sections) {
+            String markdownFilename = baseName + "_s" + section.ordinal + "_" + section.hash.substring(0, 8) + ".md";
+            Path sectionPath = tmpFilePath.resolveSibling(tmpBaseName + "_" + section.hash.substring(0, 16) + ".md");
+            sectionFiles.add(sectionPath);
+
+            futures.put(section.hash, CompletableFuture
+                    .supplyAsync(() -> publishSection(markdownFilename, sectionPath, section), uploadExecutor)
+                    .thenCompose(record -> knowledgeBaseService.indexDocumentAsync(indexId, record.fileId)
+                            .thenApply(ignored -> {
+                                localIndexService.addDocument(indexId, record.fileId, section.content);
+                                return record;
+                            })));
+        }
+
+        Map<String, SectionRecord> published = new HashMap<>();
+        Throwable failure = null;
+        for (Map.Entry<String, CompletableFuture<SectionRecord>> entry : futures.entrySet()) {
+            try {
+                published.put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                failure = failure != null ? failure : (e.getCause() != null ? e.getCause() : e);
+            }
+        }
+
+        if (failure != null) {
+            DocumentManifest previous = findManifest(indexId, documentName);
+            if (!published.isEmpty()) {
+                List<SectionRecord> partial = new ArrayList<>(previous != null ? previous.sections : List.of());
+                partial.addAll(published.values());
+                DocumentManifest manifest = new DocumentManifest(indexId, documentName, partial);
+                manifest.pending = previous == null || previous.pending;
+                manifest.countedSize = previous != null ? previous.countedSize() : 0;
+                saveManifest(manifest);
+            }
+            throw new BusinessException("章节上传失败: " + failure.getMessage(), failure);
+        }
+        return published;
+    }
+
+    private SectionRecord publishSection(String markdownFilename, Path sectionPath, Section section) {
+        try {
+            KnowledgeBaseService.MarkdownFile markdownFile = knowledgeBaseService.writeMarkdown(sectionPath, section.content);
+            String fileId = knowledgeBaseService.publishMarkdown(markdownFilename, markdownFile);
+            return new SectionRecord(section.hash, fileId, section.title, markdownFile.size);
+        } catch (BusinessException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new BusinessException("上传章节失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 首次同步时，移除此前通过普通上传整篇加入知识库的同名文档，避免新旧内容并存
+     *
+     * @return 被移除文档的 Markdown 大小（字节）
+     */
+    private long removeWholeDocumentUploads(String indexId, String documentName) throws Exception {
+        List<DocumentCatalogService.CatalogEntry> entries = documentCatalogService.findIndexed(indexId, documentName);
+        List<String> fileIds = entries.stream()
+                .map(entry -> entry.fileId)
+                .filter(Objects::nonNull)
+                .toList();
+        if (fileIds.isEmpty()) {
+            return 0;
+        }
+
+        knowledgeBaseService.deleteDocuments(indexId, fileIds);
+        long size = 0;
+        for (DocumentCatalogService.CatalogEntry entry : entries) {
+            documentCatalogService.removeIndex(entry.fingerprint, indexId);
+            size += documentCatalogService.markdownSize(entry.fingerprint);
+        }
+        log.info("已移除整篇上传的旧版本文档: {} ({} 个文件)", documentName, fileIds.size());
+        return size;
+    }
+
+    /**
+     * 按标题切分 Markdown
+     * 级别不高于 maxLevel 的标题开始新章节，代码块内的 # 不视为标题；
+     * 第一个标题之前的内容单独作为一个章节，空白章节忽略
+     */
+    static List<Section> splitSections(String markdownContent, int maxLevel) {
+        int level = Math.min(6, Math.max(1, maxLevel));
+        List<Section> sections = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        String currentTitle = "";
+        boolean inCodeBlock = false;
+
+        for (String line : markdownContent.split("\r?\n", -1)) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("```") || trimmed.startsWith("~~~")) {
+                inCodeBlock = !inCodeBlock;
+            } else if (!inCodeBlock) {
+                Matcher matcher = HEADING_PATTERN.matcher(line);
+                if (matcher.matches() && matcher.group(1).length() <= level) {
+                    addSection(sections, currentTitle, current);
+                    current.setLength(0);
+                    currentTitle = matcher.group(2);
+                }
+            }
+            current.append(line).append('\n');
+        }
+        addSection(sections, currentTitle, current);
+        return sections;
+    }
+
+    private static void addSection(List<Section> sections, String title, StringBuilder content) {
+        String text = content.toString().strip();
+        if (!text.isEmpty()) {
+            sections.add(new Section(sections.size() + 1, title, text + "\n"));
+        }
+    }
+
+    private static String sha256(String content) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new BusinessException("计算章节哈希失败", e);
+        }
+    }
+
+    private static String manifestKey(String indexId, String documentName) {
+        return indexId + "/" + documentName;
+    }
+
+    private synchronized DocumentManifest findManifest(String indexId, String documentName) {
+        return manifests.get(manifestKey(indexId, documentName));
+    }
+
+    private synchronized void saveManifest(DocumentManifest manifest) {
+        manifests.put(manifestKey(manifest.indexId, manifest.documentName), manifest);
+        try {
+            Files.writeString(manifestFilePath, gson.toJson(new ArrayList<>(manifests.values())));
+        } catch (IOException e) {
+            log.error("保存章节清单失败", e);
+        }
+    }
+
+    /**
+     * 从文件加载章节清单
+     */
+    private Map<String, DocumentManifest> loadManifests() {
+        Map<String, DocumentManifest> loaded = new HashMap<>();
+        if (!Files.exists(manifestFilePath)) {
+            return loaded;
+        }
+        try {
+            List<DocumentManifest> list = gson.fromJson(Files.readString(manifestFilePath),
+                    new TypeToken<List<DocumentManifest>>(){}.getType());
+            if (list != null) {
+                list.forEach(manifest -> loaded.put(manifestKey(manifest.indexId, manifest.documentName), manifest));
+            }
+            log.info("加载章节清单: {} 个文档", loaded.size());
+        } catch (Exception e) {
+            log.error("加载章节清单失败", e);
+        }
+        return loaded;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    /**
+     * 切分得到的章节
+     */
+    static class Section {
+        final int ordinal;
+        final String title;
+        final String content;
+        final String hash;
+
+        Section(int ordinal, String title, String content) {
+            this.ordinal = ordinal;
+            this.title = title;
+            this.content = content;
+            this.hash = sha256(content);
+        }
+    }
+
+    /**
+     * 已上传的章节记录
+     */
+    static class SectionRecord {
+        String hash;
+        String fileId;
+        String title;
+        long size;
+
+        SectionRecord() {
+        }
+
+        SectionRecord(String hash, String fileId, String title, long size) {
+            this.hash = hash;
+            this.fileId = fileId;
+            this.title = title;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 文档的章节清单（知识库 + 文档名 → 各章节哈希与 FileId）
+     */
+    static class DocumentManifest {
+        String indexId;
+        String documentName;
+        List<SectionRecord> sections = new ArrayList<>();
+        long updatedAt;
+        /**
+         * 首次同步中途失败：整篇上传旧版本的清理和文档计数尚未完成
+         */
+        boolean pending;
+        /**
+         * 已计入知识库统计的大小（字节）；旧版本清单没有该字段，视为全部已计入
+         */
+        Long countedSize;
+
+        DocumentManifest() {
+        }
+
+        DocumentManifest(String indexId, String documentName, List<SectionRecord> sections) {
+            this.indexId = indexId;
+            this.documentName = documentName;
+            this.sections = sections;
+            this.updatedAt = System.currentTimeMillis();
+        }
+
+        long totalSize() {
+            return sections.stream().mapToLong(record -> record.size).sum();
+        }
+
+        long countedSize() {
+            return countedSize != null ? countedSize : totalSize();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import com.fastgpt.docparser.dto.ChatTurn;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 会话摘要生成
+ * 调用通义千问（经 GenerationRouter 选择提供方）把已有摘要和较早的对话轮次合并为一段新摘要；
+ * 调用失败时退化为保留最近问题的摘要，保证会话历史仍然有界
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class SessionSummarizer {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionSummarizer.class);
+    private static final int MAX_ANSWER_CHARS = 1000;
+
+    private final GenerationRouter generationRouter;
+    private final ChatProperties properties;
+
+    public SessionSummarizer(GenerationRouter generationRouter, ChatProperties properties) {
+        this.generationRouter = generationRouter;
+        this.properties = properties;
+    }
+
+    /**
+     * 合并摘要
+     *
+     * @param previousSummary 已有摘要（可为 null）
+     * @param turns           需要压缩的对话轮次（按时间顺序）
+     * @return 不超过 chat.summary-max-chars 的新摘要
+     */
+    public String summarize(String previousSummary, List<ChatTurn> turns) {
+        try {
+            String summary = requestSummary(buildPrompt(previousSummary, turns));
+            if (summary != null && !summary.isBlank()) {
+                return limit(summary.strip());
+            }
+            log.warn("生成会话摘要失败: 返回内容为空");
+        } catch (Exception e) {
+            log.warn("生成会话摘要失败，使用简略摘要: {}", e.getMessage());
+        }
+        return fallbackSummary(previousSummary, turns);
+    }
+
+    private String buildPrompt(String previousSummary, List<ChatTurn> turns) {
+        StringBuilder prompt = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            prompt.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        prompt.append("新增对话：\n");
+        for (ChatTurn turn : turns) {
+            prompt.append("用户：").append(turn.getQuestion()).append("\n");
+            prompt.append("助手：").append(truncate(turn.getAnswer(), MAX_ANSWER_CHARS)).append("\n\n");
+        }
+        prompt.append("请将已有摘要和新增对话合并为一段不超过 ")
+                .append(properties.getSummaryMaxChars())
+                .append(" 字的中文摘要，保留用户关注的主题、关键事实、结论和尚未解决的问题，只输出摘要内容。");
+        return prompt.toString();
+    }
+
+    private String requestSummary(String prompt) throws Exception {
+        JsonArray messages = new JsonArray();
+        JsonObject systemMessage = new JsonObject();
+        systemMessage.addProperty("role", "system");
+        systemMessage.addProperty("content", "你负责压缩对话历史，供后续对话参考。");
+        messages.add(systemMessage);
+        JsonObject userMessage = new JsonObject();
+        userMessage.addProperty("role", "user");
+        userMessage.addProperty("content", prompt);
+        messages.add(userMessage);
+
+        return generationRouter.complete(new GenerationProvider.Request("qwen-turbo", messages, 0)).content();
+    }
+
+    /**
+     * 简略摘要：已有摘要 + 被压缩轮次的问题，超长时保留最新部分
+     */
+    private String fallbackSummary(String previousSummary, List<ChatTurn> turns) {
+        StringBuilder summary = new StringBuilder();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            summary.append(previousSummary).append("\n");
+        }
+        summary.append("用户此前问过：");
+        for (int i = 0; i < turns.size(); i++) {
+            summary.append(i == 0 ? "" : "；").append(turns.get(i).getQuestion());
+        }
+        String text = summary.toString();
+        int max = properties.getSummaryMaxChars();
+        return text.length() <= max ? text : "…" + text.substring(text.length() - max + 1);
+    }
+
+    private String limit(String summary) {
+        return truncate(summary, properties.getSummaryMaxChars());
+    }
+
+    private static String truncate(String text, int maxChars) {
+        if (text == null) {
+            return "";
+        }
+        return text.length() <= maxChars ? text : text.substring(0, Math.max(0, maxChars - 1)) + "…";
+    }
+}
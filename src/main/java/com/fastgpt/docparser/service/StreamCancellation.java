@@ -0,0 +1,80 @@
+package com.fastgpt.docparser.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式对话取消信号
+ * 客户端断开、SSE 超时或发送失败时调用 {@link #cancel()}，
+ * 依次执行已登记的取消动作（取消上游请求、中断检索等）
+ *
+ * @author ZHONG WEI
+ */
+public class StreamCancellation {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamCancellation.class);
+
+    private final List<Runnable> actions = new ArrayList<>();
+    private boolean cancelled;
+
+    /**
+     * 是否已取消
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 发出取消信号（重复调用无效果）
+     */
+    public void cancel() {
+        List<Runnable> pending;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            pending = new ArrayList<>(actions);
+            actions.clear();
+        }
+        for (Runnable action : pending) {
+            try {
+                action.run();
+            } catch (Exception e) {
+                log.warn("执行取消动作失败", e);
+            }
+        }
+    }
+
+    /**
+     * 登记取消动作，已取消时立即执行
+     *
+     * @return 登记句柄，关闭后不再执行该动作
+     */
+    public Registration onCancel(Runnable action) {
+        synchronized (this) {
+            if (!cancelled) {
+                actions.add(action);
+                return () -> {
+                    synchronized (this) {
+                        actions.remove(action);
+                    }
+                };
+            }
+        }
+        action.run();
+        return () -> {
+        };
+    }
+
+    /**
+     * 取消动作的登记句柄
+     */
+    public interface Registration extends AutoCloseable {
+        @Override
+        void close();
+    }
+}
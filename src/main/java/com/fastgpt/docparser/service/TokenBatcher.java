@@ -0,0 +1,199 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.ChatProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 增量内容合并发送
+ * 首个片段立即发送以保证首 Token 延迟，之后的片段按时间间隔或字符数合并为一次发送，
+ * 减少 SSE 事件数和输出流刷新次数；生成暂停时由定时任务发出剩余内容
+ * （定时线程只负责计时，发送交给单独的线程，慢客户端只阻塞自己的发送）
+ *
+ * @author ZHONG WEI
+ */
+@Component
+public class TokenBatcher {
+
+    private final ChatProperties properties;
+    private final ScheduledExecutorService scheduler;
+    private final ThreadPoolExecutor emitExecutor;
+
+    private final AtomicLong fragments = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    public TokenBatcher(ChatProperties properties) {
+        this.properties = properties;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("token-flush"));
+        // 每个流同一时间最多一个定时发送；进行中的流包括执行器中的对话和合并的请求（各不超过 max-concurrent-streams），
+        // 线程数固定为其两倍。线程用满时定时发送排队，生成线程的下一个片段（已超过间隔）或结束回调会同步发出剩余内容
+        int threads = 2 * Math.max(1, properties.getMaxConcurrentStreams());
+        this.emitExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), new DaemonThreadFactory("token-emit"));
+        this.emitExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 包装回调，合并 onData 片段；onComplete、onError 前先发出剩余内容
+     */
+    public RagChatService.StreamCallback wrap(RagChatService.StreamCallback delegate) {
+        if (properties.getEmitInterval() <= 0) {
+            return delegate;
+        }
+        return new BatchingCallback(delegate);
+    }
+
+    /**
+     * 合并统计：收到的片段数与实际发送次数
+     */
+    public Map<String, Object> stats() {
+        long fragmentCount = fragments.get();
+        long batchCount = batches.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("emitInterval", properties.getEmitInterval());
+        stats.put("fragments", fragmentCount);
+        stats.put("emits", batchCount);
+        stats.put("fragmentsPerEmit", batchCount == 0 ? 0.0 : (double) fragmentCount / batchCount);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        emitExecutor.shutdownNow();
+    }
+
+    private class BatchingCallback implements RagChatService.StreamCallback {
+
+        private final RagChatService.StreamCallback delegate;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final StringBuilder pending = new StringBuilder();
+        private final long intervalNanos = TimeUnit.MILLISECONDS.toNanos(properties.getEmitInterval());
+        private long lastFlushAt;
+        private boolean firstSent;
+        private boolean scheduled;
+        private boolean closed;
+
+        BatchingCallback(RagChatService.StreamCallback delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void onSession(String sessionId) {
+            delegate.onSession(sessionId);
+        }
+
+        @Override
+        public void onData(String chunk) {
+            fragments.incrementAndGet();
+            lock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+                pending.append(chunk);
+                long elapsed = System.nanoTime() - lastFlushAt;
+                if (!firstSent || elapsed >= intervalNanos || pending.length() >= properties.getEmitMaxChars()) {
+                    flush();
+                } else if (!scheduled) {
+                    schedule(intervalNanos - elapsed);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            lock.lock();
+            try {
+                flush();
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            delegate.onComplete();
+        }
+
+        @Override
+        public void onError(String error) {
+            lock.lock();
+            try {
+                flush();
+                closed = true;
+            } finally {
+                lock.unlock();
+            }
+            delegate.onError(error);
+        }
+
+        @Override
+        public void onTruncated() {
+            lock.lock();
+            try {
+                flush();
+            } finally {
+                lock.unlock();
+            }
+            delegate.onTruncated();
+        }
+
+        /**
+         * 调用时需持有锁
+         */
+        private void flush() {
+            if (pending.length() == 0) {
+                return;
+            }
+            String text = pending.toString();
+            pending.setLength(0);
+            lastFlushAt = System.nanoTime();
+            firstSent = true;
+            batches.incrementAndGet();
+            delegate.onData(text);
+        }
+
+        private void schedule(long delayNanos) {
+            try {
+                scheduler.schedule(this::submitFlush, delayNanos, TimeUnit.NANOSECONDS);
+                scheduled = true;
+            } catch (RejectedExecutionException e) {
+                // 已关闭：剩余内容由下一个片段或结束回调发出
+            }
+        }
+
+        private void submitFlush() {
+            try {
+                emitExecutor.execute(this::flushScheduled);
+            } catch (RejectedExecutionException e) {
+                // 已关闭：剩余内容由下一个片段或结束回调发出
+            }
+        }
+
+        /**
+         * 定时发送（在发送线程上执行，生成线程正在发送时等待其完成）
+         */
+        private void flushScheduled() {
+            lock.lock();
+            try {
+                scheduled = false;
+                if (!closed) {
+                    flush();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.fastgpt.docparser.service;
+
+import com.fastgpt.docparser.config.FileProperties;
+import com.fastgpt.docparser.config.RetrievalProperties;
+import com.fastgpt.docparser.exception.BusinessException;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * 本地向量索引服务
+ * 每个知识库一个 {@link HnswIndex}，存放在 results/vector-index/{indexId}/ 下；
+ * 向量化实现按 retrieval.embedder 从已注册的 {@link Embedder} 中选择。
+ * 图结构定期保存、未保存的变更较多时立即保存、关闭时保存，不在每次上传后重写；
+ * 已删除节点比例过高的索引在后台重建到 {indexId}.compact 后替换
+ *
+ * @author ZHONG WEI
+ */
+@Service
+public class VectorIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(VectorIndexService.class);
+    private static final String INDEX_DIR = "vector-index";
+    private static final Pattern INDEX_ID_PATTERN = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final String COMPACT_SUFFIX = ".compact";
+    private static final String OLD_SUFFIX = ".old";
+
+    private final RetrievalProperties properties;
+    private final Embedder embedder;
+    private final Path indexDir;
+    private final Map<String, HnswIndex> indices = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService maintenance;
+
+    public VectorIndexService(RetrievalProperties properties, FileProperties fileProperties, List<Embedder> embedders) {
+        this.properties = properties;
+        this.indexDir = Paths.get(fileProperties.getResultDir()).toAbsolutePath().resolve(INDEX_DIR);
+        // 只在启用向量索引时校验向量化实现，未启用时配置错误不影响启动
+        if (properties.isVectorEnabled()) {
+            this.embedder = embedders.stream()
+                    .filter(candidate -> candidate.name().equalsIgnoreCase(properties.getEmbedder()))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("未知的向量化实现: " + properties.getEmbedder()));
+            log.info("本地向量索引已启用，向量化实现: {}，维度: {}", embedder.name(), embedder.dimension());
+            this.maintenance = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("vector-index"));
+            long interval = Math.max(1000, properties.getHnswSaveInterval());
+            maintenance.scheduleWithFixedDelay(this::maintain, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            this.embedder = null;
+            this.maintenance = null;
+        }
+    }
+
+    /**
+     * 向量化切片并加入知识库的向量索引（失败只记录日志，不影响文档上传）
+     */
+    public void addDocument(String indexId, String fileId, List<String> chunks) {
+        if (!isIndexable(indexId) || chunks.isEmpty()) {
+            return;
+        }
+        try {
+            List<float[]> vectors = embedder.embedAll(chunks);
+            update(indexId, index -> {
+                try {
+                    index.add(fileId, chunks, vectors);
+                    saveIfDirty(indexId, index, properties.getHnswSaveThreshold());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            log.debug("向量索引已更新，知识库: {}，FileId: {}，切片数: {}", indexId, fileId, chunks.size());
+        } catch (Exception e) {
+            log.error("更新向量索引失败，知识库: {}，FileId: {}", indexId, fileId, e);
+        }
+    }
+
+    /**
+     * 从知识库的向量索引中删除文档
+     */
+    public void removeDocuments(String indexId, Collection<String> fileIds) {
+        if (!isIndexable(indexId) || fileIds.isEmpty()) {
+            return;
+        }
+        update(indexId, index -> {
+            fileIds.forEach(index::remove);
+            saveIfDirty(indexId, index, properties.getHnswSaveThreshold());
+        });
+    }
+
+    /**
+     * 删除知识库的向量索引
+     */
+    public void dropIndex(String indexId) {
+        if (indexId == null || !INDEX_ID_PATTERN.matcher(indexId).matches()) {
+            return;
+        }
+        HnswIndex index = indices.remove(indexId);
+        try {
+            (index != null ? index : openIndex(indexId)).delete();
+        } catch (Exception e) {
+            log.warn("删除向量索引失败: {}", indexId, e);
+        }
+    }
+
+    /**
+     * 向量检索
+     */
+    public List<String> search(String indexId, String query, int topK) {
+        if (!isIndexable(indexId)) {
+            return new ArrayList<>();
+        }
+        float[] vector = embedder.embed(query);
+        while (true) {
+            HnswIndex index = getIndex(indexId);
+            List<String> result = index.search(vector, topK, properties.getHnswEfSearch());
+            // 检索期间索引被重建替换时在新索引上重试
+            if (!index.isClosed()) {
+                return result;
+            }
+        }
+    }
+
+    /**
+     * 知识库向量索引中的切片数
+     */
+    public int size(String indexId) {
+        return isIndexable(indexId) ? getIndex(indexId).size() : 0;
+    }
+
+    /**
+     * 是否由本地向量索引替代百炼检索
+     */
+    public boolean isServing(String indexId) {
+        return properties.isVectorReplaceRemote() && size(indexId) > 0;
+    }
+
+    private boolean isIndexable(String indexId) {
+        return properties.isVectorEnabled() && indexId != null && INDEX_ID_PATTERN.matcher(indexId).matches();
+    }
+
+    private HnswIndex getIndex(String indexId) {
+        return indices.computeIfAbsent(indexId, this::openIndex);
+    }
+
+    /**
+     * 在索引锁内修改索引；等待锁期间索引被重建替换时在新索引上执行
+     */
+    private void update(String indexId, Consumer<HnswIndex> action) {
+        while (true) {
+            HnswIndex index = getIndex(indexId);
+            synchronized (index) {
+                if (indices.get(indexId) == index) {
+                    action.accept(index);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 未保存的变更数达到阈值时保存（调用时持有索引锁）
+     */
+    private void saveIfDirty(String indexId, HnswIndex index, int threshold) {
+        if (index.unsavedChanges() < Math.max(1, threshold)) {
+            return;
+        }
+        try {
+            index.save();
+        } catch (IOException e) {
+            log.error("保存向量索引失败: {}", indexId, e);
+        }
+    }
+
+    /**
+     * 定期维护：保存有未保存变更的索引，重建已删除节点比例过高的索引
+     */
+    private void maintain() {
+        for (String indexId : new ArrayList<>(indices.keySet())) {
+            try {
+                update(indexId, index -> saveIfDirty(indexId, index, 1));
+                HnswIndex index = indices.get(indexId);
+                if (index != null && index.deletedRatio() >= properties.getHnswCompactRatio()) {
+                    compact(indexId);
+                }
+            } catch (Exception e) {
+                log.warn("维护向量索引失败: {}", indexId, e);
+            }
+        }
+    }
+
+    /**
+     * 只用有效切片重建索引：写入 {indexId}.compact 后替换原目录，重建期间仍可检索旧索引，写入等待
+     */
+    private void compact(String indexId) throws IOException {
+        HnswIndex index = indices.get(indexId);
+        if (index == null) {
+            return;
+        }
+        synchronized (index) {
+            if (indices.get(indexId) != index) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            Path dir = indexDir.resolve(indexId);
+            Path compacted = indexDir.resolve(indexId + COMPACT_SUFFIX);
+            Path old = indexDir.resolve(indexId + OLD_SUFFIX);
+            deleteDirectory(compacted);
+            index.compactTo(compacted);
+
+            Files.move(dir, old);
+            Files.move(compacted, dir);
+            indices.put(indexId, openIndex(indexId));
+            index.close();
+            deleteDirectory(old);
+            log.info("向量索引已重建: {}，耗时 {} ms，切片数: {}", indexId, System.currentTimeMillis() - start,
+                    indices.get(indexId).size());
+        }
+    }
+
+    private HnswIndex openIndex(String indexId) {
+        try {
+            recoverCompaction(indexId);
+            // 未启用时只会为删除而打开，维度取配置值即可
+            int dimension = embedder != null ? embedder.dimension() : properties.getVectorDimension();
+            HnswIndex index = HnswIndex.open(indexDir.resolve(indexId), dimension,
+                    properties.getHnswM(), properties.getHnswEfConstruction());
+            log.info("加载向量索引: {}，切片数: {}", indexId, index.size());
+            return index;
+        } catch (IOException e) {
+            throw new BusinessException("打开向量索引失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 清理重建中途退出留下的目录：原目录已移走而新目录未就位时恢复原目录
+     */
+    private void recoverCompaction(String indexId) throws IOException {
+        Path dir = indexDir.resolve(indexId);
+        Path old = indexDir.resolve(indexId + OLD_SUFFIX);
+        if (!Files.exists(dir) && Files.exists(old)) {
+            Files.move(old, dir);
+        }
+        deleteDirectory(indexDir.resolve(indexId + COMPACT_SUFFIX));
+        deleteDirectory(old);
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        indices.forEach((indexId, index) -> {
+            synchronized (index) {
+                saveIfDirty(indexId, index, 1);
+            }
+        });
+    }
+}
@@ -0,0 +1,239 @@
+package com.fastgpt.docparser.tool;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import okhttp3.*;
+import okio.BufferedSource;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流式对话压测工具
+ * 同时打开 N 个 SSE 客户端请求 /api/rag-chat/send，统计首 Token 延迟分位数、总耗时、吞吐量和错误，
+ * 并定期采样被测节点的 /api/diagnostic/runtime，报告线程数和堆内存峰值。
+ * 通常配合 fake-upstream 环境的模拟服务使用，见 README「压测」一节。
+ *
+ * 放在 src/test 下，只参与测试编译，不打进应用 jar：
+ *
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt
+ * java -cp target/test-classes:target/classes:$(cat target/classpath.txt) com.fastgpt.docparser.tool.ChatLoadTool \
+ *      --url=http://localhost:8080 --kb=知识库ID --clients=200 --requests=1000
+ * </pre>
+ *
+ * @author ZHONG WEI
+ */
+public final class ChatLoadTool {
+
+    private static final Gson GSON = new Gson();
+
+    private ChatLoadTool() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        String knowledgeBaseId = options.get("kb");
+        if (knowledgeBaseId == null) {
+            System.err.println("用法: ChatLoadTool --kb=知识库ID [--url=http://localhost:8080] [--clients=50] "
+                    + "[--requests=clients] [--question=问题] [--distinct=true] [--sample-interval=1000]");
+            System.exit(1);
+        }
+        int clients = Integer.parseInt(options.getOrDefault("clients", "50"));
+        int requests = Integer.parseInt(options.getOrDefault("requests", String.valueOf(clients)));
+        String question = options.getOrDefault("question", "这个知识库主要介绍了什么？");
+        // 默认每个请求的问题不同，避免被相同问题合并和检索缓存影响
+        boolean distinct = Boolean.parseBoolean(options.getOrDefault("distinct", "true"));
+        long sampleInterval = Long.parseLong(options.getOrDefault("sample-interval", "1000"));
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(0, TimeUnit.SECONDS)
+                .connectionPool(new ConnectionPool(clients, 5, TimeUnit.MINUTES))
+                .build();
+
+        RuntimeSampler sampler = new RuntimeSampler(httpClient, baseUrl);
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(sampler::sample, 0, sampleInterval, TimeUnit.MILLISECONDS);
+
+        System.out.printf("开始压测: %s，并发 %d，请求数 %d%n", baseUrl, clients, requests);
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        List<Future<Result>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            String text = distinct ? question + " #" + i : question;
+            futures.add(pool.submit(() -> send(httpClient, baseUrl, knowledgeBaseId, text)));
+        }
+        List<Result> results = new ArrayList<>();
+        for (Future<Result> future : futures) {
+            results.add(future.get());
+        }
+        long elapsedNanos = System.nanoTime() - start;
+
+        pool.shutdown();
+        scheduler.shutdownNow();
+        sampler.sample();
+        report(results, elapsedNanos, sampler);
+        httpClient.dispatcher().executorService().shutdown();
+        httpClient.connectionPool().evictAll();
+    }
+
+    /**
+     * 发送一次流式对话请求并读取完整的 SSE 响应
+     */
+    private static Result send(OkHttpClient httpClient, String baseUrl, String knowledgeBaseId, String question) {
+        JsonObject body = new JsonObject();
+        body.addProperty("knowledgeBaseId", knowledgeBaseId);
+        body.addProperty("question", question);
+        Request request = new Request.Builder()
+                .url(baseUrl + "/api/rag-chat/send")
+                .post(RequestBody.create(GSON.toJson(body), MediaType.parse("application/json")))
+                .addHeader("Accept", "text/event-stream")
+                .build();
+
+        Result result = new Result();
+        long start = System.nanoTime();
+        try (Response response = httpClient.newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                result.error = "HTTP " + response.code();
+                return result;
+            }
+            BufferedSource source = response.body().source();
+            String event = "message";
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (line.isEmpty()) {
+                    event = "message";
+                } else if (line.startsWith("event:")) {
+                    event = line.substring(6).trim();
+                } else if (line.startsWith("data:")) {
+                    String data = line.substring(5);
+                    switch (event) {
+                        case "message" -> {
+                            if (result.ttftNanos < 0) {
+                                result.ttftNanos = System.nanoTime() - start;
+                            }
+                            result.chars += data.length();
+                        }
+                        case "done" -> result.completed = true;
+                        case "error" -> result.error = data;
+                        default -> {
+                        }
+                    }
+                }
+            }
+            if (!result.completed && result.error == null) {
+                result.error = "连接提前关闭";
+            }
+        } catch (Exception e) {
+            result.error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        } finally {
+            result.durationNanos = System.nanoTime() - start;
+        }
+        return result;
+    }
+
+    private static void report(List<Result> results, long elapsedNanos, RuntimeSampler sampler) {
+        List<Long> ttft = new ArrayList<>();
+        List<Long> duration = new ArrayList<>();
+        Map<String, Integer> errors = new TreeMap<>();
+        long chars = 0;
+        for (Result result : results) {
+            if (result.completed) {
+                duration.add(result.durationNanos);
+                chars += result.chars;
+            } else {
+                String error = result.error.length() > 60 ? result.error.substring(0, 60) + "…" : result.error;
+                errors.merge(error, 1, Integer::sum);
+            }
+            if (result.ttftNanos >= 0) {
+                ttft.add(result.ttftNanos);
+            }
+        }
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.printf("总耗时: %.1f s，成功 %d，失败 %d%n", seconds, duration.size(), results.size() - duration.size());
+        System.out.printf("吞吐量: %.2f 次对话/s，%.0f 字符/s%n", duration.size() / seconds, chars / seconds);
+        System.out.printf("首 Token 延迟 (ms): p50=%d p90=%d p99=%d max=%d%n",
+                percentile(ttft, 50), percentile(ttft, 90), percentile(ttft, 99), percentile(ttft, 100));
+        System.out.printf("对话总耗时 (ms): p50=%d p90=%d p99=%d max=%d%n",
+                percentile(duration, 50), percentile(duration, 90), percentile(duration, 99), percentile(duration, 100));
+        if (sampler.samples.get() > 0) {
+            System.out.printf("被测节点: 线程数峰值 %d，堆内存峰值 %d MB，进行中对话峰值 %d，排队峰值 %d（采样 %d 次）%n",
+                    sampler.maxThreads.get(), sampler.maxHeapUsed.get() / (1024 * 1024),
+                    sampler.maxActive.get(), sampler.maxQueued.get(), sampler.samples.get());
+        } else {
+            System.out.println("被测节点: 无法获取运行时信息（/api/diagnostic/runtime）");
+        }
+        errors.forEach((error, count) -> System.out.printf("错误 x%d: %s%n", count, error));
+    }
+
+    /**
+     * 最近秩法分位数（毫秒）
+     */
+    private static long percentile(List<Long> nanos, int percentile) {
+        if (nanos.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(nanos);
+        Collections.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))));
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static class Result {
+        long ttftNanos = -1;
+        long durationNanos;
+        long chars;
+        boolean completed;
+        String error;
+    }
+
+    /**
+     * 定期采样被测节点的线程数、堆内存和对话执行器状态，保留峰值
+     */
+    private static class RuntimeSampler {
+        private final OkHttpClient httpClient;
+        private final String baseUrl;
+        private final AtomicLong samples = new AtomicLong();
+        private final AtomicLong maxThreads = new AtomicLong();
+        private final AtomicLong maxHeapUsed = new AtomicLong();
+        private final AtomicLong maxActive = new AtomicLong();
+        private final AtomicLong maxQueued = new AtomicLong();
+
+        RuntimeSampler(OkHttpClient httpClient, String baseUrl) {
+            this.httpClient = httpClient;
+            this.baseUrl = baseUrl;
+        }
+
+        void sample() {
+            Request request = new Request.Builder().url(baseUrl + "/api/diagnostic/runtime").get().build();
+            try (Response response = httpClient.newCall(request).execute()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    return;
+                }
+                JsonObject data = GSON.fromJson(response.body().string(), JsonObject.class).getAsJsonObject("data");
+                maxThreads.accumulateAndGet(data.get("threads").getAsLong(), Math::max);
+                maxHeapUsed.accumulateAndGet(data.get("heapUsed").getAsLong(), Math::max);
+                maxActive.accumulateAndGet(data.get("active").getAsLong(), Math::max);
+                maxQueued.accumulateAndGet(data.get("queued").getAsLong(), Math::max);
+                samples.incrementAndGet();
+            } catch (Exception e) {
+                // 采样失败不影响压测
+            }
+        }
+    }
+}